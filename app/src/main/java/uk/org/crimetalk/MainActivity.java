@@ -38,6 +38,10 @@ import uk.org.crimetalk.fragments.LibraryFragment;
 import uk.org.crimetalk.fragments.PagerFragment;
 import uk.org.crimetalk.fragments.PressCuttingsFragment;
 import uk.org.crimetalk.fragments.ShopFragment;
+import uk.org.crimetalk.fragments.helpers.ArticleListHelper;
+import uk.org.crimetalk.network.ConnectionWarmer;
+import uk.org.crimetalk.network.RequestScheduler;
+import uk.org.crimetalk.sync.SyncScheduler;
 import uk.org.crimetalk.utils.PreferenceUtils;
 import uk.org.crimetalk.utils.ThemeUtils;
 import uk.org.crimetalk.views.NavigationDrawerContainer;
@@ -71,8 +75,15 @@ public class MainActivity extends ActionBarActivity implements PagerFragment.Qui
     protected void onCreate(Bundle savedInstanceState) {
         ThemeUtils.setTheme(this);
         super.onCreate(savedInstanceState);
+
+        // Open connections for the first section while the views are inflated
+        warmSection(savedInstanceState == null ? 1 : savedInstanceState.getInt(ARGS_SELECTED_POSITION));
+
         setContentView(R.layout.activity_main);
 
+        // Keeps the background sync scheduled, alarms before Lollipop do not survive a reboot
+        SyncScheduler.schedule(MainActivity.this);
+
         // Modify various attributes of the Toolbar
         setSupportActionBar((Toolbar) findViewById(R.id.toolbar));
         getSupportActionBar().setDisplayHomeAsUpEnabled(true);
@@ -110,6 +121,17 @@ public class MainActivity extends ActionBarActivity implements PagerFragment.Qui
             public void onDrawerOpened(View drawerView) {
                 super.onDrawerOpened(drawerView);
 
+                // The user is about to pick a section, make sure its connections are ready
+                for (int position = 1; position <= 2; position++) {
+
+                    if (position != mCurrentSelectedPosition) {
+
+                        warmSection(position);
+
+                    }
+
+                }
+
                 // When the user first opens the NavigationDrawer remember he/she learned it
                 if (!mUserLearnedNavigation) {
 
@@ -360,6 +382,42 @@ public class MainActivity extends ActionBarActivity implements PagerFragment.Qui
 
     }
 
+    /**
+     * Private method.
+     * Opens connections for the pages of a primary navigation item before they are loaded.
+     * Uses the same positions as {@link #selectPrimaryItem(int)}.
+     */
+    private void warmSection(int position) {
+
+        final List<ArticleListHelper> pages;
+
+        switch (position) {
+
+            case 1:
+
+                pages = LibraryFragment.getPages(MainActivity.this);
+
+                break;
+
+            case 2:
+
+                pages = PressCuttingsFragment.getPages(MainActivity.this);
+
+                break;
+
+            default:
+
+                // Other items do not load any pages
+                return;
+
+        }
+
+        // The ViewPager loads the current page and its neighbours, at most three pages at once
+        ConnectionWarmer.getInstance(MainActivity.this).warm(pages.get(0).getUrl(), Math.min(pages.size(), 3),
+                RequestScheduler.PRIORITY_PREFETCH);
+
+    }
+
     /**
      * Private method.
      * Used for the creation of a {@link uk.org.crimetalk.adapters.NavigationDrawerAdapter}.
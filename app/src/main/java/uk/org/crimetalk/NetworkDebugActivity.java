@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk;
+
+import android.os.Bundle;
+import android.support.v7.app.ActionBarActivity;
+import android.support.v7.widget.Toolbar;
+import android.view.MenuItem;
+
+import uk.org.crimetalk.fragments.NetworkDebugFragment;
+import uk.org.crimetalk.utils.ThemeUtils;
+
+/**
+ * {@link android.app.Activity} that shows the state of the network layer.
+ * This can be navigated to from the {@link uk.org.crimetalk.SettingsActivity}.
+ *
+ * @see {@link uk.org.crimetalk.fragments.NetworkDebugFragment}
+ */
+public class NetworkDebugActivity extends ActionBarActivity {
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        ThemeUtils.setTheme(this, true);
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_network_debug);
+
+        // Modify various attributes of the Toolbar
+        setSupportActionBar((Toolbar) findViewById(R.id.toolbar));
+        getSupportActionBar().setTitle(getResources().getString(R.string.network_debug_title));
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        getSupportActionBar().setHomeAsUpIndicator(getResources().getDrawable(R.drawable.ic_up_indicator));
+
+        // If new instance of NetworkDebugActivity, load the NetworkDebugFragment
+        if (savedInstanceState == null) {
+
+            getFragmentManager()
+                    .beginTransaction()
+                    .replace(R.id.container, new NetworkDebugFragment())
+                    .commit();
+
+        }
+
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+
+        switch (item.getItemId()) {
+
+            case android.R.id.home:
+
+                this.finish();
+
+                return true;
+
+        }
+
+        return super.onOptionsItemSelected(item);
+
+    }
+
+}
@@ -16,11 +16,15 @@
 package uk.org.crimetalk;
 
 import android.os.Bundle;
+import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.support.v7.app.ActionBarActivity;
 import android.support.v7.widget.Toolbar;
 import android.view.MenuItem;
 
+import uk.org.crimetalk.network.DataUsage;
+import uk.org.crimetalk.network.HttpTransport;
+import uk.org.crimetalk.sync.SyncScheduler;
 import uk.org.crimetalk.utils.ThemeUtils;
 
 /**
@@ -84,6 +88,49 @@ public class SettingsActivity extends ActionBarActivity {
             // Load the preferences from an XML resource
             addPreferencesFromResource(R.xml.settings);
 
+            // Schedule or cancel the background sync as soon as it is turned on or off
+            findPreference("background_sync").setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+
+                @Override
+                public boolean onPreferenceChange(Preference preference, Object newValue) {
+
+                    // The new value is only saved after this returns
+                    SyncScheduler.schedule(getActivity(), (Boolean) newValue);
+
+                    return true;
+
+                }
+
+            });
+
+            // Apply a new data budget straight away, the value is in megabytes
+            findPreference("data_budget").setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+
+                @Override
+                public boolean onPreferenceChange(Preference preference, Object newValue) {
+
+                    DataUsage.getInstance(getActivity()).setMonthlyBudget(Long.parseLong((String) newValue) * 1024 * 1024);
+
+                    return true;
+
+                }
+
+            });
+
+            // Apply a new number of parallel connections straight away, not only when a search runs
+            findPreference("max_connections").setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+
+                @Override
+                public boolean onPreferenceChange(Preference preference, Object newValue) {
+
+                    HttpTransport.getInstance().setMaxConnectionsPerHost(Integer.parseInt((String) newValue));
+
+                    return true;
+
+                }
+
+            });
+
         }
 
     }
@@ -23,12 +23,13 @@ import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.squareup.picasso.Picasso;
-
 import java.util.List;
 
 import uk.org.crimetalk.R;
 import uk.org.crimetalk.adapters.items.ArticleContentItem;
+import uk.org.crimetalk.network.ConnectivityMonitor;
+import uk.org.crimetalk.network.DataUsage;
+import uk.org.crimetalk.utils.ImageUtils;
 
 /**
  * {@link android.widget.ArrayAdapter} that will be used to display items in the
@@ -38,6 +39,8 @@ public class ArticleContentAdapter extends ArrayAdapter<ArticleContentItem> {
 
     private final LayoutInflater mLayoutInflater;
 
+    private String mUsageLabel;
+
     /**
      * ViewHolder pattern as described
      * <a href="http://developer.android.com/training/improving-layouts/smooth-scrolling.html">here</a>.
@@ -93,10 +96,24 @@ public class ArticleContentAdapter extends ArrayAdapter<ArticleContentItem> {
 
             viewHolder.imageView.setVisibility(View.VISIBLE);
 
-            Picasso.with(getContext())
-                    .load(getItem(position).getImageUrl())
-                    .placeholder(R.drawable.picasso_placeholder)
-                    .into(viewHolder.imageView);
+            // Images should not be fetched on this network, e.g. while roaming, so only show the placeholder
+            if (ConnectivityMonitor.getInstance(getContext()).getPolicy().canFetchImages()) {
+
+                // The bytes of the image count towards the article
+                DataUsage.getInstance(getContext()).setImageLabel(getItem(position).getImageUrl(), mUsageLabel);
+
+                ImageUtils.getPicasso(getContext())
+                        .load(getItem(position).getImageUrl())
+                        .placeholder(R.drawable.picasso_placeholder)
+                        .into(viewHolder.imageView);
+
+            } else {
+
+                ImageUtils.getPicasso(getContext()).cancelRequest(viewHolder.imageView);
+
+                viewHolder.imageView.setImageResource(R.drawable.picasso_placeholder);
+
+            }
 
         } else {
 
@@ -118,6 +135,18 @@ public class ArticleContentAdapter extends ArrayAdapter<ArticleContentItem> {
 
     }
 
+    /**
+     * Sets the label the bytes of the images are attributed to by the
+     * {@link uk.org.crimetalk.network.DataUsage}.
+     *
+     * @param usageLabel The usage label, e.g. the title of the article
+     */
+    public void setUsageLabel(String usageLabel) {
+
+        this.mUsageLabel = usageLabel;
+
+    }
+
     /**
      * Sets a {@link uk.org.crimetalk.adapters.items.ArticleContentItem}
      * {@link java.util.List} to the {@link uk.org.crimetalk.adapters.ArticleContentAdapter}.
@@ -117,16 +117,26 @@ public class ArticleListAdapter extends ArrayAdapter<ArticleListItem> {
     /**
      * Sets a {@link uk.org.crimetalk.adapters.items.ArticleListItem}
      * {@link java.util.List} to the {@link uk.org.crimetalk.adapters.ArticleListAdapter}.
-     * This method will also clear any existing list.
+     * This method will also clear any existing list. Observers are notified once so a
+     * {@link android.widget.ListView} keeps its scroll position when the new list starts
+     * with the same items, e.g. when the complete list of a category replaces its first rows.
+     * This only holds while the adapter stays set, setting it on the ListView again scrolls
+     * back to the top.
      *
      * @param listItemArticleList The {@link uk.org.crimetalk.adapters.items.ArticleListItem}
      *                            {@link java.util.List} to be shown in the {@link uk.org.crimetalk.adapters.ArticleListAdapter}.
      */
     public void setData(List<ArticleListItem> listItemArticleList) {
 
+        // Clearing would otherwise notify the ListView of an empty list first
+        this.setNotifyOnChange(false);
+
         this.clear();
         this.addAll(listItemArticleList);
 
+        // Also turns notifying on changes back on
+        this.notifyDataSetChanged();
+
     }
 
 }
@@ -20,7 +20,6 @@ import android.animation.ObjectAnimator;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.Color;
-import android.graphics.Typeface;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcelable;
@@ -34,13 +33,10 @@ import android.view.ViewTreeObserver;
 import android.widget.AbsListView;
 import android.widget.TextView;
 
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import com.github.johnpersano.supertoasts.SuperActivityToast;
+import com.github.johnpersano.supertoasts.SuperToast;
+import com.github.johnpersano.supertoasts.util.Style;
 
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 import uk.org.crimetalk.ArticleContentActivity;
@@ -48,6 +44,12 @@ import uk.org.crimetalk.R;
 import uk.org.crimetalk.adapters.ArticleContentAdapter;
 import uk.org.crimetalk.adapters.items.ArticleContentItem;
 import uk.org.crimetalk.adapters.items.ArticleListItem;
+import uk.org.crimetalk.network.ConnectivityMonitor;
+import uk.org.crimetalk.network.FetchResult;
+import uk.org.crimetalk.network.FetchTicket;
+import uk.org.crimetalk.network.HttpRequest;
+import uk.org.crimetalk.network.PageFetcher;
+import uk.org.crimetalk.parsers.ArticleContentParser;
 import uk.org.crimetalk.utils.InternetUtils;
 import uk.org.crimetalk.utils.PreferenceUtils;
 
@@ -58,13 +60,14 @@ import uk.org.crimetalk.utils.PreferenceUtils;
  * @see {@link uk.org.crimetalk.adapters.ArticleContentAdapter}
  * @see {@link uk.org.crimetalk.adapters.items.ArticleContentItem}
  */
-public class ArticleContentFragment extends ListFragment implements LoaderManager.LoaderCallbacks<List<ArticleContentItem>> {
+public class ArticleContentFragment extends ListFragment implements LoaderManager.LoaderCallbacks<FetchResult<List<ArticleContentItem>>> {
 
     // Arg used to save ListView state on orientation change
     private static final String ARG_LISTVIEW_STATE = "listview_state";
 
     // Arg used for the Loader
     private static final String ARG_URL = "url";
+    private static final String ARG_TITLE = "title";
 
     // Animation duration of Toolbar hide/show
     private static final int ANIMATION_DURATION = 250;
@@ -100,6 +103,13 @@ public class ArticleContentFragment extends ListFragment implements LoaderManage
 
         mArticleContentAdapter = new ArticleContentAdapter(getActivity(), R.layout.row_article_content);
 
+        if (getArguments() != null) {
+
+            mArticleContentAdapter.setUsageLabel(((ArticleListItem) getArguments()
+                    .getParcelable(ArticleContentActivity.ARG_LIST_ITEM)).getTitle());
+
+        }
+
         // If returning from orientation change, grab the previous ListView state
         if (savedInstanceState != null) {
 
@@ -138,6 +148,8 @@ public class ArticleContentFragment extends ListFragment implements LoaderManage
 
             bundle.putString(ARG_URL, ((ArticleListItem) getArguments()
                     .getParcelable(ArticleContentActivity.ARG_LIST_ITEM)).getLink());
+            bundle.putString(ARG_TITLE, ((ArticleListItem) getArguments()
+                    .getParcelable(ArticleContentActivity.ARG_LIST_ITEM)).getTitle());
 
             getLoaderManager().initLoader(0, bundle, this);
 
@@ -174,33 +186,23 @@ public class ArticleContentFragment extends ListFragment implements LoaderManage
     }
 
     @Override
-    public Loader<List<ArticleContentItem>> onCreateLoader(int id, Bundle args) {
+    public Loader<FetchResult<List<ArticleContentItem>>> onCreateLoader(int id, Bundle args) {
 
         return new ArticleContentLoader(getActivity(), args);
 
     }
 
     @Override
-    public void onLoadFinished(Loader<List<ArticleContentItem>> loader, List<ArticleContentItem> articleContentItemList) {
-
-        // The Loader returned no results
-        if (articleContentItemList.size() == 0) {
-
-            // The device has Internet so something strange happened
-            if (InternetUtils.hasInternet(getActivity())) {
-
-                this.setEmptyText(getResources().getString(R.string.internet_error));
-                ((TextView) this.getListView().getEmptyView()).setTextColor(Color.GRAY);
-                ((TextView) this.getListView().getEmptyView()).setTextSize(22);
+    public void onLoadFinished(Loader<FetchResult<List<ArticleContentItem>>> loader, FetchResult<List<ArticleContentItem>> fetchResult) {
 
-                // The device has no Internet so remind the user
-            } else {
+        // The Loader returned no results, stale results are still better than an empty screen
+        if (!fetchResult.hasValue() || fetchResult.getValue().size() == 0) {
 
-                this.setEmptyText(getResources().getString(R.string.internet_none));
-                ((TextView) this.getListView().getEmptyView()).setTextColor(Color.GRAY);
-                ((TextView) this.getListView().getEmptyView()).setTextSize(22);
-
-            }
+            // Describe what went wrong, or remind the user if the device has no Internet
+            this.setEmptyText(fetchResult.isSuccessful() ? getResources().getString(R.string.internet_error)
+                    : InternetUtils.getFailureMessage(getActivity(), fetchResult));
+            ((TextView) this.getListView().getEmptyView()).setTextColor(Color.GRAY);
+            ((TextView) this.getListView().getEmptyView()).setTextSize(22);
 
             // The Loader returned results
         } else {
@@ -209,7 +211,7 @@ public class ArticleContentFragment extends ListFragment implements LoaderManage
                Toolbar overlay, get rid of it now that we have content to show */
             getActivity().findViewById(R.id.space).setVisibility(View.GONE);
 
-            this.mArticleContentAdapter.setData(articleContentItemList);
+            this.mArticleContentAdapter.setData(fetchResult.getValue());
 
             // There is no header on the ListView, set one to offset the Toolbar overlay
             if (getListView().getHeaderViewsCount() == 0) {
@@ -221,6 +223,15 @@ public class ArticleContentFragment extends ListFragment implements LoaderManage
 
             }
 
+            // The article could not be refreshed so let the user know this is a saved copy
+            if (fetchResult.isStale()) {
+
+                SuperActivityToast.create(getActivity(), String.format(getResources().getString(R.string.internet_stale),
+                        InternetUtils.getFailureMessage(getActivity(), fetchResult)),
+                        SuperToast.Duration.MEDIUM, Style.getStyle(Style.RED)).show();
+
+            }
+
         }
 
         this.setListAdapter(mArticleContentAdapter);
@@ -228,7 +239,7 @@ public class ArticleContentFragment extends ListFragment implements LoaderManage
     }
 
     @Override
-    public void onLoaderReset(Loader<List<ArticleContentItem>> loader) {
+    public void onLoaderReset(Loader<FetchResult<List<ArticleContentItem>>> loader) {
 
         // Nothing to clean up so do nothing
 
@@ -384,37 +395,41 @@ public class ArticleContentFragment extends ListFragment implements LoaderManage
      * Private {@link android.content.AsyncTaskLoader} that is used to
      * load the article.
      */
-    private static class ArticleContentLoader extends AsyncTaskLoader<List<ArticleContentItem>> {
+    private static class ArticleContentLoader extends AsyncTaskLoader<FetchResult<List<ArticleContentItem>>> {
 
         private static final String TAG = "ArticleContentLoader";
 
         private final String mUrl;
+        private final String mTitle;
+
+        private FetchResult<List<ArticleContentItem>> mFetchResult;
 
-        private List<ArticleContentItem> mArticleContentItems;
+        private volatile FetchTicket<List<ArticleContentItem>> mFetchTicket;
 
         /**
          * Public constructor for the {@link uk.org.crimetalk.fragments.ArticleContentFragment.ArticleContentLoader}.
          *
          * @param context A valid {@link android.content.Context}
-         * @param args    A {@link android.os.Bundle} that contains the URL
+         * @param args    A {@link android.os.Bundle} that contains the URL and the title
          */
         public ArticleContentLoader(Context context, Bundle args) {
             super(context);
 
             this.mUrl = args.getString(ARG_URL);
+            this.mTitle = args.getString(ARG_TITLE);
 
         }
 
         @Override
         protected void onStartLoading() {
 
-            if (mArticleContentItems != null) {
+            if (mFetchResult != null) {
 
-                deliverResult(mArticleContentItems);
+                deliverResult(mFetchResult);
 
             }
 
-            if (takeContentChanged() || mArticleContentItems == null) {
+            if (takeContentChanged() || mFetchResult == null) {
 
                 forceLoad();
 
@@ -423,72 +438,77 @@ public class ArticleContentFragment extends ListFragment implements LoaderManage
         }
 
         @Override
-        public List<ArticleContentItem> loadInBackground() {
+        public FetchResult<List<ArticleContentItem>> loadInBackground() {
 
-            // Create a new List to keep the ArticleContentItems in
-            final List<ArticleContentItem> articleContentItems = new ArrayList<>();
+            // Nothing may be fetched on the current network so only the last copy of the article can be shown
+            if (!ConnectivityMonitor.getInstance(getContext()).getPolicy().canFetchLists()) {
 
-            // May cause IOException
-            try {
+                return PageFetcher.getInstance().getOfflineResult(new HttpRequest(mUrl), ArticleContentParser.class);
 
-                /* Connect to the URL via Jsoup. The timeout can be adjusted in the
-                   Settings page by the user */
-                final Connection.Response response = Jsoup.connect(mUrl)
-                        .timeout(PreferenceUtils.getTimeout(getContext()))
-                        .execute();
+            }
 
-                /* This is what the Jsoup connection will look for when parsing the article.
-                   These parameters are specific to CrimeTalk articles */
-                final Elements tableElements = response.parse()
-                        .getElementsByClass("item-page")
-                        .select("p");
+            /* Fetch the article via the shared PageFetcher. Joomla's print view of the article is
+               requested, without the site chrome, unless it turns out not to hold the article.
+               Failed attempts are retried and a failed fetch still holds the last copy of the
+               article. The timeout can be adjusted in the Settings page by the user */
+            final FetchTicket<List<ArticleContentItem>> fetchTicket = PageFetcher.getInstance().fetchAsync(
+                    new HttpRequest(mUrl)
+                            .addLeanData("tmpl", "component")
+                            .addLeanData("print", "1")
+                            .setUsageLabel(mTitle)
+                            .setTimeout(PreferenceUtils.getTimeout(getContext())),
+                    new ArticleContentParser(getContext()));
 
-                // For loop for each potential ArticleContentItem
-                for (Element element : tableElements) {
+            mFetchTicket = fetchTicket;
 
-                    // If the ArticleContentItem has text or an image URL, add it to the list
-                    if ((!element.text().isEmpty() && element.text().length() > 1) ||
-                            element.select("img").first() != null) {
+            // The user may have left the article while the fetch was being started
+            if (isReset()) {
 
-                        articleContentItems.add(new ArticleContentItem()
-                                .setText(element.text().trim())
-                                .setTypeface(element.select("strong").first() != null && element //If "strong" than bold the text
-                                        .select("strong").first().text().equals(element.text()) ? Typeface.BOLD : Typeface.NORMAL)
-                                .setImageUrl(element.select("img").first() != null ? String.format(getContext().getResources()
-                                        .getString(R.string.base_url), element.select("img").first().attr("src")) : ""));
+                fetchTicket.cancel(true);
 
-                    }
+            }
 
-                }
+            final FetchResult<List<ArticleContentItem>> fetchResult = fetchTicket.getFetchResult();
 
-            } catch (IOException ioException) {
+            if (!fetchResult.isSuccessful()) {
 
-                Log.e(TAG, ioException.toString());
+                Log.e(TAG, fetchResult.getException() + " " + fetchResult);
 
             }
 
-            // If there are items in the List and the first one of them contains this dummy text, remove it
-            if (articleContentItems.size() > 0 && articleContentItems.get(0).getText().contains("User Rating")) {
+            return fetchResult;
 
-                articleContentItems.remove(0);
+        }
 
-            }
+        @Override
+        public void deliverResult(FetchResult<List<ArticleContentItem>> fetchResult) {
 
-            return articleContentItems;
+            this.mFetchResult = fetchResult;
+
+            if (isStarted()) {
+
+                super.deliverResult(fetchResult);
+
+            }
 
         }
 
         @Override
-        public void deliverResult(List<ArticleContentItem> articleContentItems) {
+        protected void onReset() {
+            super.onReset();
 
-            this.mArticleContentItems = articleContentItems;
+            /* Only gives up this Loader's share of the fetch. The article is aborted mid-download if
+               nobody else wants it and the background thread stops waiting for it straight away */
+            final FetchTicket<List<ArticleContentItem>> fetchTicket = mFetchTicket;
 
-            if (isStarted()) {
+            if (fetchTicket != null) {
 
-                super.deliverResult(articleContentItems);
+                fetchTicket.cancel(true);
 
             }
 
+            mFetchTicket = null;
+
         }
 
     }
@@ -25,6 +25,7 @@ import android.support.v4.content.Loader;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.util.Log;
@@ -34,18 +35,19 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.ListView;
 import android.widget.TextView;
 
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import com.github.johnpersano.supertoasts.SuperActivityToast;
+import com.github.johnpersano.supertoasts.SuperToast;
+import com.github.johnpersano.supertoasts.util.Style;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import uk.org.crimetalk.ArticleContentActivity;
 import uk.org.crimetalk.R;
@@ -53,6 +55,18 @@ import uk.org.crimetalk.SearchActivity;
 import uk.org.crimetalk.adapters.ArticleListAdapter;
 import uk.org.crimetalk.adapters.items.ArticleListItem;
 import uk.org.crimetalk.fragments.helpers.ArticleListHelper;
+import uk.org.crimetalk.fragments.helpers.ArticleListPrefetcher;
+import uk.org.crimetalk.network.ConnectivityMonitor;
+import uk.org.crimetalk.network.FetchResult;
+import uk.org.crimetalk.network.FetchTicket;
+import uk.org.crimetalk.network.HttpRequest;
+import uk.org.crimetalk.network.LoadStats;
+import uk.org.crimetalk.network.PageFetcher;
+import uk.org.crimetalk.network.RequestScheduler;
+import uk.org.crimetalk.parsers.ArticleFeedParser;
+import uk.org.crimetalk.parsers.ArticleListParser;
+import uk.org.crimetalk.sync.ArticleListStore;
+import uk.org.crimetalk.sync.SyncScheduler;
 import uk.org.crimetalk.utils.DialogUtils;
 import uk.org.crimetalk.utils.InternetUtils;
 import uk.org.crimetalk.utils.PreferenceUtils;
@@ -65,7 +79,8 @@ import uk.org.crimetalk.utils.PreferenceUtils;
  * @see {@link uk.org.crimetalk.fragments.PressCuttingsFragment}
  */
 public class ArticleListFragment extends ListFragment implements SwipeRefreshLayout.OnRefreshListener,
-        LoaderManager.LoaderCallbacks<List<ArticleListItem>>, AdapterView.OnItemClickListener, AdapterView.OnItemLongClickListener {
+        LoaderManager.LoaderCallbacks<FetchResult<List<ArticleListItem>>>, AdapterView.OnItemClickListener, AdapterView.OnItemLongClickListener,
+        AbsListView.OnScrollListener {
 
     // Arg for an ArticleListHelper. This object holds information required for loading the List
     private static final String ARG_ARTICLE_LIST_HELPER = "article_list_helper";
@@ -79,6 +94,9 @@ public class ArticleListFragment extends ListFragment implements SwipeRefreshLay
     // Arg used to check if SwipeRefreshLayout was refreshing before orientation change
     private static final String ARG_SWIPE_REFRESH_REFRESHING = "swipe_refresh_refreshing";
 
+    // The next page is loaded when the user scrolls this close to the end of the List
+    private static final int LOAD_MORE_THRESHOLD = 10;
+
     private SwipeRefreshLayout mSwipeRefreshLayout;
     private ArticleListAdapter mArticleListAdapter;
 
@@ -106,6 +124,18 @@ public class ArticleListFragment extends ListFragment implements SwipeRefreshLay
 
     }
 
+    /**
+     * Returns the {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper} this
+     * {@link uk.org.crimetalk.fragments.ArticleListFragment} was created with.
+     *
+     * @return {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}
+     */
+    public ArticleListHelper getArticleListHelper() {
+
+        return getArguments().getParcelable(ARG_ARTICLE_LIST_HELPER);
+
+    }
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -183,6 +213,9 @@ public class ArticleListFragment extends ListFragment implements SwipeRefreshLay
         // Force load to make sure the SwipeRefresh icon disappears on orientation change
         getLoaderManager().initLoader(0, bundle, this).forceLoad();
 
+        // Loads more pages while the user scrolls
+        getListView().setOnScrollListener(this);
+
     }
 
     @Override
@@ -216,7 +249,32 @@ public class ArticleListFragment extends ListFragment implements SwipeRefreshLay
     @Override
     public void onRefresh() {
 
-        getLoaderManager().getLoader(0).forceLoad();
+        getArticleListLoader().refresh();
+
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView absListView, int scrollState) {
+
+        // Do nothing
+
+    }
+
+    @Override
+    public void onScroll(AbsListView absListView, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+
+        // Start loading the next page before the user reaches the end of the List
+        if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - LOAD_MORE_THRESHOLD) {
+
+            final ArticleListLoader articleListLoader = getArticleListLoader();
+
+            if (articleListLoader != null) {
+
+                articleListLoader.loadNextPage();
+
+            }
+
+        }
 
     }
 
@@ -275,7 +333,7 @@ public class ArticleListFragment extends ListFragment implements SwipeRefreshLay
 
                 mSwipeRefreshLayout.setRefreshing(true);
 
-                getLoaderManager().getLoader(0).forceLoad();
+                getArticleListLoader().refresh();
 
                 return true;
 
@@ -289,40 +347,69 @@ public class ArticleListFragment extends ListFragment implements SwipeRefreshLay
     }
 
     @Override
-    public Loader<List<ArticleListItem>> onCreateLoader(int id, Bundle args) {
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+
+        // The ViewPager calls this before the Fragment is added for tabs it loads off screen
+        if (isAdded()) {
+
+            final ArticleListLoader articleListLoader = getArticleListLoader();
+
+            if (articleListLoader != null) {
 
-        return new ArticleListLoader(getActivity(), args);
+                articleListLoader.setVisible(isVisibleToUser);
+
+            }
+
+        }
 
     }
 
     @Override
-    public void onLoadFinished(Loader<List<ArticleListItem>> loader, List<ArticleListItem> data) {
+    public Loader<FetchResult<List<ArticleListItem>>> onCreateLoader(int id, Bundle args) {
 
-        this.setListAdapter(mArticleListAdapter);
+        final ArticleListLoader articleListLoader = new ArticleListLoader(getActivity(), args);
+        articleListLoader.setVisible(getUserVisibleHint());
 
-        // The Loader returned no results
-        if (data.size() == 0) {
+        return articleListLoader;
 
-            // The device has Internet so something strange happened
-            if (InternetUtils.hasInternet(getActivity())) {
+    }
 
-                this.setEmptyText(getResources().getString(R.string.internet_error));
-                ((TextView) this.getListView().getEmptyView()).setTextColor(Color.GRAY);
-                ((TextView) this.getListView().getEmptyView()).setTextSize(22);
+    @Override
+    public void onLoadFinished(Loader<FetchResult<List<ArticleListItem>>> loader, FetchResult<List<ArticleListItem>> fetchResult) {
 
-            // The device has no Internet so remind the user
-            } else {
+        /* Setting the adapter scrolls the ListView back to the top, so it is only set by the first load.
+           Later pages and the complete list are passed to the adapter, which keeps the scroll position */
+        if (getListAdapter() == null) {
 
-                this.setEmptyText(getResources().getString(R.string.internet_none));
-                ((TextView) this.getListView().getEmptyView()).setTextColor(Color.GRAY);
-                ((TextView) this.getListView().getEmptyView()).setTextSize(22);
+            this.setListAdapter(mArticleListAdapter);
 
-            }
+        }
+
+        // Every page loaded so far, possibly stale ones which are still better than an empty screen
+        final List<ArticleListItem> articleListItems = ((ArticleListLoader) loader).getArticleListItems();
+
+        if (articleListItems.size() > 0) {
+
+            this.mArticleListAdapter.setData(articleListItems);
+
+        }
+
+        // The Loader returned no results
+        if (mArticleListAdapter.isEmpty()) {
 
-        // The Loader returned results
-        } else {
+            // Describe what went wrong, or remind the user if the device has no Internet
+            this.setEmptyText(fetchResult.isSuccessful() ? getResources().getString(R.string.internet_error)
+                    : InternetUtils.getFailureMessage(getActivity(), fetchResult));
+            ((TextView) this.getListView().getEmptyView()).setTextColor(Color.GRAY);
+            ((TextView) this.getListView().getEmptyView()).setTextSize(22);
 
-            this.mArticleListAdapter.setData(data);
+        // The List or one of its pages could not be refreshed so let the user know they are looking at older articles
+        } else if (!fetchResult.isSuccessful() && fetchResult.getFailure() != FetchResult.FAILURE_CANCELLED) {
+
+            SuperActivityToast.create(getActivity(), String.format(getResources().getString(R.string.internet_stale),
+                    InternetUtils.getFailureMessage(getActivity(), fetchResult)),
+                    SuperToast.Duration.MEDIUM, Style.getStyle(Style.RED)).show();
 
         }
 
@@ -332,12 +419,26 @@ public class ArticleListFragment extends ListFragment implements SwipeRefreshLay
     }
 
     @Override
-    public void onLoaderReset(Loader<List<ArticleListItem>> loader) {
+    public void onLoaderReset(Loader<FetchResult<List<ArticleListItem>>> loader) {
 
         // Nothing to clean up so do nothing
 
     }
 
+    /**
+     * Private method.
+     * Returns the {@link uk.org.crimetalk.fragments.ArticleListFragment.ArticleListLoader} of this Fragment.
+     *
+     * @return {@link uk.org.crimetalk.fragments.ArticleListFragment.ArticleListLoader} or null if not created yet
+     */
+    private ArticleListLoader getArticleListLoader() {
+
+        final Loader<FetchResult<List<ArticleListItem>>> loader = getLoaderManager().getLoader(0);
+
+        return (ArticleListLoader) loader;
+
+    }
+
     /**
      * Private method.
      * Starts a new {@link uk.org.crimetalk.SearchActivity}.
@@ -378,17 +479,51 @@ public class ArticleListFragment extends ListFragment implements SwipeRefreshLay
 
     /**
      * Private {@link android.content.AsyncTaskLoader} that is used to
-     * load the article List.
+     * load the article List. When paged loading is on each load fetches a
+     * single page and the pages are kept by the Loader. Otherwise the List is
+     * loaded in two phases, the first page is shown as soon as it arrives and
+     * the complete List is then loaded in the background and merged in. The
+     * first rows of a category with a feed source come from its feed instead.
      */
-    private static class ArticleListLoader extends AsyncTaskLoader<List<ArticleListItem>> {
+    private static class ArticleListLoader extends AsyncTaskLoader<FetchResult<List<ArticleListItem>>> {
 
         private static final String TAG = "ArticleListLoader";
 
-        private final String mUrl;
-        private final String mJsoupClass;
-        private final String mJsoupSelection;
+        // Phases of a load when paged loading is off
+        private static final int PHASE_FIRST_ROWS = 0;
+        private static final int PHASE_COMPLETE = 1;
+
+        private final ArticleListHelper mArticleListHelper;
+        private final boolean mPagedLoading;
 
-        private List<ArticleListItem> mListItemArticleList;
+        // Pages loaded so far. Without paged loading the only page holds the entire List
+        private final List<List<ArticleListItem>> mPages = new ArrayList<>();
+
+        private FetchResult<List<ArticleListItem>> mFetchResult;
+
+        private boolean mLastPageLoaded;
+        private boolean mPageFailed;
+        private boolean mLoadingPage;
+
+        // The page and phase fetched by the current load
+        private volatile int mPage;
+        private volatile int mPhase;
+
+        // True if the current load fetches the feed
+        private volatile boolean mFeedLoad;
+
+        // True until the first rows have been delivered, only those may come from a recent prefetch
+        private volatile boolean mFirstLoad = true;
+
+        // Start of the current refresh, 0 once its timings have been recorded
+        private long mLoadStartTime;
+        private boolean mFirstRowsShown;
+
+        // The fetch of the current load, kept until its result has been delivered
+        private volatile FetchTicket<List<ArticleListItem>> mFetchTicket;
+
+        // Tabs the ViewPager loads next to the visible one are fetched behind it
+        private volatile int mPriority = RequestScheduler.PRIORITY_VISIBLE;
 
         /**
          * Public constructor for the {@link uk.org.crimetalk.fragments.ArticleListFragment.ArticleListLoader}.
@@ -399,25 +534,94 @@ public class ArticleListFragment extends ListFragment implements SwipeRefreshLay
         public ArticleListLoader(Context context, Bundle args) {
             super(context);
 
-            final ArticleListHelper articleListHelper = args.getParcelable(ARG_ARTICLE_LIST_HELPER);
+            this.mArticleListHelper = args.getParcelable(ARG_ARTICLE_LIST_HELPER);
+            this.mPagedLoading = PreferenceUtils.getPagedLoading(context);
+
+        }
+
+        /**
+         * Loads the first page again. Later pages are kept if the first page has not shifted.
+         */
+        public void refresh() {
+
+            mPageFailed = false;
+            mFirstLoad = false;
+
+            startTiming();
+            loadPage(0, PHASE_FIRST_ROWS);
+
+        }
+
+        /**
+         * Loads the page after the last loaded page unless there is none or a page is already loading.
+         * A page that failed to load is only tried again after a {@link #refresh()}.
+         */
+        public void loadNextPage() {
+
+            if (!mPagedLoading || mPages.isEmpty() || mLastPageLoaded || mPageFailed || mLoadingPage) {
+
+                return;
+
+            }
+
+            loadPage(mPages.size(), PHASE_FIRST_ROWS);
+
+        }
+
+        /**
+         * Set whether the List is on screen. Fetches of a List that is not are queued behind those of
+         * the visible List, a fetch that is still queued when its List comes on screen is moved up.
+         *
+         * @param visible True if the List is visible to the user
+         */
+        public void setVisible(boolean visible) {
+
+            mPriority = visible ? RequestScheduler.PRIORITY_VISIBLE : RequestScheduler.PRIORITY_PREFETCH;
+
+            final FetchTicket<List<ArticleListItem>> fetchTicket = mFetchTicket;
+
+            if (visible && fetchTicket != null) {
+
+                fetchTicket.promote(RequestScheduler.PRIORITY_VISIBLE);
+
+            }
 
-            this.mUrl = articleListHelper.getUrl();
-            this.mJsoupClass = articleListHelper.getJsoupClass();
-            this.mJsoupSelection = articleListHelper.getJsoupSelection();
+        }
+
+        /**
+         * Returns every {@link uk.org.crimetalk.adapters.items.ArticleListItem} of the pages loaded so far.
+         *
+         * @return {@link java.util.List} of {@link uk.org.crimetalk.adapters.items.ArticleListItem}
+         */
+        public List<ArticleListItem> getArticleListItems() {
+
+            final List<ArticleListItem> articleListItems = new ArrayList<>();
+
+            for (List<ArticleListItem> page : mPages) {
+
+                articleListItems.addAll(page);
+
+            }
+
+            return articleListItems;
 
         }
 
         @Override
         protected void onStartLoading() {
 
-            if (mListItemArticleList != null) {
+            // The last result is delivered again as is, its page has already been added
+            if (mFetchResult != null) {
 
-                deliverResult(mListItemArticleList);
+                super.deliverResult(mFetchResult);
 
             }
 
-            if (takeContentChanged() || mListItemArticleList == null) {
+            if (takeContentChanged() || mFetchResult == null) {
 
+                mFeedLoad = isFeedLoad(mPage, mPhase);
+
+                startTiming();
                 forceLoad();
 
             }
@@ -425,71 +629,398 @@ public class ArticleListFragment extends ListFragment implements SwipeRefreshLay
         }
 
         @Override
-        public List<ArticleListItem> loadInBackground() {
+        public FetchResult<List<ArticleListItem>> loadInBackground() {
 
-            // Create a new List to keep the ArticleListItems in
-            final List<ArticleListItem> articleListItems = new ArrayList<>();
+            // Nothing may be fetched on the current network so only the last List of the page can be shown
+            if (!ConnectivityMonitor.getInstance(getContext()).getPolicy().canFetchLists()) {
+
+                // Without paged loading the complete List is all the more useful
+                return PageFetcher.getInstance().getOfflineResult(newHttpRequest(mPage, PHASE_COMPLETE), ArticleListParser.class);
+
+            }
+
+            final boolean feedLoad = mFeedLoad;
 
-            // May cause IOException
-            try {
+            final HttpRequest httpRequest = feedLoad ?
+                    mArticleListHelper.newFeedRequest(PreferenceUtils.getTimeout(getContext())) : newHttpRequest(mPage, mPhase);
 
-                /* Connect to the URL via Jsoup. The data posted ensures the entire
-                   list of articles can be grabbed by Jsoup. The timeout can be adjusted in the
+            httpRequest.setPriority(mPriority);
+
+            /* Rows prefetched a moment ago by the ArticleListPrefetcher, or a List kept by the background
+               sync, are shown without fetching them again */
+            if (mFirstLoad) {
+
+                final FetchResult<List<ArticleListItem>> recentResult = PageFetcher.getInstance()
+                        .getRecentResult(httpRequest, feedLoad ? ArticleFeedParser.class : ArticleListParser.class,
+                                ArticleListPrefetcher.MAX_AGE_MILLIS);
+
+                if (recentResult != null) {
+
+                    return recentResult;
+
+                }
+
+                final List<ArticleListItem> storedArticleListItems = ArticleListStore.getInstance(getContext())
+                        .getList(mArticleListHelper.getUrl(), SyncScheduler.MAX_AGE_MILLIS);
+
+                // The background sync keeps complete Lists, a paged load only takes their first page
+                if (storedArticleListItems != null) {
+
+                    if (mPagedLoading) {
+
+                        return FetchResult.fromValue(storedArticleListItems.subList(0,
+                                Math.min(ArticleListHelper.PAGE_SIZE, storedArticleListItems.size())));
+
+                    }
+
+                    // The stored List is complete so there is no second phase to load
+                    mPhase = PHASE_COMPLETE;
+
+                    return FetchResult.fromValue(storedArticleListItems);
+
+                }
+
+            }
+
+            FetchTicket<List<ArticleListItem>> fetchTicket = mFetchTicket;
+
+            /* A load cancelled by forceLoad(), e.g. after an orientation change, leaves its fetch behind.
+               That fetch is still current so it is used rather than starting another one */
+            if (fetchTicket == null || fetchTicket.isCancelled()) {
+
+                /* Fetch the page via the shared PageFetcher. An unchanged page is revalidated and
+                   the previous List is returned without parsing. If a SearchQueryLoader is already
+                   fetching this page the fetch is shared. Failed attempts are retried and a failed
+                   fetch still holds the last List of the page. The timeout can be adjusted in the
                    Settings page by the user */
-                final Connection.Response response = Jsoup.connect(mUrl)
-                        .data("limit", "0")
-                        .method(Connection.Method.POST)
-                        .timeout(PreferenceUtils.getTimeout(getContext()))
-                        .execute();
-
-                /* This is what the Jsoup connection will look for when parsing the article.
-                   These parameters are specific to CrimeTalk article lists */
-                final Elements tableElements = response.parse()
-                        .getElementsByClass(mJsoupClass)
-                        .select(mJsoupSelection);
-
-                // For loop for each potential ArticleListItem
-                for (Element element : tableElements) {
-
-                    articleListItems.add(new ArticleListItem()
-                            .setTitle(element.getElementsByClass("list-title").text().trim())
-                            .setDate(element.getElementsByClass("list-date").text().trim())
-                            .setAuthor(element.getElementsByClass("list-author").text().trim())
-                            .setHits(element.getElementsByClass("list-hits").text().contains("Hits:") ?
-                                    null : String.format(getContext().getResources().getString(R.string.hits), element.getElementsByClass("list-hits").text().trim()))
-                            .setLink(String.format(getContext().getResources()
-                                    .getString(R.string.base_url), element.select("a").first().attr("href"))));
+                fetchTicket = PageFetcher.getInstance().fetchAsync(httpRequest, feedLoad ?
+                        new ArticleFeedParser(getContext()) : new ArticleListParser(getContext(), mArticleListHelper));
+
+                mFetchTicket = fetchTicket;
+
+                // The ViewPager may have destroyed the tab while the fetch was being started
+                if (isReset()) {
+
+                    fetchTicket.cancel(true);
 
                 }
 
-            } catch (IOException ioException) {
+            }
+
+            final FetchResult<List<ArticleListItem>> fetchResult = fetchTicket.getFetchResult();
+
+            // Without a feed, e.g. feeds are turned off for the category, the first rows come from the page
+            if (feedLoad && (fetchResult.getFailure() == FetchResult.FAILURE_PARSE
+                    || fetchResult.getFailure() == FetchResult.FAILURE_HTTP_STATUS)) {
+
+                Log.e(TAG, fetchResult.getException() + " " + fetchResult);
 
-                Log.e(TAG, ioException.toString());
+                mFeedLoad = false;
+                mArticleListHelper.setFeedUnusable();
+                mFetchTicket = null;
+
+                return loadInBackground();
 
             }
 
-            // If there are items in the List and the first one of them contains this dummy text, remove it
-            if (articleListItems.size() > 0 && articleListItems.get(0).getTitle().equalsIgnoreCase("Title")) {
+            if (!fetchResult.isSuccessful()) {
 
-                articleListItems.remove(0);
+                Log.e(TAG, fetchResult.getException() + " " + fetchResult);
 
             }
 
-            return articleListItems;
+            return fetchResult;
 
         }
 
         @Override
-        public void deliverResult(List<ArticleListItem> listItemArticleList) {
+        public void deliverResult(FetchResult<List<ArticleListItem>> fetchResult) {
+
+            this.mFetchResult = fetchResult;
+
+            final int phase = mPhase;
+
+            mLoadingPage = false;
+
+            if (fetchResult.hasValue()) {
+
+                mFirstLoad = false;
+
+                // The feed has no hits, a category whose page shows them no longer uses its feed
+                if (ArticleListHelper.hasHits(fetchResult.getValue())) {
+
+                    mArticleListHelper.setFeedUnusable();
 
-            this.mListItemArticleList = listItemArticleList;
+                }
+
+                addPage(mPage, phase, fetchResult.getValue());
+
+                recordTimings(phase, fetchResult);
+
+            } else if (mPage > 0) {
+
+                mPageFailed = true;
+
+            }
+
+            // The next load should fetch the page again
+            final FetchTicket<List<ArticleListItem>> fetchTicket = mFetchTicket;
+
+            if (fetchTicket != null && fetchTicket.isDone()) {
+
+                mFetchTicket = null;
+
+            }
 
             if (isStarted()) {
 
-                super.deliverResult(listItemArticleList);
+                super.deliverResult(fetchResult);
+
+            }
+
+            // The first rows are shown so the rest of the List is loaded in the background
+            if (!mPagedLoading && phase == PHASE_FIRST_ROWS && fetchResult.isSuccessful()) {
+
+                loadPage(0, PHASE_COMPLETE);
+
+            }
+
+        }
+
+        @Override
+        protected void onReset() {
+            super.onReset();
+
+            /* Only gives up this Loader's share, another Loader may be waiting for the same page. The page
+               is aborted mid-download if nobody else wants it and the background thread stops waiting */
+            final FetchTicket<List<ArticleListItem>> fetchTicket = mFetchTicket;
+
+            if (fetchTicket != null) {
+
+                fetchTicket.cancel(true);
+
+            }
+
+            mFetchTicket = null;
+
+        }
+
+        /**
+         * Private method.
+         * Starts a load of a single page or phase.
+         */
+        private void loadPage(int page, int phase) {
+
+            // A fetch left behind for another page or phase is no longer wanted
+            final FetchTicket<List<ArticleListItem>> fetchTicket = mFetchTicket;
+
+            if (fetchTicket != null && (mPage != page || mPhase != phase)) {
+
+                fetchTicket.cancel(true);
+
+                mFetchTicket = null;
+
+            }
+
+            mPage = page;
+            mPhase = phase;
+            mFeedLoad = isFeedLoad(page, phase);
+            mLoadingPage = true;
+
+            forceLoad();
+
+        }
+
+        /**
+         * Private method.
+         * Returns true if a page or phase should be loaded from the feed. The feed only holds the
+         * newest articles so it is only used for the first rows of a List that has not been shown,
+         * a refresh merges its first rows into the List by link and the feed's links may differ.
+         * Whether the category starts with its feed at all is decided by the
+         * {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}, the prefetch asks the same.
+         */
+        private boolean isFeedLoad(int page, int phase) {
+
+            return page == 0 && phase == PHASE_FIRST_ROWS && mPages.isEmpty() && mArticleListHelper.isFeedFirst(mPagedLoading);
+
+        }
+
+        /**
+         * Private method.
+         * Returns a new {@link uk.org.crimetalk.network.HttpRequest} for a page, or for a phase
+         * if paged loading is off. The first rows are the first page of the category.
+         */
+        private HttpRequest newHttpRequest(int page, int phase) {
+
+            final int timeout = PreferenceUtils.getTimeout(getContext());
+
+            if (mPagedLoading || phase == PHASE_FIRST_ROWS) {
+
+                return mArticleListHelper.newHttpRequest(timeout, mPagedLoading ? page : 0);
+
+            }
+
+            return mArticleListHelper.newHttpRequest(timeout);
+
+        }
+
+        /**
+         * Private method.
+         * Starts timing a load from the start to its first rows and to its complete List.
+         */
+        private void startTiming() {
+
+            mLoadStartTime = SystemClock.elapsedRealtime();
+            mFirstRowsShown = false;
+
+        }
+
+        /**
+         * Private method.
+         * Records the timings of a load whose result is about to be shown.
+         */
+        private void recordTimings(int phase, FetchResult<List<ArticleListItem>> fetchResult) {
+
+            if (mLoadStartTime == 0) {
+
+                return;
+
+            }
+
+            final long elapsedMillis = SystemClock.elapsedRealtime() - mLoadStartTime;
+
+            if (!mFirstRowsShown) {
+
+                mFirstRowsShown = true;
+
+                LoadStats.getInstance().recordFirstRows(elapsedMillis);
+
+            }
+
+            // Pages are loaded as the user scrolls so only a two phase load has a complete List to time
+            if (mPagedLoading) {
+
+                mLoadStartTime = 0;
+
+            } else if (phase == PHASE_COMPLETE) {
+
+                if (fetchResult.isSuccessful()) {
+
+                    LoadStats.getInstance().recordCompleteList(elapsedMillis);
+
+                }
+
+                mLoadStartTime = 0;
+
+            }
+
+        }
+
+        /**
+         * Private method.
+         * Adds a loaded page to the pages loaded so far.
+         */
+        private void addPage(int page, int phase, List<ArticleListItem> articleListItems) {
+
+            if (!mPagedLoading) {
+
+                // The first rows of a refresh are merged in, the rest of the List stays until it is complete
+                if (phase == PHASE_FIRST_ROWS && !mPages.isEmpty()) {
+
+                    mPages.set(0, mergeFirstRows(articleListItems, mPages.get(0)));
+
+                } else {
+
+                    mPages.clear();
+                    mPages.add(articleListItems);
+
+                }
+
+                mLastPageLoaded = true;
+
+                return;
 
             }
 
+            if (page == 0) {
+
+                // New articles are added at the top, if the first page has shifted so has every later page
+                if (mPages.size() > 1 && ArticleListHelper.isSamePage(mPages.get(0), articleListItems)) {
+
+                    mPages.set(0, articleListItems);
+
+                    return;
+
+                }
+
+                mPages.clear();
+                mPages.add(articleListItems);
+
+                mLastPageLoaded = ArticleListHelper.isLastPage(articleListItems);
+
+                return;
+
+            }
+
+            // The pages before it were dropped by a refresh so this page no longer follows on
+            if (page > mPages.size()) {
+
+                return;
+
+            }
+
+            // Joomla returned the previous page again so there are no more pages
+            if (ArticleListHelper.isSamePage(mPages.get(page - 1), articleListItems)) {
+
+                mLastPageLoaded = true;
+
+                return;
+
+            }
+
+            if (page < mPages.size()) {
+
+                mPages.set(page, articleListItems);
+
+            } else {
+
+                mPages.add(articleListItems);
+
+                mLastPageLoaded = ArticleListHelper.isLastPage(articleListItems);
+
+            }
+
+        }
+
+        /**
+         * Private method.
+         * Returns the first rows followed by the articles of the List that are not among them.
+         */
+        private static List<ArticleListItem> mergeFirstRows(List<ArticleListItem> firstRows,
+                                                            List<ArticleListItem> articleListItems) {
+
+            final Set<String> firstRowLinks = new HashSet<>();
+
+            for (ArticleListItem articleListItem : firstRows) {
+
+                firstRowLinks.add(articleListItem.getLink());
+
+            }
+
+            final List<ArticleListItem> mergedArticleListItems = new ArrayList<>(firstRows);
+
+            for (ArticleListItem articleListItem : articleListItems) {
+
+                if (!firstRowLinks.contains(articleListItem.getLink())) {
+
+                    mergedArticleListItems.add(articleListItem);
+
+                }
+
+            }
+
+            return mergedArticleListItems;
+
         }
 
     }
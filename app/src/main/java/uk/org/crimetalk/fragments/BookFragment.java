@@ -25,10 +25,11 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.squareup.picasso.Picasso;
-
 import uk.org.crimetalk.R;
 import uk.org.crimetalk.fragments.helpers.BookHelper;
+import uk.org.crimetalk.network.ConnectivityMonitor;
+import uk.org.crimetalk.network.DataUsage;
+import uk.org.crimetalk.utils.ImageUtils;
 
 /**
  * {@link android.app.Fragment} that shows CrimeTalk book information.
@@ -69,11 +70,21 @@ public class BookFragment extends Fragment {
 
             final BookHelper bookHelper = getArguments().getParcelable(ARG_BOOK_HELPER);
 
-            // Load the book cover with Picasso
-            Picasso.with(getActivity())
-                    .load(bookHelper.getCoverUrl())
-                    .placeholder(R.drawable.picasso_placeholder)
-                    .into(((ImageView) view.findViewById(R.id.cover)));
+            // Load the book cover with Picasso unless images should not be fetched on this network
+            if (ConnectivityMonitor.getInstance(getActivity()).getPolicy().canFetchImages()) {
+
+                DataUsage.getInstance(getActivity()).setImageLabel(bookHelper.getCoverUrl(), bookHelper.getTitle());
+
+                ImageUtils.getPicasso(getActivity())
+                        .load(bookHelper.getCoverUrl())
+                        .placeholder(R.drawable.picasso_placeholder)
+                        .into(((ImageView) view.findViewById(R.id.cover)));
+
+            } else {
+
+                ((ImageView) view.findViewById(R.id.cover)).setImageResource(R.drawable.picasso_placeholder);
+
+            }
 
             ((TextView) view.findViewById(R.id.title)).setText(bookHelper.getTitle());
             ((TextView) view.findViewById(R.id.author)).setText(bookHelper.getAuthor());
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.fragments;
+
+import android.app.Fragment;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import uk.org.crimetalk.R;
+import uk.org.crimetalk.network.ConnectivityMonitor;
+import uk.org.crimetalk.network.DataUsage;
+
+/**
+ * {@link android.app.Fragment} that displays the bytes received per day, per network type
+ * and per category or article, along with how much of the monthly budget has been used.
+ *
+ * @see {@link uk.org.crimetalk.DataUsageActivity}
+ */
+public class DataUsageFragment extends Fragment {
+
+    private TextView mReportTextView;
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+
+        final View view = inflater.inflate(R.layout.fragment_data_usage, container, false);
+
+        mReportTextView = (TextView) view.findViewById(R.id.report);
+
+        return view;
+
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+
+        // Data may have been used while this Fragment was in the background
+        showReport();
+
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+
+        // The user may leave the app from here so keep what has been recorded so far
+        DataUsage.getInstance(getActivity()).flush();
+
+    }
+
+    /**
+     * Private method.
+     * Shows the current data usage.
+     */
+    private void showReport() {
+
+        mReportTextView.setText(getResources().getString(R.string.data_usage_policy) + "\n"
+                + ConnectivityMonitor.getInstance(getActivity()).getPolicy() + "\n\n"
+                + DataUsage.getInstance(getActivity()));
+
+    }
+
+}
@@ -63,6 +63,7 @@ public class LibraryFragment extends PagerFragment {
 
         final Resources resources = context.getResources();
 
+        // Library rows show hits, which the feeds do not have, so these keep the default HTML source
         return Arrays.asList(
                 new ArticleListHelper(resources.getString(R.string.library_featured_articles),
                         FEATURED_ARTICLES_URL, JSOUP_CLASS, JSOUP_SELECTION, ArticleListHelper.LIBRARY_FRAGMENT),
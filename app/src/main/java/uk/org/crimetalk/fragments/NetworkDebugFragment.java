@@ -0,0 +1,287 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.fragments;
+
+import android.app.Activity;
+import android.app.Fragment;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.github.johnpersano.supertoasts.SuperActivityToast;
+import com.github.johnpersano.supertoasts.SuperToast;
+import com.github.johnpersano.supertoasts.util.Style;
+
+import java.io.File;
+import java.io.IOException;
+
+import uk.org.crimetalk.R;
+import uk.org.crimetalk.network.AllocationStats;
+import uk.org.crimetalk.network.BufferPool;
+import uk.org.crimetalk.network.ConnectionWarmer;
+import uk.org.crimetalk.network.ConnectivityMonitor;
+import uk.org.crimetalk.network.HttpTransport;
+import uk.org.crimetalk.network.LoadStats;
+import uk.org.crimetalk.network.PageFetcher;
+import uk.org.crimetalk.network.RequestScheduler;
+import uk.org.crimetalk.network.TimingStats;
+import uk.org.crimetalk.parsers.ListExtractionBenchmark;
+import uk.org.crimetalk.sync.ArticleListStore;
+
+/**
+ * {@link android.app.Fragment} that displays the latency estimates, connection pool
+ * statistics and transfer sizes kept by the network layer.
+ *
+ * @see {@link uk.org.crimetalk.NetworkDebugActivity}
+ */
+public class NetworkDebugFragment extends Fragment {
+
+    private static final String TAG = "NetworkDebugFragment";
+
+    // Tab separated so the file opens straight into a spreadsheet
+    private static final String TIMINGS_FILE_NAME = "network_timings.tsv";
+
+    private TextView mReportTextView;
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        // This Fragment has its own options menu
+        this.setHasOptionsMenu(true);
+
+    }
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+
+        final View view = inflater.inflate(R.layout.fragment_network_debug, container, false);
+
+        mReportTextView = (TextView) view.findViewById(R.id.report);
+
+        return view;
+
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+
+        // The state may have changed while this Fragment was in the background
+        showReport();
+
+    }
+
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+
+        inflater.inflate(R.menu.fragment_network_debug, menu);
+
+        menu.findItem(R.id.lean_pages).setChecked(PageFetcher.getInstance().isLeanPagesEnabled());
+        menu.findItem(R.id.pooled_buffers).setChecked(BufferPool.getInstance().isEnabled());
+        menu.findItem(R.id.early_stop).setChecked(HttpTransport.getInstance().isEarlyStopEnabled());
+        menu.findItem(R.id.count_allocations).setChecked(AllocationStats.getInstance().isEnabled());
+
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+
+        switch (item.getItemId()) {
+
+            case R.id.refresh:
+
+                showReport();
+
+                return true;
+
+            case R.id.lean_pages:
+
+                // Turning lean pages off measures the full pages for the page variant report
+                item.setChecked(!item.isChecked());
+                PageFetcher.getInstance().setLeanPagesEnabled(item.isChecked());
+
+                return true;
+
+            case R.id.pooled_buffers:
+
+                // Turning the pool off measures Jsoup's own buffering for the allocation report
+                item.setChecked(!item.isChecked());
+                BufferPool.getInstance().setEnabled(item.isChecked());
+
+                return true;
+
+            case R.id.early_stop:
+
+                // Turning early stopping off measures the full pages the skipped bytes are estimated from
+                item.setChecked(!item.isChecked());
+                HttpTransport.getInstance().setEarlyStopEnabled(item.isChecked());
+
+                return true;
+
+            case R.id.count_allocations:
+
+                item.setChecked(!item.isChecked());
+                AllocationStats.getInstance().setEnabled(item.isChecked());
+
+                return true;
+
+            case R.id.benchmark_lists:
+
+                benchmarkLists();
+
+                return true;
+
+            case R.id.save_timings:
+
+                saveTimings();
+
+                return true;
+
+            default:
+
+                return super.onOptionsItemSelected(item);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Shows the current state of the network layer.
+     */
+    private void showReport() {
+
+        final HttpTransport httpTransport = HttpTransport.getInstance();
+
+        mReportTextView.setText(getResources().getString(R.string.network_debug_connectivity) + "\n"
+                + ConnectivityMonitor.getInstance(getActivity()).getPolicy() + "\n\n"
+                + getResources().getString(R.string.network_debug_latency) + "\n"
+                + httpTransport.getLatencyEstimator() + "\n"
+                + getResources().getString(R.string.network_debug_host_health) + "\n"
+                + httpTransport.getHostHealth() + "\n\n"
+                + getResources().getString(R.string.network_debug_rate_limits) + "\n"
+                + httpTransport.getRateLimiter() + "\n\n"
+                + getResources().getString(R.string.network_debug_connections) + "\n"
+                + httpTransport.getStats() + "\n\n"
+                + getResources().getString(R.string.network_debug_warm_ups) + "\n"
+                + ConnectionWarmer.getInstance(getActivity()) + "\n\n"
+                + getResources().getString(R.string.network_debug_scheduler) + "\n"
+                + RequestScheduler.getInstance() + "\n\n"
+                + getResources().getString(R.string.network_debug_pages) + "\n"
+                + PageFetcher.getInstance() + "\n\n"
+                + getResources().getString(R.string.network_debug_list_loads) + "\n"
+                + LoadStats.getInstance() + "\n\n"
+                + getResources().getString(R.string.network_debug_timings) + "\n"
+                + TimingStats.getInstance() + "\n\n"
+                + getResources().getString(R.string.network_debug_allocations) + "\n"
+                + BufferPool.getInstance() + "\n"
+                + AllocationStats.getInstance() + "\n\n"
+                + getResources().getString(R.string.network_debug_variants) + "\n"
+                + PageFetcher.getInstance().getVariantStats() + "\n\n"
+                + getResources().getString(R.string.network_debug_list_extraction) + "\n"
+                + ListExtractionBenchmark.getInstance() + "\n\n"
+                + getResources().getString(R.string.network_debug_sync) + "\n"
+                + ArticleListStore.getInstance(getActivity()) + "\n\n"
+                + getResources().getString(R.string.network_debug_transfers) + "\n"
+                + httpTransport.getTransferStats());
+
+    }
+
+    /**
+     * Private method.
+     * Measures the rows per second of list extraction in the background and shows the
+     * outcome in the report once it is done.
+     */
+    private void benchmarkLists() {
+
+        SuperActivityToast.create(getActivity(), getResources().getString(R.string.network_debug_benchmark_running),
+                SuperToast.Duration.SHORT, Style.getStyle(Style.BLACK)).show();
+
+        final Activity activity = getActivity();
+
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                ListExtractionBenchmark.getInstance().run(activity);
+
+                activity.runOnUiThread(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        // The user may have left the screen while the benchmark ran
+                        if (isAdded()) {
+
+                            showReport();
+
+                        }
+
+                    }
+
+                });
+
+            }
+
+        }).start();
+
+    }
+
+    /**
+     * Private method.
+     * Writes the request phase histograms to the app's external files directory, where they
+     * can be pulled off the device for analysis.
+     */
+    private void saveTimings() {
+
+        final File directory = getActivity().getExternalFilesDir(null);
+
+        try {
+
+            // Shared storage may be unavailable, e.g. while mounted on a computer
+            if (directory == null) {
+
+                throw new IOException("No external files directory");
+
+            }
+
+            final File file = new File(directory, TIMINGS_FILE_NAME);
+
+            TimingStats.getInstance().dump(file);
+
+            SuperActivityToast.create(getActivity(), String.format(getResources().getString(R.string.network_debug_timings_saved),
+                    file.getAbsolutePath()), SuperToast.Duration.MEDIUM, Style.getStyle(Style.BLACK)).show();
+
+        } catch (IOException ioException) {
+
+            Log.e(TAG, ioException.toString());
+
+            SuperActivityToast.create(getActivity(), getResources().getString(R.string.network_debug_timings_failed),
+                    SuperToast.Duration.SHORT, Style.getStyle(Style.RED)).show();
+
+        }
+
+    }
+
+}
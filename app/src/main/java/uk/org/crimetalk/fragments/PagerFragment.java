@@ -30,13 +30,17 @@ import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import uk.org.crimetalk.R;
+import uk.org.crimetalk.fragments.helpers.ArticleListHelper;
+import uk.org.crimetalk.fragments.helpers.ArticleListPrefetcher;
 import uk.org.crimetalk.views.TabStrip;
 
 /**
  * {@link android.app.Fragment} that handles {@link android.support.v4.view.ViewPager}
- * navigation.
+ * navigation. The categories the user is likely to swipe to next are prefetched
+ * by an {@link uk.org.crimetalk.fragments.helpers.ArticleListPrefetcher}.
  *
  * @see {@link uk.org.crimetalk.fragments.LibraryFragment}
  * @see {@link uk.org.crimetalk.fragments.PressCuttingsFragment}
@@ -50,6 +54,7 @@ public class PagerFragment extends Fragment {
     private final ArrayList<Fragment> mFragments;
 
     private ViewPager mViewPager;
+    private ArticleListPrefetcher mArticleListPrefetcher;
 
     /**
      * Empty public constructor for the {@link uk.org.crimetalk.fragments.PagerFragment}.
@@ -85,7 +90,22 @@ public class PagerFragment extends Fragment {
         mViewPager = (ViewPager) view.findViewById(R.id.viewpager);
         mViewPager.setAdapter(new CustomFragmentPagerAdapter(getChildFragmentManager()));
 
-        ((TabStrip) view.findViewById(R.id.tabstrip)).setViewPager(mViewPager);
+        final TabStrip tabStrip = (TabStrip) view.findViewById(R.id.tabstrip);
+        tabStrip.setViewPager(mViewPager);
+
+        mArticleListPrefetcher = new ArticleListPrefetcher(getActivity());
+
+        // The TabStrip owns the ViewPager's listener and passes page changes on
+        tabStrip.setOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
+
+            @Override
+            public void onPageSelected(int position) {
+
+                prefetchAround(position);
+
+            }
+
+        });
 
         if (savedInstanceState == null && shouldAddQuickNav()) {
 
@@ -93,10 +113,20 @@ public class PagerFragment extends Fragment {
 
         }
 
+        prefetchAround(mViewPager.getCurrentItem());
+
         return view;
 
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+
+        mArticleListPrefetcher.cancel();
+
+    }
+
     /**
      * This method should be overridden in any class that extends
      * {@link uk.org.crimetalk.fragments.PagerFragment}.
@@ -129,6 +159,9 @@ public class PagerFragment extends Fragment {
      */
     public void setViewPagerPosition(int position) {
 
+        // A jump makes the prefetches around the previous position useless
+        mArticleListPrefetcher.cancel();
+
         position++;
         mViewPager.setCurrentItem(position);
 
@@ -151,6 +184,34 @@ public class PagerFragment extends Fragment {
 
     }
 
+    /**
+     * Private method.
+     * Prefetches the categories on either side of a position that the
+     * {@link android.support.v4.view.ViewPager} has not created yet. The pages within its
+     * offscreen page limit are created straight away and load themselves, the pages just
+     * past it are the ones a further swipe would land on while they are still loading.
+     */
+    private void prefetchAround(int position) {
+
+        final int distance = mViewPager.getOffscreenPageLimit() + 1;
+
+        final List<ArticleListHelper> articleListHelpers = new ArrayList<>();
+
+        for (int prefetchPosition : new int[] {position + distance, position - distance}) {
+
+            if (prefetchPosition >= 0 && prefetchPosition < mFragments.size()
+                    && mFragments.get(prefetchPosition) instanceof ArticleListFragment) {
+
+                articleListHelpers.add(((ArticleListFragment) mFragments.get(prefetchPosition)).getArticleListHelper());
+
+            }
+
+        }
+
+        mArticleListPrefetcher.prefetch(articleListHelpers);
+
+    }
+
     /**
      * Private void.
      * Add a {@link uk.org.crimetalk.fragments.PagerFragment.QuickNavFragment}
@@ -84,7 +84,7 @@ public class PressCuttingsFragment extends PagerFragment {
 
         final Resources resources = context.getResources();
 
-        return Arrays.asList(
+        final List<ArticleListHelper> articleListHelpers = Arrays.asList(
                 new ArticleListHelper(resources.getString(R.string.presscuttings_economic_corporate),
                         ECONOMIC_CORPORATE_URL, JSOUP_CLASS, JSOUP_SELECTION, ArticleListHelper.PRESSCUTTINGS_FRAGMENT),
                 new ArticleListHelper(resources.getString(R.string.presscuttings_media_stigma),
@@ -120,6 +120,19 @@ public class PressCuttingsFragment extends PagerFragment {
                 new ArticleListHelper(resources.getString(R.string.presscuttings_history),
                         HISTORY_URL, JSOUP_CLASS, JSOUP_SELECTION, ArticleListHelper.PRESSCUTTINGS_FRAGMENT));
 
+        // Weblink rows only show their titles so their first rows can come from the much smaller feeds
+        for (ArticleListHelper articleListHelper : articleListHelpers) {
+
+            if (JSOUP_CLASS.equals(articleListHelper.getJsoupClass())) {
+
+                articleListHelper.setSource(ArticleListHelper.SOURCE_FEED);
+
+            }
+
+        }
+
+        return articleListHelpers;
+
     }
 
 }
@@ -18,6 +18,7 @@ package uk.org.crimetalk.fragments;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.support.v4.app.ListFragment;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.AsyncTaskLoader;
@@ -27,18 +28,17 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.util.Log;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.TextView;
 
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import uk.org.crimetalk.ArticleContentActivity;
 import uk.org.crimetalk.R;
@@ -46,6 +46,13 @@ import uk.org.crimetalk.SearchActivity;
 import uk.org.crimetalk.adapters.ArticleListAdapter;
 import uk.org.crimetalk.adapters.items.ArticleListItem;
 import uk.org.crimetalk.fragments.helpers.ArticleListHelper;
+import uk.org.crimetalk.network.ConnectivityMonitor;
+import uk.org.crimetalk.network.FetchResult;
+import uk.org.crimetalk.network.FetchTicket;
+import uk.org.crimetalk.network.HttpRequest;
+import uk.org.crimetalk.network.PageFetcher;
+import uk.org.crimetalk.network.RequestScheduler;
+import uk.org.crimetalk.parsers.ArticleListParser;
 import uk.org.crimetalk.utils.DialogUtils;
 import uk.org.crimetalk.utils.InternetUtils;
 import uk.org.crimetalk.utils.PreferenceUtils;
@@ -54,15 +61,24 @@ import uk.org.crimetalk.utils.PreferenceUtils;
  * {@link android.app.Fragment} that handles search functions.
  */
 public class SearchFragment extends ListFragment implements LoaderManager.LoaderCallbacks<List<ArticleListItem>>,
-        AdapterView.OnItemClickListener, AdapterView.OnItemLongClickListener {
+        AdapterView.OnItemClickListener, AdapterView.OnItemLongClickListener, AbsListView.OnScrollListener {
 
     private static final String TAG = "SearchFragment";
 
     // Arg for the search query
     private static final String ARG_QUERY = "query";
 
+    // More pages are searched straight away until there are this many matches
+    private static final int MIN_MATCHES = 20;
+
+    // More pages are searched when the user scrolls this close to the end of the matches
+    private static final int SEARCH_MORE_THRESHOLD = 10;
+
     private ArticleListAdapter mArticleListAdapter;
 
+    // Shown below the matches while categories that missed the search deadline are still loading
+    private TextView mPendingTextView;
+
     /**
      * Static factory constructor for the {@link uk.org.crimetalk.fragments.SearchFragment}.
      *
@@ -103,6 +119,16 @@ public class SearchFragment extends ListFragment implements LoaderManager.Loader
         getListView().setOnItemClickListener(this);
         getListView().setOnItemLongClickListener(this);
 
+        // Footers must be added before the adapter is set on older versions of Android
+        final View pendingView = LayoutInflater.from(getActivity()).inflate(R.layout.footer_search_pending, getListView(), false);
+        mPendingTextView = (TextView) pendingView.findViewById(R.id.pending);
+        getListView().addFooterView(pendingView, null, false);
+
+        /* Setting the adapter scrolls the ListView back to the top, so it is set once and every load
+           only passes its matches to it. The progress is shown until the first matches arrive */
+        this.setListAdapter(mArticleListAdapter);
+        this.setListShownNoAnimation(false);
+
         final Bundle bundle = new Bundle();
         bundle.putParcelableArrayList(SearchActivity.ARG_ARTICLE_LIST_HELPER_LIST, articleListHelperList);
         bundle.putString(ARG_QUERY, getArguments().getString(ARG_QUERY));
@@ -110,6 +136,9 @@ public class SearchFragment extends ListFragment implements LoaderManager.Loader
         // Start a load with the new query
         getLoaderManager().initLoader(0, bundle, this);
 
+        // Searches more pages while the user scrolls
+        getListView().setOnScrollListener(this);
+
     }
 
     @Override
@@ -149,6 +178,31 @@ public class SearchFragment extends ListFragment implements LoaderManager.Loader
 
     }
 
+    @Override
+    public void onScrollStateChanged(AbsListView absListView, int scrollState) {
+
+        // Do nothing
+
+    }
+
+    @Override
+    public void onScroll(AbsListView absListView, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+
+        // Start searching the next pages before the user reaches the end of the matches
+        if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - SEARCH_MORE_THRESHOLD) {
+
+            final Loader<List<ArticleListItem>> loader = getLoaderManager().getLoader(0);
+
+            if (loader != null) {
+
+                ((SearchQueryLoader) loader).searchNextPages();
+
+            }
+
+        }
+
+    }
+
     @Override
     public Loader<List<ArticleListItem>> onCreateLoader(int id, Bundle args) {
 
@@ -159,8 +213,6 @@ public class SearchFragment extends ListFragment implements LoaderManager.Loader
     @Override
     public void onLoadFinished(Loader<List<ArticleListItem>> loader, List<ArticleListItem> data) {
 
-        this.setListAdapter(mArticleListAdapter);
-
         // Sometimes this method is called before content view is created
         new Handler().postDelayed(new Runnable() {
 
@@ -181,8 +233,32 @@ public class SearchFragment extends ListFragment implements LoaderManager.Loader
 
         }, 1000);
 
-        // The Loader returned no results
-        if (data.size() == 0) {
+        final SearchQueryLoader searchQueryLoader = (SearchQueryLoader) loader;
+        final int pendingCategories = searchQueryLoader.getPendingCategories();
+
+        // Let the user know that slow categories will be added to the matches when they arrive
+        if (pendingCategories > 0) {
+
+            mPendingTextView.setText(getResources().getQuantityString(R.plurals.search_pending,
+                    pendingCategories, pendingCategories));
+            mPendingTextView.setVisibility(View.VISIBLE);
+
+        } else {
+
+            mPendingTextView.setVisibility(View.GONE);
+
+        }
+
+        // Nothing has matched so far but some categories have not answered yet
+        if (data.size() == 0 && pendingCategories > 0) {
+
+            this.setEmptyText(getResources().getQuantityString(R.plurals.search_pending,
+                    pendingCategories, pendingCategories));
+            ((TextView) this.getListView().getEmptyView()).setTextColor(Color.GRAY);
+            ((TextView) this.getListView().getEmptyView()).setTextSize(22);
+
+        // The Loader returned no results and there is nothing left to search
+        } else if (data.size() == 0 && !searchQueryLoader.hasMorePages()) {
 
             // The device has Internet so something strange happened
             if (InternetUtils.hasInternet(getActivity())) {
@@ -201,12 +277,19 @@ public class SearchFragment extends ListFragment implements LoaderManager.Loader
             }
 
         // The Loader returned results
-        } else {
+        } else if (data.size() > 0) {
 
             this.mArticleListAdapter.setData(data);
 
         }
 
+        // Keep searching until the screen is filled, the rest is searched while the user scrolls
+        if (data.size() < MIN_MATCHES) {
+
+            searchQueryLoader.searchNextPages();
+
+        }
+
     }
 
     @Override
@@ -218,16 +301,42 @@ public class SearchFragment extends ListFragment implements LoaderManager.Loader
 
     /**
      * Private {@link android.content.AsyncTaskLoader} that is used to
-     * search through the article List.
+     * search through the article List. When paged loading is on each load
+     * searches the next page of every category that has pages left and adds
+     * the matches to those of the previous loads.
+     * <p/>
+     * A load waits for its categories no longer than the search deadline. The
+     * matches found by then are delivered and every category that is still
+     * loading is merged in by the loads that follow, one delivery per arrival.
      */
     private static class SearchQueryLoader extends AsyncTaskLoader<List<ArticleListItem>> {
 
         private static final String TAG = "SearchQueryLoader";
 
         private final String mSearchQuery;
+        private final boolean mPagedLoading;
+        private final int mSearchDeadline;
 
         public final List<ArticleListHelper> mArticleListHelperList;
-        private List<ArticleListItem> mArticleListItems;
+        private volatile List<ArticleListItem> mArticleListItems;
+
+        // Paging state of each category, only used by loadInBackground() which never runs twice at once
+        private final int[] mNextPages;
+        private final List<List<ArticleListItem>> mLastPages;
+
+        // Number of categories that have pages left, read on the main thread
+        private volatile int mUnfinishedCategories;
+
+        private boolean mSearchingPages;
+
+        // Fetches of the current load, one for each category, and those of late categories
+        private final List<FetchTicket<List<ArticleListItem>>> mFetchTickets = new ArrayList<>();
+
+        // Categories that missed the deadline of a load in category order, only used by loadInBackground()
+        private final Map<FetchTicket<List<ArticleListItem>>, Integer> mLateCategories = new LinkedHashMap<>();
+
+        // Number of late categories, read on the main thread
+        private volatile int mPendingCategories;
 
         /**
          * Public constructor for the {@link uk.org.crimetalk.fragments.SearchFragment.SearchQueryLoader}.
@@ -241,6 +350,58 @@ public class SearchFragment extends ListFragment implements LoaderManager.Loader
 
             this.mArticleListHelperList = args.getParcelableArrayList(SearchActivity.ARG_ARTICLE_LIST_HELPER_LIST);
             this.mSearchQuery = args.getString(ARG_QUERY);
+            this.mPagedLoading = PreferenceUtils.getPagedLoading(context);
+            this.mSearchDeadline = PreferenceUtils.getSearchDeadline(context);
+            this.mNextPages = new int[mArticleListHelperList.size()];
+            this.mLastPages = new ArrayList<>();
+
+            for (int i = 0; i < mArticleListHelperList.size(); i++) {
+
+                mLastPages.add(null);
+
+            }
+
+            this.mUnfinishedCategories = mArticleListHelperList.size();
+
+        }
+
+        /**
+         * Searches the next page of every category that has pages left, unless a search is
+         * already running or a category has not answered yet. Does nothing if paged loading is off.
+         */
+        public void searchNextPages() {
+
+            if (!hasMorePages() || mSearchingPages || mPendingCategories > 0 || mArticleListItems == null) {
+
+                return;
+
+            }
+
+            mSearchingPages = true;
+
+            forceLoad();
+
+        }
+
+        /**
+         * Returns true if some categories have pages that have not been searched yet.
+         *
+         * @return true if there are more pages
+         */
+        public boolean hasMorePages() {
+
+            return mPagedLoading && mUnfinishedCategories > 0;
+
+        }
+
+        /**
+         * Returns the number of categories that missed the search deadline and are still loading.
+         *
+         * @return Number of late categories
+         */
+        public int getPendingCategories() {
+
+            return mPendingCategories;
 
         }
 
@@ -264,83 +425,382 @@ public class SearchFragment extends ListFragment implements LoaderManager.Loader
         @Override
         public List<ArticleListItem> loadInBackground() {
 
-            // Create a new List to keep the ArticleListItems in
-            final List<ArticleListItem> articleListItems = new ArrayList<>();
+            // Case is ignored when comparing ArticleListItems with the search query
+            final String searchQuery = mSearchQuery.toLowerCase();
 
-            // For each item to be searched through
-            for (ArticleListHelper articleListHelper : mArticleListHelperList) {
+            // Categories that missed the deadline of the last load are merged in before anything else is searched
+            if (!mLateCategories.isEmpty()) {
 
-                // May cause IOException
-                try {
+                return mergeLateCategories(searchQuery);
+
+            }
 
-                    /* Connect to the URL via Jsoup. The data posted ensures the entire
-                       list of articles can be grabbed by Jsoup. The timeout can be adjusted in the
-                       Settings page by the user */
-                    final Connection.Response response = Jsoup.connect(articleListHelper.getUrl())
-                            .data("limit", "0")
-                            .method(Connection.Method.POST)
-                            .timeout(PreferenceUtils.getTimeout(getContext()))
-                            .execute();
-
-                    /* This is what the Jsoup connection will look for when parsing the article.
-                       These parameters are specific to CrimeTalk article lists */
-                    final Elements tableElements = response.parse()
-                            .getElementsByClass(articleListHelper.getJsoupClass())
-                            .select(articleListHelper.getJsoupSelection());
-
-                    // For loop for each potential ArticleListItem
-                    for (Element element : tableElements) {
-
-                        // Compare ArticleListItems with search query ignoring text case
-                        if (element.getElementsByClass("list-title").text().toLowerCase().contains(mSearchQuery.toLowerCase()) ||
-                                element.getElementsByClass("list-date").text().toLowerCase().contains(mSearchQuery.toLowerCase()) ||
-                                element.getElementsByClass("list-author").text().toLowerCase().contains(mSearchQuery.toLowerCase())) {
-
-                            final ArticleListItem articleListItem = new ArticleListItem()
-                                    .setTitle(element.getElementsByClass("list-title").text().trim())
-                                    .setDate(element.getElementsByClass("list-date").text().trim())
-                                    .setAuthor(element.getElementsByClass("list-author").text().trim())
-                                    .setHits(element.getElementsByClass("list-hits").text().contains("Hits:") ?
-                                            null : String.format(getContext().getResources().getString(R.string.hits), element.getElementsByClass("list-hits").text().trim()))
-                                    .setLink(String.format(getContext().getResources()
-                                            .getString(R.string.base_url), element.select("a").first().attr("href")));
-
-                            articleListItems.add(articleListItem);
+            // Matches of earlier pages are kept, without paged loading there are none
+            final List<ArticleListItem> articleListItems = mPagedLoading && mArticleListItems != null ?
+                    new ArrayList<>(mArticleListItems) : new ArrayList<ArticleListItem>();
 
-                        }
+            // Categories that have pages left, every category when paged loading is off
+            final List<Integer> categories = new ArrayList<>();
+            final List<HttpRequest> httpRequests = new ArrayList<>();
 
-                    }
+            for (int i = 0; i < mArticleListHelperList.size(); i++) {
+
+                if (!mPagedLoading) {
 
-                } catch (IOException ioException) {
+                    categories.add(i);
+                    httpRequests.add(mArticleListHelperList.get(i).newHttpRequest(PreferenceUtils.getTimeout(getContext()))
+                            .setPriority(RequestScheduler.PRIORITY_SEARCH));
 
-                    Log.e(TAG, ioException.toString());
+                } else if (mNextPages[i] >= 0) {
+
+                    categories.add(i);
+                    httpRequests.add(mArticleListHelperList.get(i).newHttpRequest(PreferenceUtils.getTimeout(getContext()), mNextPages[i])
+                            .setPriority(RequestScheduler.PRIORITY_SEARCH));
+
+                }
+
+            }
+
+            // Nothing may be fetched on the current network so only the last List of every category is searched
+            if (!ConnectivityMonitor.getInstance(getContext()).getPolicy().canFetchLists()) {
+
+                for (int i = 0; i < categories.size(); i++) {
+
+                    addPage(articleListItems, categories.get(i),
+                            PageFetcher.getInstance().getOfflineResult(httpRequests.get(i), ArticleListParser.class), searchQuery);
 
                 }
 
+                return articleListItems;
+
+            }
+
+            // The search deadline counts from the moment the fetches are started
+            final long startTime = SystemClock.elapsedRealtime();
+
+            /* Fetch every category via the shared PageFetcher at the same time. A category that has not
+               changed since it was last shown is revalidated and its previous List is searched without
+               parsing. A category that is already being fetched, e.g. by the open ArticleListFragment,
+               is shared and moved up to search priority. The timeout can be adjusted in the Settings
+               page by the user */
+            final List<FetchTicket<List<ArticleListItem>>> fetchTickets = new ArrayList<>();
+
+            for (int i = 0; i < categories.size(); i++) {
+
+                fetchTickets.add(PageFetcher.getInstance().fetchAsync(httpRequests.get(i),
+                        new ArticleListParser(getContext(), mArticleListHelperList.get(categories.get(i)))));
+
+            }
+
+            synchronized (mFetchTickets) {
+
+                mFetchTickets.addAll(fetchTickets);
+
             }
 
-            // If there are items in the List and the first one of them contains this dummy text, remove it
-            if (articleListItems.size() > 0 && articleListItems.get(0).getTitle().equalsIgnoreCase("Title")) {
+            // An interrupted Loader stops searching
+            boolean cancelled = !awaitDeadline(fetchTickets, startTime);
+
+            // Results are merged in category order no matter which category finished first
+            for (int i = 0; i < fetchTickets.size() && !cancelled; i++) {
+
+                // A category that missed the deadline keeps loading and is merged in when it arrives
+                if (!fetchTickets.get(i).isDone()) {
+
+                    mLateCategories.put(fetchTickets.get(i), categories.get(i));
+
+                    continue;
+
+                }
 
-                articleListItems.remove(0);
+                cancelled = !addFetchResult(articleListItems, categories.get(i), fetchTickets.get(i), searchQuery);
 
             }
 
+            finishLoad(cancelled);
+
             return articleListItems;
 
         }
 
+        /**
+         * Private method.
+         * Waits for the next late categories to arrive and adds their matches to those already delivered.
+         */
+        private List<ArticleListItem> mergeLateCategories(String searchQuery) {
+
+            final List<ArticleListItem> articleListItems = mArticleListItems != null ?
+                    new ArrayList<>(mArticleListItems) : new ArrayList<ArticleListItem>();
+
+            boolean cancelled = false;
+
+            try {
+
+                PageFetcher.getInstance().awaitAny(new ArrayList<>(mLateCategories.keySet()), 0);
+
+            } catch (InterruptedException interruptedException) {
+
+                Thread.currentThread().interrupt();
+
+                cancelled = true;
+
+            }
+
+            // Every category that has arrived by now is merged in, still in category order
+            final Iterator<Map.Entry<FetchTicket<List<ArticleListItem>>, Integer>> iterator = mLateCategories.entrySet().iterator();
+
+            while (iterator.hasNext() && !cancelled) {
+
+                final Map.Entry<FetchTicket<List<ArticleListItem>>, Integer> lateCategory = iterator.next();
+
+                if (lateCategory.getKey().isDone()) {
+
+                    cancelled = !addFetchResult(articleListItems, lateCategory.getValue(), lateCategory.getKey(), searchQuery);
+
+                    iterator.remove();
+
+                }
+
+            }
+
+            finishLoad(cancelled);
+
+            return articleListItems;
+
+        }
+
+        /**
+         * Private method.
+         * Waits until every fetch is done or the search deadline has passed. Returns false if the
+         * wait was interrupted.
+         */
+        private boolean awaitDeadline(List<FetchTicket<List<ArticleListItem>>> fetchTickets, long startTime) {
+
+            final List<FetchTicket<List<ArticleListItem>>> waitingTickets = new ArrayList<>(fetchTickets);
+
+            try {
+
+                while (!waitingTickets.isEmpty()) {
+
+                    // Without a deadline the search waits for every category
+                    final long remainingMillis = mSearchDeadline == 0 ? 0 :
+                            startTime + mSearchDeadline - SystemClock.elapsedRealtime();
+
+                    if ((mSearchDeadline > 0 && remainingMillis <= 0)
+                            || !PageFetcher.getInstance().awaitAny(waitingTickets, remainingMillis)) {
+
+                        return true;
+
+                    }
+
+                    final Iterator<FetchTicket<List<ArticleListItem>>> iterator = waitingTickets.iterator();
+
+                    while (iterator.hasNext()) {
+
+                        if (iterator.next().isDone()) {
+
+                            iterator.remove();
+
+                        }
+
+                    }
+
+                }
+
+            } catch (InterruptedException interruptedException) {
+
+                Thread.currentThread().interrupt();
+
+                return false;
+
+            }
+
+            return true;
+
+        }
+
+        /**
+         * Private method.
+         * Searches the result of a finished fetch. Returns false if the fetch was cancelled.
+         */
+        private boolean addFetchResult(List<ArticleListItem> matches, int category, FetchTicket<List<ArticleListItem>> fetchTicket,
+                                       String searchQuery) {
+
+            final FetchResult<List<ArticleListItem>> fetchResult = fetchTicket.getFetchResult();
+
+            if (fetchResult.getFailure() == FetchResult.FAILURE_CANCELLED) {
+
+                return false;
+
+            }
+
+            // A failed category is searched in its stale List if there is one, otherwise it is skipped
+            if (!fetchResult.isSuccessful()) {
+
+                Log.e(TAG, fetchResult.getException() + " " + fetchResult);
+
+            }
+
+            addPage(matches, category, fetchResult, searchQuery);
+
+            return true;
+
+        }
+
+        /**
+         * Private method.
+         * Lets go of the fetches of a load. Late categories keep loading unless the load was interrupted.
+         */
+        private void finishLoad(boolean cancelled) {
+
+            synchronized (mFetchTickets) {
+
+                if (cancelled) {
+
+                    // Categories left unread after an interruption are given up, this has no effect on finished ones
+                    for (FetchTicket<List<ArticleListItem>> fetchTicket : mFetchTickets) {
+
+                        fetchTicket.cancel(true);
+
+                    }
+
+                    mFetchTickets.clear();
+                    mLateCategories.clear();
+
+                } else {
+
+                    mFetchTickets.retainAll(mLateCategories.keySet());
+
+                }
+
+            }
+
+            mPendingCategories = mLateCategories.size();
+
+        }
+
         @Override
         public void deliverResult(List<ArticleListItem> articleListItems) {
 
             this.mArticleListItems = articleListItems;
 
+            mSearchingPages = false;
+
             if (isStarted()) {
 
                 super.deliverResult(articleListItems);
 
             }
 
+            // The next load waits for the late categories and merges each one in as soon as it arrives
+            if (mPendingCategories > 0) {
+
+                onContentChanged();
+
+            }
+
+        }
+
+        /**
+         * Private method.
+         * Searches a page of a category and moves the category on to its next page.
+         */
+        private void addPage(List<ArticleListItem> matches, int category, FetchResult<List<ArticleListItem>> fetchResult,
+                             String searchQuery) {
+
+            if (!mPagedLoading) {
+
+                if (fetchResult.hasValue()) {
+
+                    addMatches(matches, fetchResult.getValue(), searchQuery);
+
+                }
+
+                return;
+
+            }
+
+            final List<ArticleListItem> page = fetchResult.hasValue() ? fetchResult.getValue() : null;
+            final List<ArticleListItem> lastPage = mLastPages.get(category);
+
+            // A page that could not be loaded or a repeat of the last page ends the category
+            if (page == null || (lastPage != null && ArticleListHelper.isSamePage(lastPage, page))) {
+
+                finishCategory(category);
+
+                return;
+
+            }
+
+            addMatches(matches, page, searchQuery);
+
+            if (ArticleListHelper.isLastPage(page)) {
+
+                finishCategory(category);
+
+            } else {
+
+                mLastPages.set(category, page);
+                mNextPages[category]++;
+
+            }
+
+        }
+
+        /**
+         * Private method.
+         * Marks a category as having no pages left.
+         */
+        private void finishCategory(int category) {
+
+            mNextPages[category] = -1;
+            mLastPages.set(category, null);
+
+            mUnfinishedCategories--;
+
+        }
+
+        /**
+         * Private method.
+         * Adds the {@link uk.org.crimetalk.adapters.items.ArticleListItem} of a category that match the query.
+         */
+        private static void addMatches(List<ArticleListItem> matches, List<ArticleListItem> categoryItems, String searchQuery) {
+
+            // For loop for each potential ArticleListItem
+            for (ArticleListItem articleListItem : categoryItems) {
+
+                // Compare ArticleListItems with search query ignoring text case
+                if (articleListItem.getTitle().toLowerCase().contains(searchQuery) ||
+                        articleListItem.getDate().toLowerCase().contains(searchQuery) ||
+                        articleListItem.getAuthor().toLowerCase().contains(searchQuery)) {
+
+                    matches.add(articleListItem);
+
+                }
+
+            }
+
+        }
+
+        @Override
+        protected void onReset() {
+            super.onReset();
+
+            // Only gives up this Loader's share of each fetch, an ArticleListLoader may be waiting for the same page
+            synchronized (mFetchTickets) {
+
+                for (FetchTicket<List<ArticleListItem>> fetchTicket : mFetchTickets) {
+
+                    fetchTicket.cancel(true);
+
+                }
+
+                mFetchTickets.clear();
+
+            }
+
+            mPendingCategories = 0;
+
         }
 
     }
@@ -18,6 +18,15 @@ package uk.org.crimetalk.fragments.helpers;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import uk.org.crimetalk.adapters.items.ArticleListItem;
+import uk.org.crimetalk.network.HttpRequest;
+import uk.org.crimetalk.parsers.ListRules;
+
 /**
  * Helper class that holds references to various background information necessary
  * to load an {@link uk.org.crimetalk.fragments.ArticleListFragment}.
@@ -28,11 +37,21 @@ public class ArticleListHelper implements Parcelable {
     public static final int LIBRARY_FRAGMENT = 0;
     public static final int PRESSCUTTINGS_FRAGMENT = 1;
 
+    // Sources the first rows of a category can be loaded from
+    public static final int SOURCE_HTML = 0;
+    public static final int SOURCE_FEED = 1;
+
+    // Number of articles in each page of a paged category, must be one of Joomla's list limits
+    public static final int PAGE_SIZE = 25;
+
     private String mTitle;
     private String mUrl;
-    private String mJsoupClass;
-    private String mJsoupSelection;
+    // URLs of categories whose feed turned out to be unusable, shared by every copy of a helper
+    private static final Set<String> sUnusableFeeds = Collections.synchronizedSet(new HashSet<String>());
+
+    private ListRules mListRules;
     private int mFragmentIdentifier;
+    private int mSource;
 
     /**
      * Public constructor for the {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}.
@@ -49,8 +68,7 @@ public class ArticleListHelper implements Parcelable {
 
         this.mTitle = title;
         this.mUrl = url;
-        this.mJsoupClass = jsoupClass;
-        this.mJsoupSelection = jsoupSelection;
+        this.mListRules = new ListRules(jsoupClass, jsoupSelection);
         this.mFragmentIdentifier = fragmentIdentifier;
 
     }
@@ -96,7 +114,7 @@ public class ArticleListHelper implements Parcelable {
      */
     public ArticleListHelper setJsoupClass(String jsoupClass) {
 
-        this.mJsoupClass = jsoupClass;
+        this.mListRules.setContainerClass(jsoupClass);
 
         return this;
 
@@ -113,7 +131,23 @@ public class ArticleListHelper implements Parcelable {
      */
     public ArticleListHelper setJsoupSelection(String jsoupSelection) {
 
-        this.mJsoupSelection = jsoupSelection;
+        this.mListRules.setRowSelector(jsoupSelection);
+
+        return this;
+
+    }
+
+    /**
+     * Set the {@link uk.org.crimetalk.parsers.ListRules} of the {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}.
+     * These describe where the rows and their fields are found and replace the {@link org.jsoup.Jsoup}
+     * class and selection.
+     *
+     * @param listRules The {@link uk.org.crimetalk.parsers.ListRules} of the {@link uk.org.crimetalk.fragments.ArticleListFragment}.
+     * @return The current {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}
+     */
+    public ArticleListHelper setListRules(ListRules listRules) {
+
+        this.mListRules = listRules;
 
         return this;
 
@@ -138,6 +172,23 @@ public class ArticleListHelper implements Parcelable {
 
     }
 
+    /**
+     * Set the source of the {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}. Joomla's
+     * feeds are far smaller than the category pages but only hold the newest articles and have
+     * no hits, so a feed is only used for the first rows of a category whose rows do not show hits.
+     * The complete list is always loaded from the category page.
+     *
+     * @param source The source of the first rows. Should use a public int defined in this class
+     * @return The current {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}
+     */
+    public ArticleListHelper setSource(int source) {
+
+        this.mSource = source;
+
+        return this;
+
+    }
+
     /**
      * Returns the title of the
      * {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}.
@@ -170,7 +221,7 @@ public class ArticleListHelper implements Parcelable {
      */
     public String getJsoupClass() {
 
-        return mJsoupClass;
+        return mListRules.getContainerClass();
 
     }
 
@@ -182,7 +233,19 @@ public class ArticleListHelper implements Parcelable {
      */
     public String getJsoupSelection() {
 
-        return mJsoupSelection;
+        return mListRules.getRowSelector();
+
+    }
+
+    /**
+     * Returns the {@link uk.org.crimetalk.parsers.ListRules} of the
+     * {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}.
+     *
+     * @return {@link uk.org.crimetalk.parsers.ListRules}
+     */
+    public ListRules getListRules() {
+
+        return mListRules;
 
     }
 
@@ -198,6 +261,165 @@ public class ArticleListHelper implements Parcelable {
 
     }
 
+    /**
+     * Returns the source of the first rows of the
+     * {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}.
+     *
+     * @return Source as an int
+     */
+    public int getSource() {
+
+        return mSource;
+
+    }
+
+    /**
+     * Returns true if the first rows of the category are loaded from its feed. This is the one
+     * place that decides it, so a prefetch makes the same request the
+     * {@link uk.org.crimetalk.fragments.ArticleListFragment} starts with. Paged lists always
+     * start with the first page, as the feed does not hold a page of the list.
+     *
+     * @param pagedLoading True if the list is loaded a page at a time
+     * @return true if the feed should be fetched first
+     */
+    public boolean isFeedFirst(boolean pagedLoading) {
+
+        return !pagedLoading && mSource == SOURCE_FEED && !sUnusableFeeds.contains(mUrl);
+
+    }
+
+    /**
+     * Marks the feed of the category as unusable, e.g. because feeds are turned off or the rows
+     * show hits the feed does not have. The first rows are loaded from the page from now on.
+     */
+    public void setFeedUnusable() {
+
+        sUnusableFeeds.add(mUrl);
+
+    }
+
+    /**
+     * Returns a new {@link uk.org.crimetalk.network.HttpRequest} for the first rows of the
+     * {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}, either its feed or its first page.
+     *
+     * @param timeout      The network timeout in milliseconds
+     * @param pagedLoading True if the list is loaded a page at a time
+     * @return {@link uk.org.crimetalk.network.HttpRequest}
+     * @see #isFeedFirst(boolean)
+     */
+    public HttpRequest newFirstRowsRequest(int timeout, boolean pagedLoading) {
+
+        return isFeedFirst(pagedLoading) ? newFeedRequest(timeout) : newHttpRequest(timeout, 0);
+
+    }
+
+    /**
+     * Returns a new {@link uk.org.crimetalk.network.HttpRequest} for the RSS feed of the
+     * {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}.
+     *
+     * @param timeout The network timeout in milliseconds
+     * @return {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest newFeedRequest(int timeout) {
+
+        return new HttpRequest(mUrl)
+                .addData("format", "feed")
+                .addData("type", "rss")
+                .setUsageLabel(mTitle)
+                .setTimeout(timeout);
+
+    }
+
+    /**
+     * Returns a new {@link uk.org.crimetalk.network.HttpRequest} for the complete article list of the
+     * {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}. The limit of 0 ensures the entire
+     * list of articles is returned. This is sent as a GET so the page can be revalidated.
+     * Joomla's component-only rendering of the page is requested while it holds the list.
+     *
+     * @param timeout The network timeout in milliseconds
+     * @return {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest newHttpRequest(int timeout) {
+
+        return new HttpRequest(mUrl)
+                .addData("limit", "0")
+                .addLeanData("tmpl", "component")
+                .setUsageLabel(mTitle)
+                .setTimeout(timeout);
+
+    }
+
+    /**
+     * Returns a new {@link uk.org.crimetalk.network.HttpRequest} for a single page of the article list
+     * of the {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}. Each page holds up to
+     * {@link #PAGE_SIZE} articles. Like the complete list, the component-only rendering is requested.
+     *
+     * @param timeout The network timeout in milliseconds
+     * @param page    The page to be requested, starting at 0
+     * @return {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest newHttpRequest(int timeout, int page) {
+
+        return new HttpRequest(mUrl)
+                .addData("limit", String.valueOf(PAGE_SIZE))
+                .addData("limitstart", String.valueOf(page * PAGE_SIZE))
+                .addLeanData("tmpl", "component")
+                .setUsageLabel(mTitle)
+                .setTimeout(timeout);
+
+    }
+
+    /**
+     * Returns true if no page follows a page of a paged category.
+     *
+     * @param page The page that was just loaded
+     * @return true if the page is the last page
+     */
+    public static boolean isLastPage(List<ArticleListItem> page) {
+
+        // The parser drops the header row so a full page holds exactly PAGE_SIZE articles
+        return page.size() < PAGE_SIZE;
+
+    }
+
+    /**
+     * Returns true if two pages of a paged category start with the same article. Joomla
+     * serves the last page again when asked for a page past the end, and a first page
+     * that starts with a different article means every later page has shifted.
+     *
+     * @param page      A page of the category
+     * @param otherPage Another page of the same category
+     * @return true if both pages start with the same article
+     */
+    public static boolean isSamePage(List<ArticleListItem> page, List<ArticleListItem> otherPage) {
+
+        return !page.isEmpty() && !otherPage.isEmpty()
+                && page.get(0).getLink().equals(otherPage.get(0).getLink());
+
+    }
+
+    /**
+     * Returns true if any article of a list shows its hits. These are only available on the category page.
+     *
+     * @param articleListItems The articles of a category
+     * @return true if an article has hits
+     */
+    public static boolean hasHits(List<ArticleListItem> articleListItems) {
+
+        for (ArticleListItem articleListItem : articleListItems) {
+
+            if (articleListItem.getHits() != null) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
     @Override
     public int describeContents() {
 
@@ -210,9 +432,9 @@ public class ArticleListHelper implements Parcelable {
 
         parcel.writeString(mTitle);
         parcel.writeString(mUrl);
-        parcel.writeString(mJsoupClass);
-        parcel.writeString(mJsoupSelection);
+        parcel.writeParcelable(mListRules, flags);
         parcel.writeInt(mFragmentIdentifier);
+        parcel.writeInt(mSource);
 
     }
 
@@ -236,9 +458,9 @@ public class ArticleListHelper implements Parcelable {
 
         this.mTitle = parcel.readString();
         this.mUrl = parcel.readString();
-        this.mJsoupClass = parcel.readString();
-        this.mJsoupSelection = parcel.readString();
+        this.mListRules = parcel.readParcelable(ListRules.class.getClassLoader());
         this.mFragmentIdentifier = parcel.readInt();
+        this.mSource = parcel.readInt();
 
     }
 
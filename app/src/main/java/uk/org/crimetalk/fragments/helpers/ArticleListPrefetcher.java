@@ -0,0 +1,205 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.fragments.helpers;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import uk.org.crimetalk.adapters.items.ArticleListItem;
+import uk.org.crimetalk.network.ConnectivityMonitor;
+import uk.org.crimetalk.network.FetchTicket;
+import uk.org.crimetalk.network.HttpRequest;
+import uk.org.crimetalk.network.PageFetcher;
+import uk.org.crimetalk.network.RequestScheduler;
+import uk.org.crimetalk.network.ResponseParser;
+import uk.org.crimetalk.parsers.ArticleFeedParser;
+import uk.org.crimetalk.parsers.ArticleListParser;
+import uk.org.crimetalk.utils.PreferenceUtils;
+
+/**
+ * Helper class that fetches the first rows of categories the user is likely to swipe to next.
+ * Prefetches start once the main thread is idle, only on networks where the
+ * {@link uk.org.crimetalk.network.NetworkPolicy} allows prefetching, and land in the cache of the
+ * {@link uk.org.crimetalk.network.PageFetcher}. An {@link uk.org.crimetalk.fragments.ArticleListFragment}
+ * created within {@link #MAX_AGE_MILLIS} shows the prefetched rows without fetching them again,
+ * or attaches to the prefetch if it is still running.
+ */
+public class ArticleListPrefetcher implements MessageQueue.IdleHandler {
+
+    // How long prefetched rows are shown without fetching them again
+    public static final long MAX_AGE_MILLIS = 2 * 60 * 1000;
+
+    private final Context mContext;
+
+    // Categories waiting for the main thread to become idle
+    private final List<ArticleListHelper> mPendingHelpers;
+
+    // Prefetches that have been started, keyed by the URL of their category
+    private final Map<String, FetchTicket<List<ArticleListItem>>> mFetchTickets;
+
+    private boolean mIdleHandlerAdded;
+
+    /**
+     * Public constructor for the {@link uk.org.crimetalk.fragments.helpers.ArticleListPrefetcher}.
+     * Must be used on the main thread.
+     *
+     * @param context A valid {@link android.content.Context}
+     */
+    public ArticleListPrefetcher(Context context) {
+
+        this.mContext = context.getApplicationContext();
+        this.mPendingHelpers = new ArrayList<>();
+        this.mFetchTickets = new HashMap<>();
+
+    }
+
+    /**
+     * Prefetches the first rows of categories once the main thread is idle. Prefetches of
+     * categories that are no longer among them are cancelled.
+     *
+     * @param articleListHelpers The {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}s
+     *                           of the categories to be prefetched
+     */
+    public void prefetch(List<ArticleListHelper> articleListHelpers) {
+
+        final List<String> urls = new ArrayList<>();
+
+        for (ArticleListHelper articleListHelper : articleListHelpers) {
+
+            urls.add(articleListHelper.getUrl());
+
+        }
+
+        cancelExcept(urls);
+
+        mPendingHelpers.clear();
+        mPendingHelpers.addAll(articleListHelpers);
+
+        if (!mIdleHandlerAdded) {
+
+            mIdleHandlerAdded = true;
+
+            Looper.myQueue().addIdleHandler(this);
+
+        }
+
+    }
+
+    /**
+     * Cancels every prefetch, e.g. when the user jumps to a category that is not nearby.
+     * A prefetch an {@link uk.org.crimetalk.fragments.ArticleListFragment} has attached to keeps running.
+     */
+    public void cancel() {
+
+        mPendingHelpers.clear();
+
+        cancelExcept(new ArrayList<String>());
+
+    }
+
+    @Override
+    public boolean queueIdle() {
+
+        mIdleHandlerAdded = false;
+
+        // The network may have changed since the prefetch was asked for
+        if (!ConnectivityMonitor.getInstance(mContext).getPolicy().canPrefetch()) {
+
+            mPendingHelpers.clear();
+
+            return false;
+
+        }
+
+        final int timeout = PreferenceUtils.getTimeout(mContext);
+        final boolean pagedLoading = PreferenceUtils.getPagedLoading(mContext);
+
+        for (ArticleListHelper articleListHelper : mPendingHelpers) {
+
+            final FetchTicket<List<ArticleListItem>> fetchTicket = mFetchTickets.get(articleListHelper.getUrl());
+
+            if (fetchTicket != null && !fetchTicket.isDone()) {
+
+                continue;
+
+            }
+
+            // The same request the ArticleListLoader starts with
+            final boolean feed = articleListHelper.isFeedFirst(pagedLoading);
+
+            final HttpRequest httpRequest = articleListHelper.newFirstRowsRequest(timeout, pagedLoading);
+
+            if (PageFetcher.getInstance().getRecentResult(httpRequest,
+                    feed ? ArticleFeedParser.class : ArticleListParser.class, MAX_AGE_MILLIS) != null) {
+
+                continue;
+
+            }
+
+            final ResponseParser<List<ArticleListItem>> responseParser = feed ?
+                    new ArticleFeedParser(mContext) : new ArticleListParser(mContext, articleListHelper);
+
+            // Queued behind every visible load and search, a tab that is swiped to moves it up
+            httpRequest.setPriority(RequestScheduler.PRIORITY_PREFETCH);
+
+            mFetchTickets.put(articleListHelper.getUrl(), PageFetcher.getInstance().fetchAsync(httpRequest, responseParser));
+
+        }
+
+        mPendingHelpers.clear();
+
+        // Only runs once for each call to prefetch()
+        return false;
+
+    }
+
+    /**
+     * Private method.
+     * Cancels the prefetches of every category but the given ones and forgets finished prefetches.
+     */
+    private void cancelExcept(List<String> urls) {
+
+        final Iterator<Map.Entry<String, FetchTicket<List<ArticleListItem>>>> iterator = mFetchTickets.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+
+            final Map.Entry<String, FetchTicket<List<ArticleListItem>>> entry = iterator.next();
+
+            if (entry.getValue().isDone()) {
+
+                iterator.remove();
+
+            } else if (!urls.contains(entry.getKey())) {
+
+                // Only gives up the prefetch's share, a Loader may be waiting for the same page
+                entry.getValue().cancel(true);
+
+                iterator.remove();
+
+            }
+
+        }
+
+    }
+
+}
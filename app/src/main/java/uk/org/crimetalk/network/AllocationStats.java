@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import android.os.Debug;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Process-wide count of the bytes allocated while reading and parsing each page, kept per URL
+ * pattern like the {@link uk.org.crimetalk.network.TimingStats}. Counting slows down every
+ * allocation of the process, so it is off until turned on from the network diagnostics.
+ * Pages parsed with the {@link uk.org.crimetalk.network.BufferPool} turned off are kept apart,
+ * so the effect of the pool can be seen.
+ */
+@SuppressWarnings({"UnusedDeclaration", "deprecation"})
+public class AllocationStats {
+
+    private static AllocationStats sAllocationStats;
+
+    // Pattern to loads, total bytes and most bytes of a single load
+    private final Map<String, long[]> mPatternStats;
+
+    private volatile boolean mEnabled;
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.network.AllocationStats}.
+     *
+     * @return {@link uk.org.crimetalk.network.AllocationStats}
+     */
+    public static synchronized AllocationStats getInstance() {
+
+        if (sAllocationStats == null) {
+
+            sAllocationStats = new AllocationStats();
+
+        }
+
+        return sAllocationStats;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.network.AllocationStats}.
+     */
+    private AllocationStats() {
+
+        this.mPatternStats = new TreeMap<>();
+
+    }
+
+    /**
+     * Turns allocation counting on or off.
+     *
+     * @param enabled true to count allocations
+     */
+    public synchronized void setEnabled(boolean enabled) {
+
+        if (enabled == mEnabled) {
+
+            return;
+
+        }
+
+        this.mEnabled = enabled;
+
+        if (enabled) {
+
+            Debug.startAllocCounting();
+
+        } else {
+
+            Debug.stopAllocCounting();
+
+        }
+
+    }
+
+    /**
+     * Returns true if allocations are counted.
+     *
+     * @return true if counting is on
+     */
+    public boolean isEnabled() {
+
+        return mEnabled;
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns the bytes allocated by the current thread so far, or -1 if allocations are not counted.
+     */
+    long start() {
+
+        return mEnabled ? Debug.getThreadAllocSize() : -1;
+
+    }
+
+    /**
+     * Package-private method.
+     * Records the bytes the current thread allocated since {@link #start()} for a page.
+     */
+    void record(String pattern, long startSize) {
+
+        if (startSize < 0 || !mEnabled) {
+
+            return;
+
+        }
+
+        // The counter is an int that wraps after 2GB
+        final long allocatedBytes = (Debug.getThreadAllocSize() - startSize) & 0xFFFFFFFFL;
+        final String key = BufferPool.getInstance().isEnabled() ? pattern : pattern + " (unpooled)";
+
+        synchronized (this) {
+
+            long[] patternStats = mPatternStats.get(key);
+
+            if (patternStats == null) {
+
+                patternStats = new long[3];
+                mPatternStats.put(key, patternStats);
+
+            }
+
+            patternStats[0]++;
+            patternStats[1] += allocatedBytes;
+            patternStats[2] = Math.max(patternStats[2], allocatedBytes);
+
+        }
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        if (!mEnabled && mPatternStats.isEmpty()) {
+
+            return "Counting off";
+
+        }
+
+        final StringBuilder stringBuilder = new StringBuilder("counting=" + mEnabled);
+
+        for (Map.Entry<String, long[]> entry : mPatternStats.entrySet()) {
+
+            final long[] patternStats = entry.getValue();
+
+            stringBuilder.append(String.format(Locale.US, "\n%s\n  loads=%d avg=%dKB max=%dKB", entry.getKey(),
+                    patternStats[0], patternStats[1] / patternStats[0] / 1024, patternStats[2] / 1024));
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+}
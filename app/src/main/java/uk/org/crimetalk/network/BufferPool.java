@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Process-wide pool of the fixed size buffers response bodies are read and decoded with.
+ * A complete article list is several megabytes, so reading it into a fresh buffer on every
+ * refresh leaves the garbage collector with multi-megabyte allocations to clear. Pooled
+ * segments are reused instead, up to a bound so an unusually large page is not kept around.
+ *
+ * @see {@link uk.org.crimetalk.network.HttpResponse#parse()}
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class BufferPool {
+
+    public static final int SEGMENT_SIZE = 16 * 1024;
+
+    // 2MB of bytes and 512KB of chars are kept at most
+    private static final int MAX_BYTE_SEGMENTS = 128;
+    private static final int MAX_CHAR_SEGMENTS = 16;
+
+    private static BufferPool sBufferPool;
+
+    private final ArrayDeque<byte[]> mByteSegments;
+    private final ArrayDeque<char[]> mCharSegments;
+
+    private volatile boolean mEnabled;
+
+    private long mAcquired;
+    private long mAllocated;
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.network.BufferPool}.
+     *
+     * @return {@link uk.org.crimetalk.network.BufferPool}
+     */
+    public static synchronized BufferPool getInstance() {
+
+        if (sBufferPool == null) {
+
+            sBufferPool = new BufferPool();
+
+        }
+
+        return sBufferPool;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.network.BufferPool}.
+     */
+    private BufferPool() {
+
+        this.mByteSegments = new ArrayDeque<>();
+        this.mCharSegments = new ArrayDeque<>();
+        this.mEnabled = true;
+
+    }
+
+    /**
+     * Set whether response bodies are read into pooled buffers. With the pool off, bodies are
+     * handed to Jsoup as a stream, which buffers and decodes them itself. Useful to measure
+     * the effect of the pool.
+     *
+     * @param enabled true to read bodies into pooled buffers
+     */
+    public void setEnabled(boolean enabled) {
+
+        this.mEnabled = enabled;
+
+    }
+
+    /**
+     * Returns true if response bodies are read into pooled buffers.
+     *
+     * @return true if the pool is enabled
+     */
+    public boolean isEnabled() {
+
+        return mEnabled;
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns a byte segment of {@link #SEGMENT_SIZE}, reusing a released one if there is any.
+     */
+    synchronized byte[] acquireBytes() {
+
+        mAcquired++;
+
+        final byte[] segment = mByteSegments.pollFirst();
+
+        if (segment != null) {
+
+            return segment;
+
+        }
+
+        mAllocated++;
+
+        return new byte[SEGMENT_SIZE];
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns a char segment of {@link #SEGMENT_SIZE}, reusing a released one if there is any.
+     */
+    synchronized char[] acquireChars() {
+
+        mAcquired++;
+
+        final char[] segment = mCharSegments.pollFirst();
+
+        if (segment != null) {
+
+            return segment;
+
+        }
+
+        mAllocated++;
+
+        return new char[SEGMENT_SIZE];
+
+    }
+
+    /**
+     * Package-private method.
+     * Hands a byte segment back to the pool. Segments beyond the bound are left to the garbage collector.
+     */
+    synchronized void releaseBytes(byte[] segment) {
+
+        if (mByteSegments.size() < MAX_BYTE_SEGMENTS) {
+
+            mByteSegments.addFirst(segment);
+
+        }
+
+    }
+
+    /**
+     * Package-private method.
+     * Hands a char segment back to the pool.
+     */
+    synchronized void releaseChars(char[] segment) {
+
+        if (mCharSegments.size() < MAX_CHAR_SEGMENTS) {
+
+            mCharSegments.addFirst(segment);
+
+        }
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return String.format(Locale.US, "enabled=%b pooled=%dKB acquired=%d allocated=%d reused=%d%%",
+                mEnabled, (mByteSegments.size() * SEGMENT_SIZE + mCharSegments.size() * SEGMENT_SIZE * 2) / 1024,
+                mAcquired, mAllocated, mAcquired > 0 ? (mAcquired - mAllocated) * 100 / mAcquired : 0);
+
+    }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Process-wide helper that resolves a host and opens pooled connections to it before the
+ * first real request is made. The connections are opened with HEAD requests through the
+ * {@link uk.org.crimetalk.network.HttpTransport} so they go back to its keep-alive pool,
+ * where the next requests to the host pick them up without a DNS lookup or handshake.
+ * <p/>
+ * Warming is skipped when the {@link uk.org.crimetalk.network.NetworkPolicy} does not allow
+ * lists to be fetched, and never opens more connections than the host is missing. Warm ups are
+ * queued on the {@link uk.org.crimetalk.network.RequestScheduler} like any other request, so
+ * they never hold up a load the user is waiting on.
+ */
+public class ConnectionWarmer {
+
+    private static final String TAG = "ConnectionWarmer";
+
+    // Warm ups are only worth doing if they finish before the real requests need them
+    private static final int WARM_UP_TIMEOUT_MILLIS = 5000;
+
+    private static ConnectionWarmer sConnectionWarmer;
+
+    private final ConnectivityMonitor mConnectivityMonitor;
+    private final HttpTransport mHttpTransport;
+    private final RequestScheduler mRequestScheduler;
+
+    // Number of warm up requests in flight to each host
+    private final Map<String, Integer> mPendingConnections;
+
+    private long mWarmUps;
+    private long mFailures;
+    private long mSkipped;
+    private long mLookups;
+    private long mLookupMillis;
+    private long mConnectionMillis;
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.network.ConnectionWarmer}.
+     *
+     * @param context A valid {@link android.content.Context}
+     * @return {@link uk.org.crimetalk.network.ConnectionWarmer}
+     */
+    public static synchronized ConnectionWarmer getInstance(Context context) {
+
+        if (sConnectionWarmer == null) {
+
+            sConnectionWarmer = new ConnectionWarmer(ConnectivityMonitor.getInstance(context));
+
+        }
+
+        return sConnectionWarmer;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.network.ConnectionWarmer}.
+     */
+    private ConnectionWarmer(ConnectivityMonitor connectivityMonitor) {
+
+        this.mConnectivityMonitor = connectivityMonitor;
+        this.mHttpTransport = HttpTransport.getInstance();
+        this.mRequestScheduler = RequestScheduler.getInstance();
+        this.mPendingConnections = new HashMap<>();
+
+    }
+
+    /**
+     * Resolves the host of a URL and opens connections to it in the background. Connections
+     * that are already idle in the pool or being opened count towards the number asked for.
+     * This method returns immediately.
+     *
+     * @param url         A URL of the pages that are about to be loaded
+     * @param connections The number of connections the pages will need at once
+     */
+    public void warm(String url, int connections) {
+
+        warm(url, connections, RequestScheduler.PRIORITY_BACKGROUND);
+
+    }
+
+    /**
+     * Resolves the host of a URL and opens connections to it in the background with a given
+     * priority, e.g. {@link uk.org.crimetalk.network.RequestScheduler#PRIORITY_PREFETCH} for
+     * pages the user is about to open. This method returns immediately.
+     *
+     * @param url         A URL of the pages that are about to be loaded
+     * @param connections The number of connections the pages will need at once
+     * @param priority    Should use a priority defined in {@link uk.org.crimetalk.network.RequestScheduler}
+     */
+    public void warm(final String url, int connections, final int priority) {
+
+        if (!mConnectivityMonitor.getPolicy().canFetchLists()) {
+
+            synchronized (this) {
+
+                mSkipped++;
+
+            }
+
+            return;
+
+        }
+
+        final String host;
+
+        try {
+
+            host = new URL(url).getHost();
+
+        } catch (MalformedURLException malformedURLException) {
+
+            Log.e(TAG, "Can not warm " + url + " " + malformedURLException);
+
+            return;
+
+        }
+
+        // Connections to a host that is not responding would only wait out their timeouts
+        if (mHttpTransport.getHostHealth().isUnavailable(host)) {
+
+            return;
+
+        }
+
+        // Warm ups must not eat into the tokens the rate limiter keeps for the visible screen
+        if (!mHttpTransport.getRateLimiter().canWarmUp(host)) {
+
+            synchronized (this) {
+
+                mSkipped++;
+
+            }
+
+            return;
+
+        }
+
+        final int missingConnections;
+
+        synchronized (this) {
+
+            // More connections than the transport allows would only wait for a free slot
+            final int wantedConnections = Math.min(connections, mHttpTransport.getMaxConnectionsPerHost());
+
+            missingConnections = wantedConnections - mHttpTransport.getIdleConnections(host) - getPendingConnections(host);
+
+            if (missingConnections <= 0) {
+
+                return;
+
+            }
+
+            mPendingConnections.put(host, getPendingConnections(host) + missingConnections);
+
+        }
+
+        mRequestScheduler.submit(new Runnable() {
+
+            @Override
+            public void run() {
+
+                // Every connection needs the address, look it up once before opening them in parallel
+                lookUp(host);
+
+                for (int i = 1; i < missingConnections; i++) {
+
+                    mRequestScheduler.submit(new Runnable() {
+
+                        @Override
+                        public void run() {
+
+                            openConnection(url, host);
+
+                        }
+
+                    }, priority);
+
+                }
+
+                openConnection(url, host);
+
+            }
+
+        }, priority);
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return String.format(Locale.US, "warm ups=%d failed=%d skipped=%d avg lookup=%dms avg connection=%dms",
+                mWarmUps, mFailures, mSkipped, mLookups == 0 ? 0 : mLookupMillis / mLookups,
+                mWarmUps - mFailures == 0 ? 0 : mConnectionMillis / (mWarmUps - mFailures));
+
+    }
+
+    /**
+     * Private method.
+     * Resolves a host so the address is cached by the time the connections are opened.
+     */
+    private void lookUp(String host) {
+
+        final long startTime = SystemClock.elapsedRealtime();
+
+        try {
+
+            InetAddress.getByName(host);
+
+        } catch (IOException ioException) {
+
+            // The warm up request will fail with the same error, there is nothing else to do here
+            Log.w(TAG, "Lookup of " + host + " failed " + ioException);
+
+            return;
+
+        }
+
+        synchronized (this) {
+
+            mLookups++;
+            mLookupMillis += SystemClock.elapsedRealtime() - startTime;
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Opens a single connection and leaves it idle in the pool.
+     */
+    private void openConnection(String url, String host) {
+
+        final long startTime = SystemClock.elapsedRealtime();
+
+        boolean failed = false;
+        boolean skipped = false;
+
+        try {
+
+            mHttpTransport.warmConnection(new HttpRequest(url)
+                    .setMethod(HttpRequest.METHOD_HEAD)
+                    .setTimeout(WARM_UP_TIMEOUT_MILLIS));
+
+        } catch (HostUnavailableException hostUnavailableException) {
+
+            // The host started failing or ran short of tokens while the warm up was queued
+            skipped = true;
+
+        } catch (IOException ioException) {
+
+            failed = true;
+
+            Log.w(TAG, "Warm up of " + host + " failed " + ioException);
+
+        }
+
+        synchronized (this) {
+
+            if (skipped) {
+
+                mSkipped++;
+
+            } else {
+
+                mWarmUps++;
+
+                if (failed) {
+
+                    mFailures++;
+
+                } else {
+
+                    mConnectionMillis += SystemClock.elapsedRealtime() - startTime;
+
+                }
+
+            }
+
+            mPendingConnections.put(host, getPendingConnections(host) - 1);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Returns the number of warm up requests in flight to a host.
+     */
+    private int getPendingConnections(String host) {
+
+        final Integer pendingConnections = mPendingConnections.get(host);
+
+        return pendingConnections != null ? pendingConnections : 0;
+
+    }
+
+}
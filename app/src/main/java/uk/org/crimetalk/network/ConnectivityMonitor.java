@@ -0,0 +1,270 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide cache of the connectivity state of the device. The state is only updated when
+ * the system broadcasts a connectivity or battery saver change, so asking for it is free.
+ * Everything that touches the network should ask the {@link uk.org.crimetalk.network.NetworkPolicy}
+ * what it may fetch right now.
+ */
+public class ConnectivityMonitor {
+
+    private static ConnectivityMonitor sConnectivityMonitor;
+
+    private final ConnectivityManager mConnectivityManager;
+    private final PowerManager mPowerManager;
+    private final DataUsage mDataUsage;
+    private final HostHealth mHostHealth;
+    private final Handler mHandler;
+    private final List<OnConnectivityChangedListener> mListeners;
+
+    private volatile NetworkPolicy mNetworkPolicy;
+
+    /**
+     * Listener that is called on the main thread when the connectivity state changes.
+     */
+    public interface OnConnectivityChangedListener {
+
+        /**
+         * Called when the connectivity state has changed.
+         *
+         * @param networkPolicy The {@link uk.org.crimetalk.network.NetworkPolicy} for the new state
+         */
+        void onConnectivityChanged(NetworkPolicy networkPolicy);
+
+    }
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.network.ConnectivityMonitor}.
+     *
+     * @param context A valid {@link android.content.Context}
+     * @return {@link uk.org.crimetalk.network.ConnectivityMonitor}
+     */
+    public static synchronized ConnectivityMonitor getInstance(Context context) {
+
+        if (sConnectivityMonitor == null) {
+
+            sConnectivityMonitor = new ConnectivityMonitor(context.getApplicationContext());
+
+        }
+
+        return sConnectivityMonitor;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.network.ConnectivityMonitor}.
+     */
+    private ConnectivityMonitor(Context context) {
+
+        this.mConnectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.mPowerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.mDataUsage = DataUsage.getInstance(context);
+        this.mHostHealth = HttpTransport.getInstance().getHostHealth();
+        this.mHandler = new Handler(Looper.getMainLooper());
+        this.mListeners = new ArrayList<>();
+        this.mNetworkPolicy = newPolicy();
+
+        // Bytes are recorded on the threads that fetched them but the listeners expect the main thread
+        mDataUsage.setOnBudgetLevelChangedListener(new DataUsage.OnBudgetLevelChangedListener() {
+
+            @Override
+            public void onBudgetLevelChanged(int budgetLevel) {
+
+                mHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        onStateChanged();
+
+                    }
+
+                });
+
+            }
+
+        });
+
+        final IntentFilter intentFilter = new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+
+            intentFilter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+
+        }
+
+        // Registered on the application Context for the lifetime of the process
+        context.registerReceiver(new BroadcastReceiver() {
+
+            @Override
+            public void onReceive(Context context, Intent intent) {
+
+                onStateChanged();
+
+            }
+
+        }, intentFilter);
+
+    }
+
+    /**
+     * Returns the {@link uk.org.crimetalk.network.NetworkPolicy} for the current connectivity state
+     * and data budget.
+     *
+     * @return {@link uk.org.crimetalk.network.NetworkPolicy}
+     */
+    public NetworkPolicy getPolicy() {
+
+        // Also notices the start of a new month, which resets the budget
+        mDataUsage.getBudgetLevel();
+
+        return mNetworkPolicy;
+
+    }
+
+    /**
+     * Returns the current connectivity state.
+     *
+     * @return {@link uk.org.crimetalk.network.ConnectivityState}
+     */
+    public ConnectivityState getState() {
+
+        return mNetworkPolicy.getConnectivityState();
+
+    }
+
+    /**
+     * Add a listener that is called when the connectivity state changes.
+     *
+     * @param onConnectivityChangedListener {@link uk.org.crimetalk.network.ConnectivityMonitor.OnConnectivityChangedListener}
+     */
+    public void addListener(OnConnectivityChangedListener onConnectivityChangedListener) {
+
+        synchronized (mListeners) {
+
+            mListeners.add(onConnectivityChangedListener);
+
+        }
+
+    }
+
+    /**
+     * Remove a listener added with {@link #addListener(OnConnectivityChangedListener)}.
+     *
+     * @param onConnectivityChangedListener {@link uk.org.crimetalk.network.ConnectivityMonitor.OnConnectivityChangedListener}
+     */
+    public void removeListener(OnConnectivityChangedListener onConnectivityChangedListener) {
+
+        synchronized (mListeners) {
+
+            mListeners.remove(onConnectivityChangedListener);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Reads the new state and tells the listeners about it.
+     */
+    private void onStateChanged() {
+
+        final NetworkPolicy networkPolicy = newPolicy();
+
+        mNetworkPolicy = networkPolicy;
+
+        final List<OnConnectivityChangedListener> listeners;
+
+        synchronized (mListeners) {
+
+            listeners = new ArrayList<>(mListeners);
+
+        }
+
+        for (OnConnectivityChangedListener onConnectivityChangedListener : listeners) {
+
+            onConnectivityChangedListener.onConnectivityChanged(networkPolicy);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Reads the current state and tells the {@link uk.org.crimetalk.network.DataUsage} which network
+     * bytes are received on from now on, and the {@link uk.org.crimetalk.network.HostHealth} whether
+     * failed requests can be blamed on the hosts.
+     */
+    private NetworkPolicy newPolicy() {
+
+        final ConnectivityState connectivityState = readState();
+
+        mDataUsage.setConnectivityState(connectivityState);
+        mHostHealth.setConnectivityState(connectivityState);
+
+        return new NetworkPolicy(connectivityState, mDataUsage.getBudgetLevel());
+
+    }
+
+    /**
+     * Private method.
+     * Queries the system services for the current state.
+     */
+    private ConnectivityState readState() {
+
+        final NetworkInfo activeNetwork = mConnectivityManager.getActiveNetworkInfo();
+
+        if (activeNetwork == null || !activeNetwork.isConnected()) {
+
+            return new ConnectivityState(false, false, false, isPowerSaveMode(), null);
+
+        }
+
+        return new ConnectivityState(true, ConnectivityManagerCompat.isActiveNetworkMetered(mConnectivityManager),
+                activeNetwork.isRoaming(), isPowerSaveMode(), activeNetwork.getTypeName());
+
+    }
+
+    /**
+     * Private method.
+     * Returns true if battery saver is on. Battery saver does not exist before Lollipop.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private boolean isPowerSaveMode() {
+
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && mPowerManager.isPowerSaveMode();
+
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.util.Locale;
+
+/**
+ * Immutable snapshot of the connectivity of the device as seen by the
+ * {@link uk.org.crimetalk.network.ConnectivityMonitor}.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class ConnectivityState {
+
+    private final boolean mConnected;
+    private final boolean mMetered;
+    private final boolean mRoaming;
+    private final boolean mPowerSaveMode;
+    private final String mTypeName;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.ConnectivityState}.
+     */
+    ConnectivityState(boolean connected, boolean metered, boolean roaming, boolean powerSaveMode, String typeName) {
+
+        this.mConnected = connected;
+        this.mMetered = metered;
+        this.mRoaming = roaming;
+        this.mPowerSaveMode = powerSaveMode;
+        this.mTypeName = typeName;
+
+    }
+
+    /**
+     * Returns true if the device has a connected network.
+     *
+     * @return true if connected
+     */
+    public boolean isConnected() {
+
+        return mConnected;
+
+    }
+
+    /**
+     * Returns true if the active network is metered, e.g. mobile data or a tethered hotspot.
+     *
+     * @return true if metered
+     */
+    public boolean isMetered() {
+
+        return mMetered;
+
+    }
+
+    /**
+     * Returns true if the active network is roaming.
+     *
+     * @return true if roaming
+     */
+    public boolean isRoaming() {
+
+        return mRoaming;
+
+    }
+
+    /**
+     * Returns true if battery saver is on.
+     *
+     * @return true if in power save mode
+     */
+    public boolean isPowerSaveMode() {
+
+        return mPowerSaveMode;
+
+    }
+
+    /**
+     * Returns the type name of the active network, e.g. WIFI or MOBILE.
+     *
+     * @return Type name as a {@link java.lang.String} or null if not connected
+     */
+    public String getTypeName() {
+
+        return mTypeName;
+
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format(Locale.US, "connected=%b type=%s metered=%b roaming=%b power save=%b",
+                mConnected, mTypeName, mMetered, mRoaming, mPowerSaveMode);
+
+    }
+
+}
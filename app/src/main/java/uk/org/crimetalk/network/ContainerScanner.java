@@ -0,0 +1,372 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Scans the raw bytes of an HTML body as they arrive for the first element with a class, e.g. the
+ * table of a category page, and tells when that element has been closed so the rest of the body
+ * does not have to be read. Only tags are looked at, which are ASCII in every charset a page is
+ * served in, so the bytes do not have to be decoded first. Comments and the contents of scripts
+ * and styles are skipped so markup inside them is not mistaken for tags.
+ *
+ * @see {@link uk.org.crimetalk.network.HttpResponse#parseContainer(String)}
+ */
+class ContainerScanner {
+
+    private static final int STATE_TEXT = 0;
+    private static final int STATE_TAG = 1;
+    private static final int STATE_COMMENT = 2;
+    private static final int STATE_RAW_TEXT = 3;
+
+    // A longer tag is not one that holds the container class
+    private static final int MAX_TAG_LENGTH = 2048;
+
+    private static final Pattern CLASS_PATTERN =
+            Pattern.compile("(?:^|\\s)class\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))", Pattern.CASE_INSENSITIVE);
+
+    private final String mContainerClass;
+    private final StringBuilder mTag;
+
+    private int mState;
+    private char mQuote;
+    private int mDashes;
+    private String mRawTextEnd;
+    private int mRawTextMatched;
+
+    private int mPosition;
+    private int mTagStart;
+    private String mContainerTag;
+    private int mContainerStart;
+    private int mContainerEnd;
+    private int mDepth;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.ContainerScanner}.
+     *
+     * @param containerClass The class of the element to be found
+     */
+    ContainerScanner(String containerClass) {
+
+        this.mContainerClass = containerClass;
+        this.mTag = new StringBuilder();
+        this.mState = STATE_TEXT;
+        this.mContainerStart = -1;
+        this.mContainerEnd = -1;
+
+    }
+
+    /**
+     * Package-private method.
+     * Scans the next bytes of the body.
+     *
+     * @return true once the container has been closed, the bytes after it are not scanned
+     */
+    boolean scan(byte[] buffer, int offset, int count) {
+
+        for (int i = offset; i < offset + count; i++) {
+
+            final char c = (char) (buffer[i] & 0xFF);
+
+            mPosition++;
+
+            switch (mState) {
+
+                case STATE_TEXT:
+
+                    if (c == '<') {
+
+                        startTag();
+
+                    }
+
+                    break;
+
+                case STATE_TAG:
+
+                    if (scanTag(c)) {
+
+                        return true;
+
+                    }
+
+                    break;
+
+                case STATE_COMMENT:
+
+                    if (c == '>' && mDashes >= 2) {
+
+                        mState = STATE_TEXT;
+
+                    }
+
+                    mDashes = c == '-' ? mDashes + 1 : 0;
+
+                    break;
+
+                case STATE_RAW_TEXT:
+
+                    final char lowerCase = Character.toLowerCase(c);
+
+                    if (lowerCase == mRawTextEnd.charAt(mRawTextMatched)) {
+
+                        mRawTextMatched++;
+
+                    } else {
+
+                        mRawTextMatched = lowerCase == mRawTextEnd.charAt(0) ? 1 : 0;
+
+                    }
+
+                    // The end tag of the script or style is read like any other tag
+                    if (mRawTextMatched == mRawTextEnd.length()) {
+
+                        startTag();
+
+                        mTag.append(mRawTextEnd, 1, mRawTextEnd.length());
+                        mTagStart = mPosition - mRawTextEnd.length();
+
+                    }
+
+                    break;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns the offset in the body of the start tag of the container.
+     *
+     * @return Offset in bytes or -1 if the container has not been found
+     */
+    int getContainerStart() {
+
+        return mContainerStart;
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns the offset in the body just after the end tag of the container.
+     *
+     * @return Offset in bytes or -1 if the container has not been closed
+     */
+    int getContainerEnd() {
+
+        return mContainerEnd;
+
+    }
+
+    /**
+     * Private method.
+     * Starts collecting a tag at the current position.
+     */
+    private void startTag() {
+
+        mState = STATE_TAG;
+        mTag.setLength(0);
+        mTagStart = mPosition - 1;
+        mQuote = 0;
+
+    }
+
+    /**
+     * Private method.
+     * Collects a character of a tag and looks at the tag once it is complete.
+     *
+     * @return true if the tag closed the container
+     */
+    private boolean scanTag(char c) {
+
+        // A lone '<' in text, e.g. "a < b", does not start a tag
+        if (mTag.length() == 0 && !Character.isLetter(c) && c != '/' && c != '!' && c != '?') {
+
+            mState = STATE_TEXT;
+
+            return false;
+
+        }
+
+        if (mQuote != 0) {
+
+            if (c == mQuote) {
+
+                mQuote = 0;
+
+            }
+
+        } else if (c == '"' || c == '\'') {
+
+            mQuote = c;
+
+        } else if (c == '>') {
+
+            mState = STATE_TEXT;
+
+            return endTag();
+
+        }
+
+        if (mTag.length() < MAX_TAG_LENGTH) {
+
+            mTag.append(c);
+
+        }
+
+        if (mTag.length() == 3 && "!--".contentEquals(mTag)) {
+
+            mState = STATE_COMMENT;
+            mDashes = 0;
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Private method.
+     * Looks at a complete tag, keeping count of how deep the container is nested.
+     *
+     * @return true if the tag closed the container
+     */
+    private boolean endTag() {
+
+        final char first = mTag.charAt(0);
+
+        if (first == '!' || first == '?') {
+
+            return false;
+
+        }
+
+        if (first == '/') {
+
+            if (mContainerTag != null && mContainerTag.equals(getTagName(1)) && --mDepth == 0) {
+
+                mContainerEnd = mPosition;
+
+                return true;
+
+            }
+
+            return false;
+
+        }
+
+        final String tagName = getTagName(0);
+        final boolean selfClosing = mTag.charAt(mTag.length() - 1) == '/';
+
+        if (mContainerTag == null) {
+
+            if (hasContainerClass()) {
+
+                mContainerTag = tagName;
+                mContainerStart = mTagStart;
+                mDepth = 1;
+
+                // An empty container, the parser will find nothing in it
+                if (selfClosing) {
+
+                    mContainerEnd = mPosition;
+
+                    return true;
+
+                }
+
+            }
+
+        } else if (tagName.equals(mContainerTag) && !selfClosing) {
+
+            mDepth++;
+
+        }
+
+        if ("script".equals(tagName) || "style".equals(tagName)) {
+
+            mState = STATE_RAW_TEXT;
+            mRawTextEnd = "</" + tagName;
+            mRawTextMatched = 0;
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Private method.
+     * Returns the lower case name of the collected tag, starting at an index.
+     */
+    private String getTagName(int start) {
+
+        int end = start;
+
+        while (end < mTag.length() && Character.isLetterOrDigit(mTag.charAt(end))) {
+
+            end++;
+
+        }
+
+        return mTag.substring(start, end).toLowerCase(Locale.US);
+
+    }
+
+    /**
+     * Private method.
+     * Returns true if the class attribute of the collected tag holds the container class.
+     */
+    private boolean hasContainerClass() {
+
+        // Cheap check first, most tags have nothing to do with the container
+        if (mTag.indexOf(mContainerClass) == -1) {
+
+            return false;
+
+        }
+
+        final Matcher matcher = CLASS_PATTERN.matcher(mTag);
+
+        while (matcher.find()) {
+
+            final String classes = matcher.group(1) != null ? matcher.group(1)
+                    : matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+
+            for (String className : classes.trim().split("\\s+")) {
+
+                if (className.equalsIgnoreCase(mContainerClass)) {
+
+                    return true;
+
+                }
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link java.io.FilterInputStream} that counts the bytes read through it.
+ */
+class CountingInputStream extends FilterInputStream {
+
+    private long mCount;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.CountingInputStream}.
+     *
+     * @param inputStream The {@link java.io.InputStream} to be counted
+     */
+    CountingInputStream(InputStream inputStream) {
+        super(inputStream);
+
+        // Do nothing
+
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        final int read = super.read();
+
+        if (read != -1) {
+
+            mCount++;
+
+        }
+
+        return read;
+
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+
+        final int read = super.read(buffer, offset, count);
+
+        if (read > 0) {
+
+            mCount += read;
+
+        }
+
+        return read;
+
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+
+        final long skipped = super.skip(count);
+
+        mCount += skipped;
+
+        return skipped;
+
+    }
+
+    @Override
+    public boolean markSupported() {
+
+        // Counting would be wrong after a reset
+        return false;
+
+    }
+
+    /**
+     * Returns the number of bytes read so far.
+     *
+     * @return Byte count
+     */
+    long getCount() {
+
+        return mCount;
+
+    }
+
+}
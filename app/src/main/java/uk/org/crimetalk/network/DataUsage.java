@@ -0,0 +1,852 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import uk.org.crimetalk.utils.PreferenceUtils;
+
+/**
+ * Process-wide account of the bytes the app has received, kept per day, per network type and per
+ * usage label, i.e. the {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper} category or
+ * the article a request was made for. Bytes received on a metered network count towards the
+ * monthly budget set by the user, and the {@link uk.org.crimetalk.network.NetworkPolicy} fetches
+ * less as the budget runs out.
+ *
+ * @see {@link uk.org.crimetalk.network.HttpRequest#setUsageLabel(String)}
+ */
+public class DataUsage {
+
+    private static final String TAG = "DataUsage";
+
+    public static final int BUDGET_NORMAL = 0;
+    public static final int BUDGET_NO_PREFETCH = 1;
+    public static final int BUDGET_NO_IMAGES = 2;
+    public static final int BUDGET_CACHE_ONLY = 3;
+
+    // Label of requests that were not made for a category or an article, e.g. warm-ups
+    public static final String LABEL_OTHER = "Other";
+
+    private static final String USAGE_FILE = "data_usage.json";
+    private static final String CHARSET = "UTF-8";
+
+    // Only the days that can be shown on the data usage screen are kept
+    private static final int MAX_DAYS = 62;
+
+    // Totals are written at most this often, and whenever the day changes
+    private static final long SAVE_INTERVAL_MILLIS = 30 * 1000;
+
+    // Fractions of the budget at which prefetching and then images are stopped
+    private static final double NO_PREFETCH_FRACTION = 0.75;
+    private static final double NO_IMAGES_FRACTION = 0.9;
+
+    private static final int MAX_IMAGE_LABELS = 64;
+
+    private static DataUsage sDataUsage;
+
+    private final File mUsageFile;
+    private final TreeMap<String, Day> mDays;
+    private final Map<String, String> mImageLabels;
+
+    private volatile ConnectivityState mConnectivityState;
+    private volatile int mBudgetLevel;
+    private volatile long mMonthEndTime;
+
+    private OnBudgetLevelChangedListener mOnBudgetLevelChangedListener;
+    private long mMonthlyBudget;
+    private long mLastSaveTime;
+    private boolean mChanged;
+
+    /**
+     * Listener that is called when the budget level changes. It is called on the thread that
+     * recorded the bytes or changed the budget.
+     */
+    public interface OnBudgetLevelChangedListener {
+
+        /**
+         * Called when the budget level has changed.
+         *
+         * @param budgetLevel The new budget level defined in {@link uk.org.crimetalk.network.DataUsage}
+         */
+        void onBudgetLevelChanged(int budgetLevel);
+
+    }
+
+    /**
+     * Private class that holds the totals of a single day.
+     */
+    private static class Day {
+
+        // Network type to usage label to bytes
+        final Map<String, Map<String, long[]>> networks = new TreeMap<>();
+
+        long meteredBytes;
+
+    }
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.network.DataUsage}. The first call
+     * registers it with the {@link uk.org.crimetalk.network.HttpTransport} and applies the
+     * number of parallel connections set by the user, before any request is made.
+     *
+     * @param context A valid {@link android.content.Context}
+     * @return {@link uk.org.crimetalk.network.DataUsage}
+     */
+    public static synchronized DataUsage getInstance(Context context) {
+
+        if (sDataUsage == null) {
+
+            sDataUsage = new DataUsage(context.getApplicationContext());
+
+            HttpTransport.getInstance().setDataUsage(sDataUsage);
+            HttpTransport.getInstance().setMaxConnectionsPerHost(PreferenceUtils.getMaxConnections(context));
+
+        }
+
+        return sDataUsage;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.network.DataUsage}.
+     */
+    private DataUsage(Context context) {
+
+        this.mUsageFile = new File(context.getFilesDir(), USAGE_FILE);
+        this.mDays = new TreeMap<>();
+        this.mImageLabels = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+
+                return size() > MAX_IMAGE_LABELS;
+
+            }
+
+        };
+        this.mLastSaveTime = System.currentTimeMillis();
+        this.mMonthlyBudget = PreferenceUtils.getDataBudget(context);
+
+        read();
+
+        this.mBudgetLevel = computeBudgetLevel();
+
+    }
+
+    /**
+     * Set the monthly budget of metered data. Setting it to 0 removes the budget.
+     *
+     * @param monthlyBudget Budget in bytes
+     */
+    public void setMonthlyBudget(long monthlyBudget) {
+
+        synchronized (this) {
+
+            this.mMonthlyBudget = monthlyBudget;
+
+        }
+
+        updateBudgetLevel();
+
+    }
+
+    /**
+     * Returns the monthly budget of metered data.
+     *
+     * @return Budget in bytes or 0 if there is no budget
+     */
+    public synchronized long getMonthlyBudget() {
+
+        return mMonthlyBudget;
+
+    }
+
+    /**
+     * Returns how much of the monthly budget has been used and so how much may still be fetched
+     * on a metered network.
+     *
+     * @return Budget level defined in {@link uk.org.crimetalk.network.DataUsage}
+     */
+    public int getBudgetLevel() {
+
+        // Nothing is recorded on a metered network once the budget is used up, so a new month has to be noticed here
+        if (System.currentTimeMillis() >= mMonthEndTime) {
+
+            updateBudgetLevel();
+
+        }
+
+        return mBudgetLevel;
+
+    }
+
+    /**
+     * Returns the bytes received on metered networks during the current month.
+     *
+     * @return Byte count
+     */
+    public synchronized long getMonthMeteredBytes() {
+
+        final String month = getMonthKey(System.currentTimeMillis());
+
+        long meteredBytes = 0;
+
+        for (Map.Entry<String, Day> entry : mDays.tailMap(month).entrySet()) {
+
+            if (entry.getKey().startsWith(month)) {
+
+                meteredBytes += entry.getValue().meteredBytes;
+
+            }
+
+        }
+
+        return meteredBytes;
+
+    }
+
+    /**
+     * Remembers the usage label of an image so the bytes of the image are attributed to it
+     * when it is fetched. Only the labels of the last images are kept.
+     *
+     * @param url   The URL of the image
+     * @param label The usage label, e.g. the title of the article that shows the image
+     */
+    public synchronized void setImageLabel(String url, String label) {
+
+        mImageLabels.put(url, label);
+
+    }
+
+    /**
+     * Returns the usage label of an image set by {@link #setImageLabel(String, String)}.
+     *
+     * @param url The URL of the image
+     * @return Usage label or {@link #LABEL_OTHER} if the image has no label
+     */
+    public synchronized String getImageLabel(String url) {
+
+        final String label = mImageLabels.get(url);
+
+        return label != null ? label : LABEL_OTHER;
+
+    }
+
+    /**
+     * Records bytes received on the active network.
+     *
+     * @param label The usage label of the request or null
+     * @param bytes Byte count
+     */
+    public void recordBytes(String label, long bytes) {
+
+        if (bytes <= 0) {
+
+            return;
+
+        }
+
+        final ConnectivityState connectivityState = mConnectivityState;
+        final String networkType = connectivityState != null && connectivityState.getTypeName() != null ?
+                connectivityState.getTypeName() : "UNKNOWN";
+        final boolean metered = connectivityState != null && connectivityState.isMetered();
+
+        synchronized (this) {
+
+            final long now = System.currentTimeMillis();
+            final String dayKey = getDayKey(now);
+
+            Day day = mDays.get(dayKey);
+
+            if (day == null) {
+
+                day = new Day();
+                mDays.put(dayKey, day);
+
+                while (mDays.size() > MAX_DAYS) {
+
+                    mDays.remove(mDays.firstKey());
+
+                }
+
+                // Save the totals of the last day straight away
+                mLastSaveTime = 0;
+
+            }
+
+            Map<String, long[]> labels = day.networks.get(networkType);
+
+            if (labels == null) {
+
+                labels = new TreeMap<>();
+                day.networks.put(networkType, labels);
+
+            }
+
+            final String usageLabel = label != null ? label : LABEL_OTHER;
+
+            long[] labelBytes = labels.get(usageLabel);
+
+            if (labelBytes == null) {
+
+                labelBytes = new long[1];
+                labels.put(usageLabel, labelBytes);
+
+            }
+
+            labelBytes[0] += bytes;
+
+            if (metered) {
+
+                day.meteredBytes += bytes;
+
+            }
+
+            mChanged = true;
+
+            if (now - mLastSaveTime >= SAVE_INTERVAL_MILLIS) {
+
+                save();
+
+            }
+
+        }
+
+        if (metered) {
+
+            updateBudgetLevel();
+
+        }
+
+    }
+
+    /**
+     * Writes the totals to disk if they have changed since they were last written.
+     */
+    public synchronized void flush() {
+
+        if (mChanged) {
+
+            save();
+
+        }
+
+    }
+
+    /**
+     * Package-private method.
+     * Set the connectivity state that recorded bytes are attributed to.
+     */
+    void setConnectivityState(ConnectivityState connectivityState) {
+
+        this.mConnectivityState = connectivityState;
+
+    }
+
+    /**
+     * Package-private method.
+     * Set the listener that is called when the budget level changes.
+     */
+    synchronized void setOnBudgetLevelChangedListener(OnBudgetLevelChangedListener onBudgetLevelChangedListener) {
+
+        this.mOnBudgetLevelChangedListener = onBudgetLevelChangedListener;
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        final long now = System.currentTimeMillis();
+        final String month = getMonthKey(now);
+        final String today = getDayKey(now);
+        final long monthMeteredBytes = getMonthMeteredBytes();
+
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        if (mMonthlyBudget > 0) {
+
+            stringBuilder.append(String.format(Locale.US, "Budget %s of %s metered (%d%%) level=%s\n",
+                    formatBytes(monthMeteredBytes), formatBytes(mMonthlyBudget),
+                    monthMeteredBytes * 100 / mMonthlyBudget, getLevelName(mBudgetLevel)));
+
+        } else {
+
+            stringBuilder.append(String.format(Locale.US, "No budget, %s metered\n", formatBytes(monthMeteredBytes)));
+
+        }
+
+        final Map<String, Map<String, long[]>> monthNetworks = new TreeMap<>();
+
+        for (Map.Entry<String, Day> entry : mDays.tailMap(month).entrySet()) {
+
+            if (entry.getKey().startsWith(month)) {
+
+                addNetworks(monthNetworks, entry.getValue().networks);
+
+            }
+
+        }
+
+        stringBuilder.append("\nThis month");
+        appendNetworks(stringBuilder, monthNetworks);
+
+        final Day day = mDays.get(today);
+
+        stringBuilder.append("\n\nToday");
+        appendNetworks(stringBuilder, day != null ? day.networks : new TreeMap<String, Map<String, long[]>>());
+
+        stringBuilder.append("\n\nDays");
+
+        for (String dayKey : mDays.descendingKeySet()) {
+
+            final Map<String, Map<String, long[]>> networks = mDays.get(dayKey).networks;
+            final StringBuilder networkBuilder = new StringBuilder();
+
+            long totalBytes = 0;
+
+            for (Map.Entry<String, Map<String, long[]>> entry : networks.entrySet()) {
+
+                final long networkBytes = sum(entry.getValue());
+
+                totalBytes += networkBytes;
+                networkBuilder.append(' ').append(entry.getKey()).append('=').append(formatBytes(networkBytes));
+
+            }
+
+            stringBuilder.append(String.format(Locale.US, "\n%s %s%s", dayKey, formatBytes(totalBytes), networkBuilder));
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+    /**
+     * Private method.
+     * Recomputes the budget level and tells the listener if it has changed.
+     */
+    private void updateBudgetLevel() {
+
+        final int budgetLevel;
+        final OnBudgetLevelChangedListener onBudgetLevelChangedListener;
+
+        synchronized (this) {
+
+            budgetLevel = computeBudgetLevel();
+
+            if (budgetLevel == mBudgetLevel) {
+
+                return;
+
+            }
+
+            mBudgetLevel = budgetLevel;
+            onBudgetLevelChangedListener = mOnBudgetLevelChangedListener;
+
+        }
+
+        if (onBudgetLevelChangedListener != null) {
+
+            onBudgetLevelChangedListener.onBudgetLevelChanged(budgetLevel);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Returns the budget level for the bytes used this month.
+     */
+    private int computeBudgetLevel() {
+
+        final Calendar calendar = Calendar.getInstance();
+
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.MONTH, 1);
+
+        mMonthEndTime = calendar.getTimeInMillis();
+
+        if (mMonthlyBudget <= 0) {
+
+            return BUDGET_NORMAL;
+
+        }
+
+        final long monthMeteredBytes = getMonthMeteredBytes();
+
+        if (monthMeteredBytes >= mMonthlyBudget) {
+
+            return BUDGET_CACHE_ONLY;
+
+        } else if (monthMeteredBytes >= mMonthlyBudget * NO_IMAGES_FRACTION) {
+
+            return BUDGET_NO_IMAGES;
+
+        } else if (monthMeteredBytes >= mMonthlyBudget * NO_PREFETCH_FRACTION) {
+
+            return BUDGET_NO_PREFETCH;
+
+        }
+
+        return BUDGET_NORMAL;
+
+    }
+
+    /**
+     * Private method.
+     * Reads the totals written by {@link #save()}.
+     */
+    private void read() {
+
+        if (!mUsageFile.exists()) {
+
+            return;
+
+        }
+
+        try {
+
+            final JSONObject daysObject = new JSONObject(readFile(mUsageFile));
+            final Iterator<?> dayKeys = daysObject.keys();
+
+            while (dayKeys.hasNext()) {
+
+                final String dayKey = (String) dayKeys.next();
+                final JSONObject dayObject = daysObject.getJSONObject(dayKey);
+                final JSONObject networksObject = dayObject.getJSONObject("networks");
+                final Iterator<?> networkTypes = networksObject.keys();
+                final Day day = new Day();
+
+                day.meteredBytes = dayObject.getLong("metered");
+
+                while (networkTypes.hasNext()) {
+
+                    final String networkType = (String) networkTypes.next();
+                    final JSONObject labelsObject = networksObject.getJSONObject(networkType);
+                    final Iterator<?> labelKeys = labelsObject.keys();
+                    final Map<String, long[]> labels = new TreeMap<>();
+
+                    while (labelKeys.hasNext()) {
+
+                        final String label = (String) labelKeys.next();
+
+                        labels.put(label, new long[]{labelsObject.getLong(label)});
+
+                    }
+
+                    day.networks.put(networkType, labels);
+
+                }
+
+                mDays.put(dayKey, day);
+
+            }
+
+        } catch (IOException | JSONException exception) {
+
+            Log.e(TAG, "Could not read the data usage " + exception);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Writes the totals to disk. The file is written next to the old one and renamed over it,
+     * so a reader never sees half a file.
+     */
+    private void save() {
+
+        mLastSaveTime = System.currentTimeMillis();
+        mChanged = false;
+
+        try {
+
+            final JSONObject daysObject = new JSONObject();
+
+            for (Map.Entry<String, Day> dayEntry : mDays.entrySet()) {
+
+                final JSONObject networksObject = new JSONObject();
+
+                for (Map.Entry<String, Map<String, long[]>> networkEntry : dayEntry.getValue().networks.entrySet()) {
+
+                    final JSONObject labelsObject = new JSONObject();
+
+                    for (Map.Entry<String, long[]> labelEntry : networkEntry.getValue().entrySet()) {
+
+                        labelsObject.put(labelEntry.getKey(), labelEntry.getValue()[0]);
+
+                    }
+
+                    networksObject.put(networkEntry.getKey(), labelsObject);
+
+                }
+
+                daysObject.put(dayEntry.getKey(), new JSONObject()
+                        .put("metered", dayEntry.getValue().meteredBytes)
+                        .put("networks", networksObject));
+
+            }
+
+            final File temporaryFile = new File(mUsageFile.getPath() + ".tmp");
+            final FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile);
+
+            try {
+
+                fileOutputStream.write(daysObject.toString().getBytes(CHARSET));
+
+            } finally {
+
+                fileOutputStream.close();
+
+            }
+
+            if (!temporaryFile.renameTo(mUsageFile)) {
+
+                throw new IOException("Could not rename " + temporaryFile);
+
+            }
+
+        } catch (IOException | JSONException exception) {
+
+            Log.e(TAG, "Could not store the data usage " + exception);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Adds the totals of a day to the totals of a longer period.
+     */
+    private static void addNetworks(Map<String, Map<String, long[]>> totalNetworks,
+                                    Map<String, Map<String, long[]>> networks) {
+
+        for (Map.Entry<String, Map<String, long[]>> networkEntry : networks.entrySet()) {
+
+            Map<String, long[]> totalLabels = totalNetworks.get(networkEntry.getKey());
+
+            if (totalLabels == null) {
+
+                totalLabels = new TreeMap<>();
+                totalNetworks.put(networkEntry.getKey(), totalLabels);
+
+            }
+
+            for (Map.Entry<String, long[]> labelEntry : networkEntry.getValue().entrySet()) {
+
+                final long[] totalBytes = totalLabels.get(labelEntry.getKey());
+
+                if (totalBytes == null) {
+
+                    totalLabels.put(labelEntry.getKey(), new long[]{labelEntry.getValue()[0]});
+
+                } else {
+
+                    totalBytes[0] += labelEntry.getValue()[0];
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Appends the totals of every network type, labels with the most bytes first.
+     */
+    private static void appendNetworks(StringBuilder stringBuilder, Map<String, Map<String, long[]>> networks) {
+
+        if (networks.isEmpty()) {
+
+            stringBuilder.append("\n  Nothing received");
+
+            return;
+
+        }
+
+        for (Map.Entry<String, Map<String, long[]>> networkEntry : networks.entrySet()) {
+
+            final List<Map.Entry<String, long[]>> labelEntries = new ArrayList<>(networkEntry.getValue().entrySet());
+
+            Collections.sort(labelEntries, new Comparator<Map.Entry<String, long[]>>() {
+
+                @Override
+                public int compare(Map.Entry<String, long[]> lhs, Map.Entry<String, long[]> rhs) {
+
+                    return Long.valueOf(rhs.getValue()[0]).compareTo(lhs.getValue()[0]);
+
+                }
+
+            });
+
+            stringBuilder.append(String.format(Locale.US, "\n%s %s",
+                    networkEntry.getKey(), formatBytes(sum(networkEntry.getValue()))));
+
+            for (Map.Entry<String, long[]> labelEntry : labelEntries) {
+
+                stringBuilder.append(String.format(Locale.US, "\n  %-28s %10s",
+                        labelEntry.getKey(), formatBytes(labelEntry.getValue()[0])));
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Returns the total bytes of every label of a network type.
+     */
+    private static long sum(Map<String, long[]> labels) {
+
+        long bytes = 0;
+
+        for (long[] labelBytes : labels.values()) {
+
+            bytes += labelBytes[0];
+
+        }
+
+        return bytes;
+
+    }
+
+    /**
+     * Private method.
+     * Formats a byte count for the report.
+     */
+    private static String formatBytes(long bytes) {
+
+        if (bytes >= 1024 * 1024) {
+
+            return String.format(Locale.US, "%.1fMB", bytes / (1024.0 * 1024.0));
+
+        }
+
+        return String.format(Locale.US, "%.1fKB", bytes / 1024.0);
+
+    }
+
+    /**
+     * Private method.
+     * Returns the name of a budget level for the report.
+     */
+    private static String getLevelName(int budgetLevel) {
+
+        switch (budgetLevel) {
+
+            case BUDGET_NO_PREFETCH:
+
+                return "no-prefetch";
+
+            case BUDGET_NO_IMAGES:
+
+                return "no-images";
+
+            case BUDGET_CACHE_ONLY:
+
+                return "cache-only";
+
+            default:
+
+                return "normal";
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Returns the key of the local day a time falls on, e.g. 2015-03-01.
+     */
+    private static String getDayKey(long time) {
+
+        return new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date(time));
+
+    }
+
+    /**
+     * Private method.
+     * Returns the key of the local month a time falls in, e.g. 2015-03.
+     */
+    private static String getMonthKey(long time) {
+
+        return new SimpleDateFormat("yyyy-MM", Locale.US).format(new Date(time));
+
+    }
+
+    /**
+     * Private method.
+     * Reads a file into a {@link java.lang.String}.
+     */
+    private static String readFile(File file) throws IOException {
+
+        final InputStream inputStream = new FileInputStream(file);
+
+        try {
+
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream((int) file.length());
+            final byte[] buffer = new byte[8192];
+
+            int read;
+
+            while ((read = inputStream.read(buffer)) != -1) {
+
+                byteArrayOutputStream.write(buffer, 0, read);
+
+            }
+
+            return byteArrayOutputStream.toString(CHARSET);
+
+        } finally {
+
+            inputStream.close();
+
+        }
+
+    }
+
+}
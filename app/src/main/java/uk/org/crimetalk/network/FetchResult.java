@@ -0,0 +1,341 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Outcome of a fetch made by the {@link uk.org.crimetalk.network.PageFetcher}. A failed fetch
+ * says why it failed and may still hold the last result that was fetched successfully, so
+ * the UI can keep showing stale data instead of an empty screen. Every attempt that was
+ * made is recorded with its timing.
+ *
+ * @param <T> The type of the parsed result
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class FetchResult<T> {
+
+    public static final int FAILURE_NONE = 0;
+    public static final int FAILURE_TIMEOUT = 1;
+    public static final int FAILURE_DNS = 2;
+    public static final int FAILURE_NETWORK = 3;
+    public static final int FAILURE_HTTP_STATUS = 4;
+    public static final int FAILURE_PARSE = 5;
+    public static final int FAILURE_CANCELLED = 6;
+    public static final int FAILURE_OFFLINE = 7;
+    public static final int FAILURE_UNAVAILABLE = 8;
+
+    private final T mValue;
+    private final boolean mStale;
+    private final int mFailure;
+    private final IOException mException;
+    private final int mStatusCode;
+    private final List<Attempt> mAttempts;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.FetchResult}.
+     *
+     * @param value      The fresh result, or the stale result of a failed fetch
+     * @param stale      True if the value is left over from an earlier fetch
+     * @param failure    The failure type, should use a public int defined in this class
+     * @param exception  The exception of the last attempt, null on success
+     * @param statusCode The HTTP status code of an HTTP status failure, otherwise 0
+     * @param attempts   Every attempt that was made
+     */
+    FetchResult(T value, boolean stale, int failure, IOException exception, int statusCode, List<Attempt> attempts) {
+
+        this.mValue = value;
+        this.mStale = stale;
+        this.mFailure = failure;
+        this.mException = exception;
+        this.mStatusCode = statusCode;
+        this.mAttempts = Collections.unmodifiableList(attempts);
+
+    }
+
+    /**
+     * Returns a successful {@link uk.org.crimetalk.network.FetchResult} for a value that did
+     * not have to be fetched, e.g. a List kept by the background sync.
+     *
+     * @param value The value to be shown
+     * @param <T>   The type of the value
+     * @return {@link uk.org.crimetalk.network.FetchResult}
+     */
+    public static <T> FetchResult<T> fromValue(T value) {
+
+        return new FetchResult<>(value, false, FAILURE_NONE, null, 0, new ArrayList<Attempt>());
+
+    }
+
+    /**
+     * Returns the failure type of an {@link java.io.IOException}.
+     *
+     * @param ioException The {@link java.io.IOException} of a failed attempt
+     * @return Failure type as one of the public ints defined in this class
+     */
+    public static int getFailureType(IOException ioException) {
+
+        // Must be checked before InterruptedIOException which it extends
+        if (ioException instanceof SocketTimeoutException) {
+
+            return FAILURE_TIMEOUT;
+
+        }
+
+        if (ioException instanceof InterruptedIOException) {
+
+            return FAILURE_CANCELLED;
+
+        }
+
+        if (ioException instanceof UnknownHostException) {
+
+            return FAILURE_DNS;
+
+        }
+
+        if (ioException instanceof HttpStatusException) {
+
+            return FAILURE_HTTP_STATUS;
+
+        }
+
+        if (ioException instanceof ParseException) {
+
+            return FAILURE_PARSE;
+
+        }
+
+        if (ioException instanceof HostUnavailableException) {
+
+            return FAILURE_UNAVAILABLE;
+
+        }
+
+        return FAILURE_NETWORK;
+
+    }
+
+    /**
+     * Returns true if the fetch returned a fresh result.
+     *
+     * @return true if successful
+     */
+    public boolean isSuccessful() {
+
+        return mFailure == FAILURE_NONE;
+
+    }
+
+    /**
+     * Returns true if there is a value to show, either fresh or stale.
+     *
+     * @return true if {@link #getValue()} is not null
+     */
+    public boolean hasValue() {
+
+        return mValue != null;
+
+    }
+
+    /**
+     * Returns true if the fetch failed and the value is left over from an earlier fetch.
+     *
+     * @return true if the value is stale
+     */
+    public boolean isStale() {
+
+        return mStale;
+
+    }
+
+    /**
+     * Returns the parsed result. For a failed fetch this is the last result that was
+     * fetched successfully, or null if there is none.
+     *
+     * @return The parsed result
+     */
+    public T getValue() {
+
+        return mValue;
+
+    }
+
+    /**
+     * Returns the failure type of the fetch.
+     *
+     * @return Failure type as one of the public ints defined in this class
+     */
+    public int getFailure() {
+
+        return mFailure;
+
+    }
+
+    /**
+     * Returns the {@link java.io.IOException} of the last attempt.
+     *
+     * @return {@link java.io.IOException} or null if the fetch was successful
+     */
+    public IOException getException() {
+
+        return mException;
+
+    }
+
+    /**
+     * Returns the HTTP status code of an HTTP status failure.
+     *
+     * @return Status code or 0 if the failure was not an HTTP status
+     */
+    public int getStatusCode() {
+
+        return mStatusCode;
+
+    }
+
+    /**
+     * Returns every attempt that was made, in order.
+     *
+     * @return {@link java.util.List} of {@link uk.org.crimetalk.network.FetchResult.Attempt}
+     */
+    public List<Attempt> getAttempts() {
+
+        return mAttempts;
+
+    }
+
+    /**
+     * Returns the time spent on all attempts and the waits between them.
+     *
+     * @return Time in milliseconds
+     */
+    public long getTotalMillis() {
+
+        long totalMillis = 0;
+
+        for (Attempt attempt : mAttempts) {
+
+            totalMillis += attempt.getBackoffMillis() + attempt.getDurationMillis();
+
+        }
+
+        return totalMillis;
+
+    }
+
+    @Override
+    public String toString() {
+
+        final StringBuilder stringBuilder = new StringBuilder(String.format(Locale.US,
+                "failure=%d stale=%b total=%dms attempts=", mFailure, mStale, getTotalMillis()));
+
+        for (Attempt attempt : mAttempts) {
+
+            stringBuilder.append(' ').append(attempt);
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+    /**
+     * Class that describes a single attempt of a fetch.
+     */
+    public static class Attempt {
+
+        private final int mFailure;
+        private final int mStatusCode;
+        private final long mBackoffMillis;
+        private final long mDurationMillis;
+
+        /**
+         * Package-private constructor for the {@link uk.org.crimetalk.network.FetchResult.Attempt}.
+         */
+        Attempt(int failure, int statusCode, long backoffMillis, long durationMillis) {
+
+            this.mFailure = failure;
+            this.mStatusCode = statusCode;
+            this.mBackoffMillis = backoffMillis;
+            this.mDurationMillis = durationMillis;
+
+        }
+
+        /**
+         * Returns the failure type of the attempt.
+         *
+         * @return Failure type as one of the public ints defined in {@link uk.org.crimetalk.network.FetchResult}
+         */
+        public int getFailure() {
+
+            return mFailure;
+
+        }
+
+        /**
+         * Returns the HTTP status code of an HTTP status failure.
+         *
+         * @return Status code or 0 if the failure was not an HTTP status
+         */
+        public int getStatusCode() {
+
+            return mStatusCode;
+
+        }
+
+        /**
+         * Returns the wait before the attempt was started.
+         *
+         * @return Wait in milliseconds
+         */
+        public long getBackoffMillis() {
+
+            return mBackoffMillis;
+
+        }
+
+        /**
+         * Returns how long the attempt took.
+         *
+         * @return Duration in milliseconds
+         */
+        public long getDurationMillis() {
+
+            return mDurationMillis;
+
+        }
+
+        @Override
+        public String toString() {
+
+            return String.format(Locale.US, "[failure=%d status=%d wait=%dms took=%dms]",
+                    mFailure, mStatusCode, mBackoffMillis, mDurationMillis);
+
+        }
+
+    }
+
+}
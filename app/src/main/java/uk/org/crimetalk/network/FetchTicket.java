@@ -0,0 +1,263 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * One caller's share of a fetch that may be shared with other callers. Cancelling a
+ * {@link uk.org.crimetalk.network.FetchTicket} only releases this caller's share, the
+ * fetch itself is cancelled once every caller has released it.
+ * <p/>
+ * The outcome of the fetch is a {@link uk.org.crimetalk.network.FetchResult}. Use
+ * {@link #getFetchResult()} to handle failures and stale data, or {@link #getResult()}
+ * when only a fresh result is of any use.
+ *
+ * @param <T> The type of the parsed result
+ * @see {@link uk.org.crimetalk.network.PageFetcher#fetchAsync(HttpRequest, ResponseParser)}
+ */
+public class FetchTicket<T> implements Future<FetchResult<T>> {
+
+    private final PageFetcher.SharedFetch<T> mSharedFetch;
+
+    // Threads blocked in get(), woken when this caller cancels even if others still wait for the fetch
+    private final Set<Thread> mWaitingThreads;
+
+    private boolean mCancelled;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.FetchTicket}.
+     */
+    FetchTicket(PageFetcher.SharedFetch<T> sharedFetch) {
+
+        this.mSharedFetch = sharedFetch;
+        this.mWaitingThreads = new HashSet<>();
+
+    }
+
+    /**
+     * Waits for the fetch and returns its {@link uk.org.crimetalk.network.FetchResult}. This never
+     * throws, a cancelled fetch or an interrupted wait is returned as a cancelled result.
+     *
+     * @return {@link uk.org.crimetalk.network.FetchResult}
+     */
+    public FetchResult<T> getFetchResult() {
+
+        try {
+
+            return get();
+
+        } catch (ExecutionException executionException) {
+
+            // The fetch catches every IOException, anything else is a bug
+            throw new RuntimeException(executionException.getCause());
+
+        } catch (CancellationException cancellationException) {
+
+            return newCancelledResult(new InterruptedIOException("Fetch was cancelled"));
+
+        } catch (InterruptedException interruptedException) {
+
+            // Woken by cancel(), the thread itself was not interrupted
+            if (isCancelled()) {
+
+                return newCancelledResult(new InterruptedIOException("Fetch was cancelled"));
+
+            }
+
+            // This caller is no longer waiting so it gives up its share
+            cancel(true);
+
+            Thread.currentThread().interrupt();
+
+            return newCancelledResult(new InterruptedIOException("Interrupted while waiting for fetch"));
+
+        }
+
+    }
+
+    /**
+     * Waits for the fetch and returns its fresh result.
+     *
+     * @return The parsed result
+     * @throws IOException The exception of the last attempt if the fetch failed or was cancelled
+     */
+    public T getResult() throws IOException {
+
+        final FetchResult<T> fetchResult = getFetchResult();
+
+        if (!fetchResult.isSuccessful()) {
+
+            throw fetchResult.getException();
+
+        }
+
+        return fetchResult.getValue();
+
+    }
+
+    /**
+     * Moves the fetch up to a higher priority class if it has not started yet, e.g. when the
+     * page it was fetched for becomes visible. Lower priorities are ignored.
+     *
+     * @param priority Should use a priority defined in {@link uk.org.crimetalk.network.RequestScheduler}
+     */
+    public void promote(int priority) {
+
+        if (!isDone()) {
+
+            mSharedFetch.promote(priority);
+
+        }
+
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+
+        synchronized (this) {
+
+            if (mCancelled || mSharedFetch.isDone()) {
+
+                return false;
+
+            }
+
+            mCancelled = true;
+
+            if (mayInterruptIfRunning) {
+
+                for (Thread waitingThread : mWaitingThreads) {
+
+                    waitingThread.interrupt();
+
+                }
+
+            }
+
+        }
+
+        mSharedFetch.release(mayInterruptIfRunning);
+
+        // A caller waiting for any of several tickets counts this one as done
+        mSharedFetch.pageFetcher.notifyFetchDone();
+
+        return true;
+
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+
+        return mCancelled;
+
+    }
+
+    @Override
+    public boolean isDone() {
+
+        return isCancelled() || mSharedFetch.isDone();
+
+    }
+
+    @Override
+    public FetchResult<T> get() throws InterruptedException, ExecutionException {
+
+        startWaiting();
+
+        try {
+
+            return mSharedFetch.get();
+
+        } finally {
+
+            stopWaiting();
+
+        }
+
+    }
+
+    @Override
+    public FetchResult<T> get(long timeout, TimeUnit timeUnit) throws InterruptedException, ExecutionException, TimeoutException {
+
+        startWaiting();
+
+        try {
+
+            return mSharedFetch.get(timeout, timeUnit);
+
+        } finally {
+
+            stopWaiting();
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Registers the current thread so {@link #cancel(boolean)} can wake it.
+     */
+    private synchronized void startWaiting() {
+
+        if (mCancelled) {
+
+            throw new CancellationException();
+
+        }
+
+        mWaitingThreads.add(Thread.currentThread());
+
+    }
+
+    /**
+     * Private method.
+     * Unregisters the current thread. An interrupt sent by {@link #cancel(boolean)} after the
+     * wait had already ended is cleared so it does not break the next blocking call of the thread.
+     */
+    private synchronized void stopWaiting() {
+
+        mWaitingThreads.remove(Thread.currentThread());
+
+        if (mCancelled) {
+
+            Thread.interrupted();
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Returns a {@link uk.org.crimetalk.network.FetchResult} for a fetch this caller stopped waiting for.
+     */
+    private FetchResult<T> newCancelledResult(IOException ioException) {
+
+        return new FetchResult<>(null, false, FetchResult.FAILURE_CANCELLED, ioException, 0,
+                new ArrayList<FetchResult.Attempt>());
+
+    }
+
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import android.os.SystemClock;
+
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Circuit breaker that keeps track of the health of every host. After a number of consecutive
+ * failures the circuit of a host opens and requests to it fail straight away with a
+ * {@link uk.org.crimetalk.network.HostUnavailableException}, so the
+ * {@link uk.org.crimetalk.network.PageFetcher} can return the cached result of a page instead
+ * of every tab and search category waiting out its own timeout. Once the circuit has been open
+ * for a while a single request is let through as a probe. If it succeeds the circuit closes,
+ * if it fails the circuit opens again for twice as long.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class HostHealth {
+
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_OPEN = 1;
+    public static final int STATE_HALF_OPEN = 2;
+
+    private static final String[] STATE_NAMES = {"closed", "open", "half open"};
+
+    // Consecutive failures that open the circuit
+    private static final int FAILURE_THRESHOLD = 3;
+
+    // How long the circuit stays open before the first probe, doubled by every failed probe
+    private static final long MIN_OPEN_MILLIS = 15 * 1000;
+    private static final long MAX_OPEN_MILLIS = 5 * 60 * 1000;
+
+    // Transitions kept for the diagnostics screen
+    private static final int MAX_TRANSITIONS = 20;
+
+    private final Map<String, Circuit> mCircuits;
+    private final ArrayDeque<Transition> mTransitions;
+
+    private long mRejected;
+
+    // Failures while the device has no network say nothing about the host
+    private boolean mNetworkConnected = true;
+    private String mNetworkTypeName;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.HostHealth}.
+     * The {@link uk.org.crimetalk.network.HttpTransport} owns the only instance.
+     */
+    HostHealth() {
+
+        this.mCircuits = new HashMap<>();
+        this.mTransitions = new ArrayDeque<>();
+
+    }
+
+    /**
+     * Returns the state of the circuit of a host.
+     *
+     * @param host The host
+     * @return Should be a state defined in this class
+     */
+    public synchronized int getState(String host) {
+
+        final Circuit circuit = mCircuits.get(host);
+
+        return circuit != null ? circuit.state : STATE_CLOSED;
+
+    }
+
+    /**
+     * Returns true if requests to a host currently fail without being sent.
+     *
+     * @param host The host
+     * @return true if the circuit of the host is open or already probing
+     */
+    public synchronized boolean isUnavailable(String host) {
+
+        final Circuit circuit = mCircuits.get(host);
+
+        return circuit != null && (circuit.state == STATE_OPEN
+                && SystemClock.elapsedRealtime() < circuit.openUntil || circuit.probing);
+
+    }
+
+    /**
+     * Package-private method.
+     * Checks whether a request may be sent to a host. While the circuit is open only the first
+     * request after the open period is let through, as a probe.
+     *
+     * @throws HostUnavailableException If the request should not be sent
+     */
+    synchronized void checkRequest(String host) throws HostUnavailableException {
+
+        final Circuit circuit = mCircuits.get(host);
+
+        if (circuit == null || circuit.state == STATE_CLOSED) {
+
+            return;
+
+        }
+
+        if (circuit.state == STATE_OPEN && SystemClock.elapsedRealtime() >= circuit.openUntil) {
+
+            setState(host, circuit, STATE_HALF_OPEN);
+
+        }
+
+        if (circuit.state == STATE_HALF_OPEN && !circuit.probing) {
+
+            circuit.probing = true;
+
+            return;
+
+        }
+
+        mRejected++;
+
+        throw new HostUnavailableException(host + " is not responding, circuit is " + STATE_NAMES[circuit.state]);
+
+    }
+
+    /**
+     * Package-private method.
+     * Records a request that received a response the host was able to give.
+     */
+    synchronized void recordSuccess(String host) {
+
+        final Circuit circuit = mCircuits.get(host);
+
+        if (circuit == null) {
+
+            return;
+
+        }
+
+        circuit.failures = 0;
+        circuit.probing = false;
+        circuit.openMillis = MIN_OPEN_MILLIS;
+
+        if (circuit.state != STATE_CLOSED) {
+
+            setState(host, circuit, STATE_CLOSED);
+
+        }
+
+    }
+
+    /**
+     * Package-private method.
+     * Records a request that failed. Only failures that say something about the host count,
+     * a cancelled request or a client error only ends a probe.
+     */
+    synchronized void recordFailure(String host, IOException ioException) {
+
+        // E.g. an UnknownHostException or ConnectException while the device is offline or switching networks
+        final boolean offline = !mNetworkConnected && !(ioException instanceof HttpStatusException);
+
+        if (offline || !isHostFailure(ioException)) {
+
+            if (ioException instanceof HttpStatusException) {
+
+                // The host answered, even if it did not like the request
+                recordSuccess(host);
+
+                return;
+
+            }
+
+            recordCancelled(host);
+
+            return;
+
+        }
+
+        Circuit circuit = mCircuits.get(host);
+
+        if (circuit == null) {
+
+            circuit = new Circuit();
+
+            mCircuits.put(host, circuit);
+
+        }
+
+        circuit.failures++;
+
+        if (circuit.state == STATE_HALF_OPEN) {
+
+            // The probe failed so the host is given longer to recover
+            circuit.probing = false;
+            circuit.openMillis = Math.min(circuit.openMillis * 2, MAX_OPEN_MILLIS);
+
+            open(host, circuit);
+
+        } else if (circuit.state == STATE_CLOSED && circuit.failures >= FAILURE_THRESHOLD) {
+
+            open(host, circuit);
+
+        }
+
+    }
+
+    /**
+     * Package-private method.
+     * Records a request that was given up before it got a response. A cancelled probe lets
+     * the next request probe instead.
+     */
+    synchronized void recordCancelled(String host) {
+
+        final Circuit circuit = mCircuits.get(host);
+
+        if (circuit != null) {
+
+            circuit.probing = false;
+
+        }
+
+    }
+
+    /**
+     * Package-private method.
+     * Called by the {@link uk.org.crimetalk.network.ConnectivityMonitor} when the connectivity state
+     * changes. Failures on the previous network, including those recorded before the device noticed
+     * it had lost the network, say nothing about the hosts so every circuit is closed again.
+     */
+    synchronized void setConnectivityState(ConnectivityState connectivityState) {
+
+        final String networkTypeName = String.valueOf(connectivityState.getTypeName());
+
+        if (connectivityState.isConnected() == mNetworkConnected && networkTypeName.equals(mNetworkTypeName)) {
+
+            return;
+
+        }
+
+        mNetworkConnected = connectivityState.isConnected();
+        mNetworkTypeName = networkTypeName;
+
+        for (Map.Entry<String, Circuit> entry : mCircuits.entrySet()) {
+
+            final Circuit circuit = entry.getValue();
+
+            circuit.failures = 0;
+            circuit.probing = false;
+            circuit.openMillis = MIN_OPEN_MILLIS;
+
+            if (circuit.state != STATE_CLOSED) {
+
+                setState(entry.getKey(), circuit, STATE_CLOSED);
+
+            }
+
+        }
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        for (Map.Entry<String, Circuit> entry : mCircuits.entrySet()) {
+
+            final Circuit circuit = entry.getValue();
+
+            stringBuilder.append(String.format(Locale.US, "%s: %s failures=%d open for=%ds\n",
+                    entry.getKey(), STATE_NAMES[circuit.state], circuit.failures, circuit.openMillis / 1000));
+
+        }
+
+        stringBuilder.append(String.format(Locale.US, "rejected=%d", mRejected));
+
+        final long now = SystemClock.elapsedRealtime();
+
+        for (Transition transition : mTransitions) {
+
+            stringBuilder.append(String.format(Locale.US, "\n%ds ago %s: %s -> %s", (now - transition.time) / 1000,
+                    transition.host, STATE_NAMES[transition.fromState], STATE_NAMES[transition.toState]));
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+    /**
+     * Private method.
+     * Opens the circuit of a host for its current open period.
+     */
+    private void open(String host, Circuit circuit) {
+
+        circuit.openUntil = SystemClock.elapsedRealtime() + circuit.openMillis;
+
+        setState(host, circuit, STATE_OPEN);
+
+    }
+
+    /**
+     * Private method.
+     * Changes the state of a circuit and remembers the transition.
+     */
+    private void setState(String host, Circuit circuit, int state) {
+
+        mTransitions.addFirst(new Transition(host, circuit.state, state));
+
+        if (mTransitions.size() > MAX_TRANSITIONS) {
+
+            mTransitions.removeLast();
+
+        }
+
+        circuit.state = state;
+
+    }
+
+    /**
+     * Private method.
+     * Returns true if a failure means the host is down or overloaded.
+     */
+    private static boolean isHostFailure(IOException ioException) {
+
+        if (ioException instanceof HttpStatusException) {
+
+            return ((HttpStatusException) ioException).getStatusCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+
+        }
+
+        // Must be checked before InterruptedIOException which it extends
+        if (ioException instanceof SocketTimeoutException) {
+
+            return true;
+
+        }
+
+        return !(ioException instanceof InterruptedIOException);
+
+    }
+
+    /**
+     * Private class that holds the circuit of a single host.
+     */
+    private static class Circuit {
+
+        int state = STATE_CLOSED;
+        int failures;
+        boolean probing;
+        long openUntil;
+        long openMillis = MIN_OPEN_MILLIS;
+
+    }
+
+    /**
+     * Private class that holds a state change of a circuit.
+     */
+    private static class Transition {
+
+        final String host;
+        final int fromState;
+        final int toState;
+        final long time;
+
+        Transition(String host, int fromState, int toState) {
+
+            this.host = host;
+            this.fromState = fromState;
+            this.toState = toState;
+            this.time = SystemClock.elapsedRealtime();
+
+        }
+
+    }
+
+}
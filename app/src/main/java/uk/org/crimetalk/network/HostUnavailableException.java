@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.io.IOException;
+
+/**
+ * {@link java.io.IOException} thrown by the {@link uk.org.crimetalk.network.HttpTransport} without
+ * sending a request when the {@link uk.org.crimetalk.network.HostHealth} circuit of the host is open.
+ * Like a parse failure, this is not retried.
+ */
+public class HostUnavailableException extends IOException {
+
+    /**
+     * Public constructor for the {@link uk.org.crimetalk.network.HostUnavailableException}.
+     *
+     * @param message Description of why the host is unavailable
+     */
+    public HostUnavailableException(String message) {
+        super(message);
+
+        // Do nothing
+
+    }
+
+}
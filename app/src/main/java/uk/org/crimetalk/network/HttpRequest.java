@@ -0,0 +1,354 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class that describes a single request made through the {@link uk.org.crimetalk.network.HttpTransport}.
+ * Mirrors the parts of {@link org.jsoup.Connection} that the loaders used.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class HttpRequest {
+
+    public static final String METHOD_GET = "GET";
+    public static final String METHOD_POST = "POST";
+    public static final String METHOD_HEAD = "HEAD";
+
+    // Used for encoding request data
+    private static final String CHARSET = "UTF-8";
+
+    private final String mUrl;
+    private final Map<String, String> mData;
+    private final Map<String, String> mHeaders;
+    private final Map<String, String> mLeanData;
+
+    private String mMethod;
+    private String mUsageLabel;
+    private int mTimeout;
+    private int mPriority;
+    private boolean mIdempotent;
+
+    /**
+     * Public constructor for the {@link uk.org.crimetalk.network.HttpRequest}.
+     * Requests are GET requests unless changed by {@link #setMethod(String)}.
+     *
+     * @param url The URL to be requested
+     */
+    public HttpRequest(String url) {
+
+        this.mUrl = url;
+        this.mData = new LinkedHashMap<>();
+        this.mHeaders = new LinkedHashMap<>();
+        this.mLeanData = new LinkedHashMap<>();
+        this.mMethod = METHOD_GET;
+        this.mPriority = RequestScheduler.PRIORITY_VISIBLE;
+
+    }
+
+    /**
+     * Set the method of the {@link uk.org.crimetalk.network.HttpRequest}.
+     *
+     * @param method Should use a public method defined in this class
+     * @return The current {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest setMethod(String method) {
+
+        this.mMethod = method;
+
+        return this;
+
+    }
+
+    /**
+     * Add a key/value pair to the {@link uk.org.crimetalk.network.HttpRequest}. GET requests
+     * send the data in the query string, POST requests send it as a form body.
+     *
+     * @param key   The data key
+     * @param value The data value
+     * @return The current {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest addData(String key, String value) {
+
+        this.mData.put(key, value);
+
+        return this;
+
+    }
+
+    /**
+     * Set a request header of the {@link uk.org.crimetalk.network.HttpRequest}.
+     *
+     * @param name  The header name
+     * @param value The header value
+     * @return The current {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest setHeader(String name, String value) {
+
+        this.mHeaders.put(name, value);
+
+        return this;
+
+    }
+
+    /**
+     * Set the timeout of the {@link uk.org.crimetalk.network.HttpRequest}. This is the upper
+     * bound of both the connect and the read timeout, which the
+     * {@link uk.org.crimetalk.network.HttpTransport} sets from the observed latency of the host.
+     *
+     * @param timeout Timeout in milliseconds
+     * @return The current {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest setTimeout(int timeout) {
+
+        this.mTimeout = timeout;
+
+        return this;
+
+    }
+
+    /**
+     * Set the priority class the {@link uk.org.crimetalk.network.PageFetcher} fetches the
+     * {@link uk.org.crimetalk.network.HttpRequest} with. Requests are fetched for the visible
+     * screen unless changed.
+     *
+     * @param priority Should use a priority defined in {@link uk.org.crimetalk.network.RequestScheduler}
+     * @return The current {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest setPriority(int priority) {
+
+        this.mPriority = priority;
+
+        return this;
+
+    }
+
+    /**
+     * Set the label the bytes of the {@link uk.org.crimetalk.network.HttpRequest} are attributed
+     * to by the {@link uk.org.crimetalk.network.DataUsage}, e.g. the title of its category or article.
+     *
+     * @param usageLabel The usage label
+     * @return The current {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest setUsageLabel(String usageLabel) {
+
+        this.mUsageLabel = usageLabel;
+
+        return this;
+
+    }
+
+    /**
+     * Marks a POST {@link uk.org.crimetalk.network.HttpRequest} as safe to repeat. GET requests
+     * are always safe to repeat. Only repeatable requests are retried after a failure.
+     *
+     * @param idempotent True if sending the request twice has the same effect as sending it once
+     * @return The current {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest setIdempotent(boolean idempotent) {
+
+        this.mIdempotent = idempotent;
+
+        return this;
+
+    }
+
+    /**
+     * Add a key/value pair that asks the server for a lean variant of the page, e.g. Joomla's
+     * component-only rendering. The {@link uk.org.crimetalk.network.PageFetcher} sends it only
+     * while the lean variant of the page can be parsed and falls back to the full page otherwise.
+     *
+     * @param key   The data key
+     * @param value The data value
+     * @return The current {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest addLeanData(String key, String value) {
+
+        this.mLeanData.put(key, value);
+
+        return this;
+
+    }
+
+    /**
+     * Returns true if the {@link uk.org.crimetalk.network.HttpRequest} has a lean variant.
+     *
+     * @return true if lean data has been added
+     */
+    public boolean hasLeanVariant() {
+
+        return !mLeanData.isEmpty();
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns a copy of the {@link uk.org.crimetalk.network.HttpRequest} that includes its lean data.
+     */
+    HttpRequest newLeanRequest() {
+
+        final HttpRequest leanRequest = new HttpRequest(mUrl)
+                .setMethod(mMethod)
+                .setTimeout(mTimeout)
+                .setPriority(mPriority)
+                .setUsageLabel(mUsageLabel)
+                .setIdempotent(mIdempotent);
+
+        leanRequest.mData.putAll(mData);
+        leanRequest.mData.putAll(mLeanData);
+        leanRequest.mHeaders.putAll(mHeaders);
+
+        return leanRequest;
+
+    }
+
+    /**
+     * Returns the URL of the {@link uk.org.crimetalk.network.HttpRequest}
+     * without any GET data.
+     *
+     * @return URL as a {@link java.lang.String}
+     */
+    public String getUrl() {
+
+        return mUrl;
+
+    }
+
+    /**
+     * Returns the URL that should be connected to. For GET requests
+     * this includes the encoded data.
+     *
+     * @return URL as a {@link java.lang.String}
+     */
+    public String getRequestUrl() {
+
+        if (!METHOD_GET.equals(mMethod) || mData.isEmpty()) {
+
+            return mUrl;
+
+        }
+
+        return mUrl + (mUrl.contains("?") ? "&" : "?") + getEncodedData();
+
+    }
+
+    /**
+     * Returns the method of the {@link uk.org.crimetalk.network.HttpRequest}.
+     *
+     * @return Method as a {@link java.lang.String}
+     */
+    public String getMethod() {
+
+        return mMethod;
+
+    }
+
+    /**
+     * Returns the request headers of the {@link uk.org.crimetalk.network.HttpRequest}.
+     *
+     * @return Headers as a {@link java.util.Map}
+     */
+    public Map<String, String> getHeaders() {
+
+        return mHeaders;
+
+    }
+
+    /**
+     * Returns the timeout of the {@link uk.org.crimetalk.network.HttpRequest}.
+     *
+     * @return Timeout in milliseconds
+     */
+    public int getTimeout() {
+
+        return mTimeout;
+
+    }
+
+    /**
+     * Returns the priority class of the {@link uk.org.crimetalk.network.HttpRequest}.
+     *
+     * @return Priority defined in {@link uk.org.crimetalk.network.RequestScheduler}
+     */
+    public int getPriority() {
+
+        return mPriority;
+
+    }
+
+    /**
+     * Returns the label the bytes of the {@link uk.org.crimetalk.network.HttpRequest} are attributed to.
+     *
+     * @return Usage label or null if none was set
+     */
+    public String getUsageLabel() {
+
+        return mUsageLabel;
+
+    }
+
+    /**
+     * Returns true if the {@link uk.org.crimetalk.network.HttpRequest} may be sent again after a failure.
+     *
+     * @return true if the request is idempotent
+     */
+    public boolean isIdempotent() {
+
+        return METHOD_GET.equals(mMethod) || METHOD_HEAD.equals(mMethod) || mIdempotent;
+
+    }
+
+    /**
+     * Returns the data of the {@link uk.org.crimetalk.network.HttpRequest} encoded
+     * as application/x-www-form-urlencoded.
+     *
+     * @return Encoded data as a {@link java.lang.String}
+     */
+    public String getEncodedData() {
+
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        try {
+
+            for (Map.Entry<String, String> entry : mData.entrySet()) {
+
+                if (stringBuilder.length() > 0) {
+
+                    stringBuilder.append('&');
+
+                }
+
+                stringBuilder.append(URLEncoder.encode(entry.getKey(), CHARSET))
+                        .append('=')
+                        .append(URLEncoder.encode(entry.getValue(), CHARSET));
+
+            }
+
+        } catch (UnsupportedEncodingException unsupportedEncodingException) {
+
+            // UTF-8 is always supported
+            throw new IllegalStateException(unsupportedEncodingException);
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+}
@@ -0,0 +1,856 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import android.os.SystemClock;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Response returned by the {@link uk.org.crimetalk.network.HttpTransport}. The body is read
+ * straight from the connection so every {@link uk.org.crimetalk.network.HttpResponse} must be
+ * closed, otherwise the connection can not go back to the pool. A gzip or deflate body is
+ * decompressed as it is read.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class HttpResponse implements Closeable {
+
+    // Anything left over after this many bytes is not worth draining to keep the connection alive
+    private static final int MAX_DRAIN_BYTES = 8 * 1024;
+
+    // A charset declared in the page itself is expected near the top of the head
+    private static final int MAX_SNIFF_BYTES = 1024;
+    private static final Pattern META_CHARSET_PATTERN =
+            Pattern.compile("<meta[^>]+charset\\s*=\\s*[\"']?([-_a-zA-Z0-9.:]+)", Pattern.CASE_INSENSITIVE);
+
+    // Jsoup assumes UTF-8 when neither the headers nor the page declare a charset
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    private final HttpTransport mHttpTransport;
+    private final HttpRequest mHttpRequest;
+    private final HttpURLConnection mHttpURLConnection;
+    private final String mHost;
+    private final int mStatusCode;
+    private final boolean mReusedConnection;
+    private final boolean mWarmUp;
+    private final RequestTimings mRequestTimings;
+
+    private CountingInputStream mWireInputStream;
+    private CountingInputStream mDecodedInputStream;
+    private BodyInputStream mBodyInputStream;
+    private long mBodyStartTime;
+    private boolean mClosed;
+
+    // Set from another thread to give up on the response
+    private volatile boolean mAborted;
+
+    // Set once the body has been read as far as the parser needs it
+    private volatile boolean mStoppedEarly;
+    private long mStopTime;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.HttpResponse}.
+     * Only the {@link uk.org.crimetalk.network.HttpTransport} should create responses.
+     */
+    HttpResponse(HttpTransport httpTransport, HttpRequest httpRequest, HttpURLConnection httpURLConnection,
+                 String host, int statusCode, boolean reusedConnection, boolean warmUp, RequestTimings requestTimings) {
+
+        this.mHttpTransport = httpTransport;
+        this.mHttpRequest = httpRequest;
+        this.mHttpURLConnection = httpURLConnection;
+        this.mHost = host;
+        this.mStatusCode = statusCode;
+        this.mReusedConnection = reusedConnection;
+        this.mWarmUp = warmUp;
+        this.mRequestTimings = requestTimings;
+
+    }
+
+    /**
+     * Returns the {@link uk.org.crimetalk.network.HttpRequest} that created this response.
+     *
+     * @return {@link uk.org.crimetalk.network.HttpRequest}
+     */
+    public HttpRequest getRequest() {
+
+        return mHttpRequest;
+
+    }
+
+    /**
+     * Returns the HTTP status code of the response.
+     *
+     * @return Status code as an int
+     */
+    public int getStatusCode() {
+
+        return mStatusCode;
+
+    }
+
+    /**
+     * Returns the value of a response header.
+     *
+     * @param name The header name
+     * @return Header value or null if the header was not sent
+     */
+    public String getHeader(String name) {
+
+        return mHttpURLConnection.getHeaderField(name);
+
+    }
+
+    /**
+     * Returns the charset declared in the Content-Type header.
+     *
+     * @return Charset as a {@link java.lang.String} or null if none was declared
+     */
+    public String getCharset() {
+
+        final String contentType = mHttpURLConnection.getContentType();
+
+        if (contentType == null) {
+
+            return null;
+
+        }
+
+        for (String parameter : contentType.split(";")) {
+
+            final String trimmedParameter = parameter.trim();
+
+            if (trimmedParameter.toLowerCase().startsWith("charset=")) {
+
+                return trimmedParameter.substring("charset=".length()).replace("\"", "").trim();
+
+            }
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * Returns true if the underlying connection was most likely taken from the pool
+     * rather than opened for this request.
+     *
+     * @return true if the connection was reused
+     */
+    public boolean isReusedConnection() {
+
+        return mReusedConnection;
+
+    }
+
+    /**
+     * Returns the length of the body on the wire as sent in the Content-Length header.
+     *
+     * @return Length in bytes or -1 if the length was not sent, e.g. for a chunked body
+     */
+    public long getContentLength() {
+
+        final String contentLength = getHeader("Content-Length");
+
+        try {
+
+            return contentLength != null ? Long.parseLong(contentLength.trim()) : -1;
+
+        } catch (NumberFormatException numberFormatException) {
+
+            return -1;
+
+        }
+
+    }
+
+    /**
+     * Returns true if reading the body was stopped by {@link #parseContainer(String)} once the
+     * container had been closed.
+     *
+     * @return true if the rest of the body was not read
+     */
+    public boolean isStoppedEarly() {
+
+        return mStoppedEarly;
+
+    }
+
+    /**
+     * Returns the phase timings of the request. The transfer phase is known once the body has
+     * been read to the end and the parse phase once {@link #parse()} has returned.
+     *
+     * @return {@link uk.org.crimetalk.network.RequestTimings}
+     */
+    public RequestTimings getTimings() {
+
+        // A body that was stopped early had its transfer phase set when reading stopped
+        if (isBodyRead() && !mStoppedEarly) {
+
+            mRequestTimings.set(RequestTimings.PHASE_TRANSFER, getBodyMillis());
+
+        }
+
+        return mRequestTimings;
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns true if the request was only made to open a connection for later requests.
+     */
+    boolean isWarmUp() {
+
+        return mWarmUp;
+
+    }
+
+    /**
+     * Returns the response body as a stream. The stream is read directly from the
+     * connection, decompressed on the fly and can only be read once.
+     *
+     * @return Body {@link java.io.InputStream}
+     * @throws IOException If the body can not be opened
+     */
+    public InputStream getInputStream() throws IOException {
+
+        if (mBodyInputStream == null) {
+
+            // Responses without a body have nothing to decompress even if a Content-Encoding was sent
+            final boolean hasBody = mStatusCode != HttpURLConnection.HTTP_NOT_MODIFIED
+                    && mStatusCode != HttpURLConnection.HTTP_NO_CONTENT
+                    && !HttpRequest.METHOD_HEAD.equals(mHttpRequest.getMethod());
+
+            mWireInputStream = new CountingInputStream(mHttpURLConnection.getInputStream());
+            mDecodedInputStream = new CountingInputStream(hasBody ?
+                    decode(mWireInputStream, getHeader("Content-Encoding")) : mWireInputStream);
+            mBodyInputStream = new BodyInputStream(mDecodedInputStream);
+
+            mBodyStartTime = SystemClock.elapsedRealtime();
+
+        }
+
+        return mBodyInputStream;
+
+    }
+
+    /**
+     * Returns the number of body bytes received on the wire so far.
+     *
+     * @return Byte count
+     */
+    public long getWireBytes() {
+
+        return mWireInputStream != null ? mWireInputStream.getCount() : 0;
+
+    }
+
+    /**
+     * Returns the number of body bytes read after decompression so far.
+     *
+     * @return Byte count
+     */
+    public long getDecodedBytes() {
+
+        return mDecodedInputStream != null ? mDecodedInputStream.getCount() : 0;
+
+    }
+
+    /**
+     * Returns the time taken to read the body from the first read to the end.
+     *
+     * @return Time in milliseconds or 0 if the body was not read to the end in one go
+     */
+    public long getBodyMillis() {
+
+        // The end of a body that was stopped early was only drained after parsing
+        return mBodyInputStream != null && mBodyInputStream.isExhausted() && !mStoppedEarly ?
+                mBodyInputStream.getExhaustedTime() - mBodyStartTime : 0;
+
+    }
+
+    /**
+     * Aborts the response, usually from a thread other than the one reading it. The connection
+     * is closed so a read that is blocked on the socket fails straight away and every later read
+     * throws an {@link java.io.InterruptedIOException}.
+     */
+    public void abort() {
+
+        mAborted = true;
+
+        mHttpURLConnection.disconnect();
+
+    }
+
+    /**
+     * Returns true if the response has been aborted.
+     *
+     * @return true if {@link #abort()} has been called
+     */
+    public boolean isAborted() {
+
+        return mAborted;
+
+    }
+
+    /**
+     * Throws an {@link java.io.InterruptedIOException} if the response has been aborted or the
+     * reading thread has been interrupted. Parsers call this while walking a document so a
+     * cancelled fetch stops mid-document rather than after the last element.
+     *
+     * @throws InterruptedIOException If the response is no longer wanted
+     */
+    public void throwIfCancelled() throws InterruptedIOException {
+
+        if (mAborted || Thread.currentThread().isInterrupted()) {
+
+            throw new InterruptedIOException("Response from " + mHost + " was cancelled");
+
+        }
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns true if the body has been read as far as it is needed, after which aborting saves nothing.
+     */
+    boolean isBodyRead() {
+
+        final BodyInputStream bodyInputStream = mBodyInputStream;
+
+        return mStoppedEarly || bodyInputStream != null && bodyInputStream.isExhausted();
+
+    }
+
+    /**
+     * Parses the response body into a {@link org.jsoup.nodes.Document}. This is the
+     * equivalent of {@link org.jsoup.Connection.Response#parse()}. The body is read into segments
+     * of the {@link uk.org.crimetalk.network.BufferPool}, its charset is taken from the headers or
+     * the top of the page once and it is decoded in a single pass into the text Jsoup parses.
+     *
+     * @return {@link org.jsoup.nodes.Document}
+     * @throws IOException If the body can not be read
+     */
+    public Document parse() throws IOException {
+
+        return parse(null);
+
+    }
+
+    /**
+     * Parses only the first element with a class into a {@link org.jsoup.nodes.Document}. The body
+     * is scanned as it arrives and reading stops once that element has been closed, so whatever
+     * follows it, e.g. footers, modules and scripts, is neither received nor parsed. The whole
+     * body is parsed if the element is not found, or if early stopping has been turned off with
+     * {@link uk.org.crimetalk.network.HttpTransport#setEarlyStopEnabled(boolean)} or the
+     * {@link uk.org.crimetalk.network.BufferPool} has been turned off.
+     *
+     * @param containerClass The class of the element that holds everything the parser needs
+     * @return {@link org.jsoup.nodes.Document}
+     * @throws IOException If the body can not be read
+     */
+    public Document parseContainer(String containerClass) throws IOException {
+
+        return parse(mHttpTransport.isEarlyStopEnabled() ? containerClass : null);
+
+    }
+
+    /**
+     * Closes the response. If the body was fully read the connection is handed back
+     * to the pool, otherwise it is dropped. Calling this more than once has no effect.
+     */
+    @Override
+    public void close() {
+
+        if (mClosed) {
+
+            return;
+
+        }
+
+        mClosed = true;
+
+        boolean reusable = !"close".equalsIgnoreCase(getHeader("Connection"));
+
+        try {
+
+            final InputStream inputStream = getInputStream();
+
+            // A small remainder is drained so the connection can be kept alive
+            if (reusable && !mBodyInputStream.isExhausted()) {
+
+                reusable = drain(inputStream);
+
+            }
+
+            inputStream.close();
+
+        } catch (IOException ioException) {
+
+            reusable = false;
+
+        }
+
+        // HttpURLConnection#disconnect() would close the socket so it is only used when the connection is dead
+        if (!reusable) {
+
+            mHttpURLConnection.disconnect();
+
+        }
+
+        mHttpTransport.onResponseClosed(this, mHost, reusable, getHeader("Keep-Alive"));
+
+    }
+
+    /**
+     * Private method.
+     * Wraps the wire stream in a decompressing stream that matches the Content-Encoding.
+     */
+    private static InputStream decode(InputStream inputStream, String contentEncoding) throws IOException {
+
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+
+            return new GZIPInputStream(inputStream);
+
+        }
+
+        if ("deflate".equalsIgnoreCase(contentEncoding)) {
+
+            // Some servers send raw deflate data instead of the zlib format, check the header first
+            final PushbackInputStream pushbackInputStream = new PushbackInputStream(inputStream, 2);
+            final byte[] header = new byte[2];
+
+            final int read = pushbackInputStream.read(header);
+
+            if (read > 0) {
+
+                pushbackInputStream.unread(header, 0, read);
+
+            }
+
+            final boolean zlibHeader = read == 2 && (header[0] & 0x0F) == 8
+                    && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+
+            return new InflaterInputStream(pushbackInputStream, new Inflater(!zlibHeader)) {
+
+                @Override
+                public void close() throws IOException {
+
+                    super.close();
+
+                    // A custom Inflater is not released by InflaterInputStream
+                    inf.end();
+
+                }
+
+            };
+
+        }
+
+        return inputStream;
+
+    }
+
+    /**
+     * Private method.
+     * Reads and discards whatever is left in the body as long as it is small.
+     *
+     * @return true if the end of the body was reached
+     */
+    private boolean drain(InputStream inputStream) throws IOException {
+
+        final byte[] buffer = new byte[1024];
+
+        int drained = 0;
+
+        while (drained < MAX_DRAIN_BYTES) {
+
+            final int read = inputStream.read(buffer);
+
+            if (read == -1) {
+
+                return true;
+
+            }
+
+            drained += read;
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Private method.
+     * Parses the body, or only the container if a container class is given, and records how long
+     * reading and parsing took.
+     */
+    private Document parse(String containerClass) throws IOException {
+
+        final BufferPool bufferPool = BufferPool.getInstance();
+
+        final Document document = bufferPool.isEnabled() ? parsePooled(bufferPool, containerClass)
+                : Jsoup.parse(getInputStream(), getCharset(), mHttpRequest.getUrl());
+
+        // The body is read as far as it is needed before the tree is built, the rest of the time went into decoding and parsing
+        if (mStoppedEarly) {
+
+            mRequestTimings.set(RequestTimings.PHASE_TRANSFER, mStopTime - mBodyStartTime);
+            mRequestTimings.set(RequestTimings.PHASE_PARSE, SystemClock.elapsedRealtime() - mStopTime);
+
+        } else if (isBodyRead()) {
+
+            mRequestTimings.set(RequestTimings.PHASE_PARSE, SystemClock.elapsedRealtime() - mBodyInputStream.getExhaustedTime());
+
+        }
+
+        return document;
+
+    }
+
+    /**
+     * Private method.
+     * Reads the body into pooled segments, decodes it and parses the text. If a container class is
+     * given, reading stops once the container has been closed and only the container is decoded
+     * and parsed. The segments go back to the pool however the parse ends.
+     */
+    private Document parsePooled(BufferPool bufferPool, String containerClass) throws IOException {
+
+        final List<byte[]> segments = new ArrayList<>();
+
+        try {
+
+            final InputStream inputStream = getInputStream();
+            final ContainerScanner containerScanner = containerClass != null ? new ContainerScanner(containerClass) : null;
+
+            int length = 0;
+            boolean containerClosed = false;
+
+            // The last segment is the one the end of the body, or of the container, was reached in
+            while (!containerClosed && length == segments.size() * BufferPool.SEGMENT_SIZE) {
+
+                final byte[] segment = bufferPool.acquireBytes();
+
+                segments.add(segment);
+
+                int read;
+
+                while (!containerClosed && length < segments.size() * BufferPool.SEGMENT_SIZE && (read = inputStream.read(segment,
+                        length % BufferPool.SEGMENT_SIZE, segments.size() * BufferPool.SEGMENT_SIZE - length)) != -1) {
+
+                    containerClosed = containerScanner != null
+                            && containerScanner.scan(segment, length % BufferPool.SEGMENT_SIZE, read);
+
+                    length += read;
+
+                }
+
+            }
+
+            // Whatever follows the container is left unread, close() drains it only if it is small
+            if (containerClosed && !mBodyInputStream.isExhausted()) {
+
+                mStopTime = SystemClock.elapsedRealtime();
+                mStoppedEarly = true;
+
+            }
+
+            final byte[] firstSegment = segments.get(0);
+
+            // A UTF-8 byte order mark decides the charset and is not part of the text
+            final boolean byteOrderMark = length >= 3 && (firstSegment[0] & 0xFF) == 0xEF
+                    && (firstSegment[1] & 0xFF) == 0xBB && (firstSegment[2] & 0xFF) == 0xBF;
+
+            final Charset charset = byteOrderMark ? Charset.forName(DEFAULT_CHARSET)
+                    : getBodyCharset(firstSegment, Math.min(length, MAX_SNIFF_BYTES));
+
+            final int start = containerClosed ? containerScanner.getContainerStart() : byteOrderMark ? 3 : 0;
+            final int end = containerClosed ? containerScanner.getContainerEnd() : length;
+
+            final Document document = Jsoup.parse(decodeBody(bufferPool, segments, start, end, charset),
+                    mHttpRequest.getUrl());
+
+            document.outputSettings().charset(charset);
+
+            return document;
+
+        } finally {
+
+            for (byte[] segment : segments) {
+
+                bufferPool.releaseBytes(segment);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Returns the charset of the body. The Content-Type header wins over a charset declared by a
+     * meta tag at the top of the page, so the body only has to be decoded once.
+     */
+    private Charset getBodyCharset(byte[] firstSegment, int sniffLength) throws UnsupportedEncodingException {
+
+        String charsetName = getCharset();
+
+        if (charsetName == null) {
+
+            // Markup is ASCII in any charset a page can declare itself in
+            final Matcher matcher = META_CHARSET_PATTERN.matcher(new String(firstSegment, 0, sniffLength, "ISO-8859-1"));
+
+            charsetName = matcher.find() ? matcher.group(1) : DEFAULT_CHARSET;
+
+        }
+
+        try {
+
+            return Charset.forName(charsetName);
+
+        } catch (IllegalArgumentException illegalArgumentException) {
+
+            // An unknown or malformed charset name, read the page as Jsoup would
+            return Charset.forName(DEFAULT_CHARSET);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Decodes the body held in the segments in a single pass. Bytes are staged through a pooled
+     * segment so a character split between two segments is decoded whole.
+     */
+    private static String decodeBody(BufferPool bufferPool, List<byte[]> segments, int offset, int length,
+                                     Charset charset) throws CharacterCodingException {
+
+        final CharsetDecoder charsetDecoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        // Pages are served in charsets that never decode to more chars than bytes
+        final StringBuilder stringBuilder = new StringBuilder(length - offset);
+
+        final byte[] staging = bufferPool.acquireBytes();
+        final char[] chars = bufferPool.acquireChars();
+
+        try {
+
+            final ByteBuffer byteBuffer = ByteBuffer.wrap(staging);
+            final CharBuffer charBuffer = CharBuffer.wrap(chars);
+
+            byteBuffer.limit(0);
+
+            int position = offset;
+
+            while (position < length) {
+
+                final int segmentOffset = position % BufferPool.SEGMENT_SIZE;
+
+                // Keeps the undecoded end of the last segment in front of the new bytes
+                byteBuffer.compact();
+
+                final int count = Math.min(byteBuffer.remaining(),
+                        Math.min(BufferPool.SEGMENT_SIZE - segmentOffset, length - position));
+
+                byteBuffer.put(segments.get(position / BufferPool.SEGMENT_SIZE), segmentOffset, count);
+                byteBuffer.flip();
+
+                position += count;
+
+                decodeInto(charsetDecoder, byteBuffer, charBuffer, stringBuilder, false);
+
+            }
+
+            decodeInto(charsetDecoder, byteBuffer, charBuffer, stringBuilder, true);
+
+            while (charsetDecoder.flush(charBuffer).isOverflow()) {
+
+                appendDecoded(charBuffer, stringBuilder);
+
+            }
+
+            appendDecoded(charBuffer, stringBuilder);
+
+        } finally {
+
+            bufferPool.releaseBytes(staging);
+            bufferPool.releaseChars(chars);
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+    /**
+     * Private method.
+     * Decodes as much of the staged bytes as possible, emptying the char buffer whenever it is full.
+     */
+    private static void decodeInto(CharsetDecoder charsetDecoder, ByteBuffer byteBuffer, CharBuffer charBuffer,
+                                   StringBuilder stringBuilder, boolean endOfInput) throws CharacterCodingException {
+
+        CoderResult coderResult;
+
+        while ((coderResult = charsetDecoder.decode(byteBuffer, charBuffer, endOfInput)).isOverflow()) {
+
+            appendDecoded(charBuffer, stringBuilder);
+
+        }
+
+        // Malformed input is replaced so this only happens for a broken charset implementation
+        if (coderResult.isError()) {
+
+            coderResult.throwException();
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Moves the decoded chars to the text and clears the char buffer.
+     */
+    private static void appendDecoded(CharBuffer charBuffer, StringBuilder stringBuilder) {
+
+        stringBuilder.append(charBuffer.array(), 0, charBuffer.position());
+
+        charBuffer.clear();
+
+    }
+
+    /**
+     * Private {@link java.io.FilterInputStream} that remembers whether the end
+     * of the body has been reached and stops reading once the response is aborted.
+     */
+    private class BodyInputStream extends FilterInputStream {
+
+        private volatile boolean mExhausted;
+        private long mExhaustedTime;
+
+        /**
+         * Public constructor for the {@link uk.org.crimetalk.network.HttpResponse.BodyInputStream}.
+         *
+         * @param inputStream The connection {@link java.io.InputStream}
+         */
+        public BodyInputStream(InputStream inputStream) {
+            super(inputStream);
+
+            // Do nothing
+
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            throwIfAborted();
+
+            final int read = super.read();
+
+            if (read == -1 && !mExhausted) {
+
+                mExhausted = true;
+                mExhaustedTime = SystemClock.elapsedRealtime();
+
+            }
+
+            return read;
+
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+
+            throwIfAborted();
+
+            final int read = super.read(buffer, offset, count);
+
+            if (read == -1 && !mExhausted) {
+
+                mExhausted = true;
+                mExhaustedTime = SystemClock.elapsedRealtime();
+
+            }
+
+            return read;
+
+        }
+
+        /**
+         * Private method.
+         * Throws an {@link java.io.InterruptedIOException} instead of reading from a closed connection.
+         */
+        private void throwIfAborted() throws InterruptedIOException {
+
+            if (mAborted) {
+
+                throw new InterruptedIOException("Response from " + mHost + " was aborted");
+
+            }
+
+        }
+
+        /**
+         * Returns true if the end of the body has been reached.
+         *
+         * @return true if exhausted
+         */
+        public boolean isExhausted() {
+
+            return mExhausted;
+
+        }
+
+        /**
+         * Returns the time at which the end of the body was reached.
+         *
+         * @return {@link android.os.SystemClock#elapsedRealtime()} time in milliseconds
+         */
+        public long getExhaustedTime() {
+
+            return mExhaustedTime;
+
+        }
+
+    }
+
+}
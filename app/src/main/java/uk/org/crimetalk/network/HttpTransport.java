@@ -0,0 +1,646 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import android.os.SystemClock;
+
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide HTTP transport used by every loader. Unlike {@link org.jsoup.Jsoup#connect(String)},
+ * which disconnects after every request, connections are handed back to the
+ * {@link java.net.HttpURLConnection} keep-alive pool and the number of connections to a single
+ * host is limited. Compressed transfer is requested for every response. The connect and
+ * read timeouts of every request are set from the {@link uk.org.crimetalk.network.LatencyEstimator}
+ * and requests to a host that keeps failing are refused by the {@link uk.org.crimetalk.network.HostHealth}.
+ * Automated requests are paced by the {@link uk.org.crimetalk.network.RateLimiter}, warm ups are
+ * only sent while it has tokens to spare.
+ */
+public class HttpTransport {
+
+    // Default number of simultaneous connections allowed to a single host
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+
+    // Apache closes idle keep-alive connections after 5 seconds unless told otherwise
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = 5000;
+
+    // How the connection of a request was obtained
+    private static final int CONNECTION_NEW = 0;
+    private static final int CONNECTION_POOLED = 1;
+    private static final int CONNECTION_WARMED = 2;
+
+    private static HttpTransport sHttpTransport;
+
+    private final Map<String, HostState> mHostStates;
+    private final TransportStats mTransportStats;
+    private final TransferStats mTransferStats;
+    private final LatencyEstimator mLatencyEstimator;
+    private final HostHealth mHostHealth;
+    private final RateLimiter mRateLimiter;
+
+    private volatile DataUsage mDataUsage;
+    private volatile boolean mEarlyStopEnabled;
+
+    private int mMaxConnectionsPerHost;
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.network.HttpTransport}.
+     *
+     * @return {@link uk.org.crimetalk.network.HttpTransport}
+     */
+    public static synchronized HttpTransport getInstance() {
+
+        if (sHttpTransport == null) {
+
+            sHttpTransport = new HttpTransport();
+
+        }
+
+        return sHttpTransport;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.network.HttpTransport}.
+     */
+    private HttpTransport() {
+
+        this.mHostStates = new HashMap<>();
+        this.mTransportStats = new TransportStats();
+        this.mTransferStats = new TransferStats();
+        this.mLatencyEstimator = new LatencyEstimator();
+        this.mHostHealth = new HostHealth();
+        this.mRateLimiter = new RateLimiter();
+        this.mEarlyStopEnabled = true;
+
+        setMaxConnectionsPerHost(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+
+    }
+
+    /**
+     * Set the maximum number of simultaneous connections to a single host. Requests
+     * beyond this limit wait for a connection to be released.
+     *
+     * @param maxConnectionsPerHost Maximum number of connections
+     */
+    public synchronized void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+
+        this.mMaxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+
+        // The system pool keeps this many idle connections per host
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(mMaxConnectionsPerHost));
+
+        // Wake any waiting requests in case the limit was raised
+        notifyAll();
+
+    }
+
+    /**
+     * Returns the maximum number of simultaneous connections to a single host.
+     *
+     * @return Maximum number of connections
+     */
+    public synchronized int getMaxConnectionsPerHost() {
+
+        return mMaxConnectionsPerHost;
+
+    }
+
+    /**
+     * Set whether {@link uk.org.crimetalk.network.HttpResponse#parseContainer(String)} stops reading
+     * a body once the container has been closed. Turning it off measures the full pages, which
+     * the bytes skipped by later pages are estimated from.
+     *
+     * @param earlyStopEnabled true to stop reading after the container
+     */
+    public void setEarlyStopEnabled(boolean earlyStopEnabled) {
+
+        this.mEarlyStopEnabled = earlyStopEnabled;
+
+    }
+
+    /**
+     * Returns true if bodies are only read up to the end of the container the parser needs.
+     *
+     * @return true if early stopping is enabled
+     */
+    public boolean isEarlyStopEnabled() {
+
+        return mEarlyStopEnabled;
+
+    }
+
+    /**
+     * Package-private method.
+     * Set the {@link uk.org.crimetalk.network.DataUsage} the bytes of every response are recorded in.
+     */
+    void setDataUsage(DataUsage dataUsage) {
+
+        this.mDataUsage = dataUsage;
+
+    }
+
+    /**
+     * Returns the connection pool statistics of this {@link uk.org.crimetalk.network.HttpTransport}.
+     *
+     * @return {@link uk.org.crimetalk.network.TransportStats}
+     */
+    public TransportStats getStats() {
+
+        return mTransportStats;
+
+    }
+
+    /**
+     * Returns the per URL byte counts of this {@link uk.org.crimetalk.network.HttpTransport}.
+     *
+     * @return {@link uk.org.crimetalk.network.TransferStats}
+     */
+    public TransferStats getTransferStats() {
+
+        return mTransferStats;
+
+    }
+
+    /**
+     * Returns the per host latency estimates of this {@link uk.org.crimetalk.network.HttpTransport}.
+     *
+     * @return {@link uk.org.crimetalk.network.LatencyEstimator}
+     */
+    public LatencyEstimator getLatencyEstimator() {
+
+        return mLatencyEstimator;
+
+    }
+
+    /**
+     * Returns the per host rate limiter of this {@link uk.org.crimetalk.network.HttpTransport}.
+     *
+     * @return {@link uk.org.crimetalk.network.RateLimiter}
+     */
+    public RateLimiter getRateLimiter() {
+
+        return mRateLimiter;
+
+    }
+
+    /**
+     * Returns the per host circuit breaker of this {@link uk.org.crimetalk.network.HttpTransport}.
+     *
+     * @return {@link uk.org.crimetalk.network.HostHealth}
+     */
+    public HostHealth getHostHealth() {
+
+        return mHostHealth;
+
+    }
+
+    /**
+     * Executes a {@link uk.org.crimetalk.network.HttpRequest}. The returned
+     * {@link uk.org.crimetalk.network.HttpResponse} must be closed.
+     *
+     * @param httpRequest The {@link uk.org.crimetalk.network.HttpRequest} to execute
+     * @return {@link uk.org.crimetalk.network.HttpResponse}
+     * @throws IOException If the request fails or the server returns an error status
+     */
+    public HttpResponse execute(HttpRequest httpRequest) throws IOException {
+
+        return execute(httpRequest, false);
+
+    }
+
+    /**
+     * Package-private method.
+     * Executes a request only to leave an open connection to its host in the pool. The
+     * request is not counted in the {@link uk.org.crimetalk.network.TransportStats}.
+     *
+     * @throws IOException If the request fails
+     */
+    void warmConnection(HttpRequest httpRequest) throws IOException {
+
+        execute(httpRequest, true).close();
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns the number of idle connections to a host that should still be open in the pool.
+     */
+    synchronized int getIdleConnections(String host) {
+
+        final HostState hostState = getHostState(host);
+
+        removeExpiredConnections(hostState);
+
+        return hostState.idleExpiryTimes.size();
+
+    }
+
+    /**
+     * Private method.
+     * Executes a {@link uk.org.crimetalk.network.HttpRequest} that is either a real request
+     * or a warm up request.
+     */
+    private HttpResponse execute(HttpRequest httpRequest, boolean warmUp) throws IOException {
+
+        final URL url = new URL(httpRequest.getRequestUrl());
+        final String host = url.getHost();
+
+        // A host that keeps failing is not waited on, the caller falls back on cached data
+        mHostHealth.checkRequest(host);
+
+        final int connectionType;
+
+        try {
+
+            if (warmUp) {
+
+                // A warm up takes no token, it is only sent while the host has tokens to spare
+                if (!mRateLimiter.canWarmUp(host)) {
+
+                    throw new HostUnavailableException(host + " has no tokens to spare for a warm up");
+
+                }
+
+            } else {
+
+                // Prefetches and background syncs are automated traffic and are smoothed out, a search waits on the user
+                mRateLimiter.acquire(host, httpRequest.getPriority() >= RequestScheduler.PRIORITY_PREFETCH,
+                        httpRequest.getTimeout());
+
+            }
+
+            connectionType = acquireConnection(host);
+
+        } catch (InterruptedIOException | HostUnavailableException exception) {
+
+            // Ends a probe that was cancelled or refused before it could be sent
+            mHostHealth.recordCancelled(host);
+
+            throw exception;
+
+        }
+
+        final boolean reusedConnection = connectionType != CONNECTION_NEW;
+
+        final RequestTimings requestTimings = new RequestTimings();
+
+        HttpURLConnection httpURLConnection = null;
+
+        try {
+
+            final long startTime = SystemClock.elapsedRealtime();
+
+            long connectStartTime = startTime;
+
+            /* A new connection looks the host up first. Doing that here separates the lookup from the
+               connect, the connection then uses the address the lookup left in the cache */
+            if (!reusedConnection) {
+
+                InetAddress.getAllByName(host);
+
+                final long resolvedTime = SystemClock.elapsedRealtime();
+
+                requestTimings.set(RequestTimings.PHASE_DNS, resolvedTime - startTime);
+
+                connectStartTime = resolvedTime;
+
+            }
+
+            // The timeout of the request is only the upper bound, the host's latency decides the rest
+            httpURLConnection = (HttpURLConnection) url.openConnection();
+            httpURLConnection.setRequestMethod(httpRequest.getMethod());
+            httpURLConnection.setConnectTimeout(mLatencyEstimator.getConnectTimeout(host, httpRequest.getTimeout()));
+            httpURLConnection.setReadTimeout(mLatencyEstimator.getReadTimeout(host, httpRequest.getTimeout()));
+            httpURLConnection.setInstanceFollowRedirects(true);
+
+            // The HttpResponse decompresses the body itself as it is read
+            httpURLConnection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+
+            for (Map.Entry<String, String> header : httpRequest.getHeaders().entrySet()) {
+
+                httpURLConnection.setRequestProperty(header.getKey(), header.getValue());
+
+            }
+
+            final byte[] body = HttpRequest.METHOD_POST.equals(httpRequest.getMethod()) ?
+                    httpRequest.getEncodedData().getBytes("UTF-8") : null;
+
+            // Everything about the request body has to be set before connecting
+            if (body != null) {
+
+                httpURLConnection.setDoOutput(true);
+                httpURLConnection.setFixedLengthStreamingMode(body.length);
+                httpURLConnection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+
+            }
+
+            // Connect separately so the connect time of a new connection can be measured on its own
+            httpURLConnection.connect();
+
+            final long connectedTime = SystemClock.elapsedRealtime();
+
+            if (!reusedConnection) {
+
+                mLatencyEstimator.recordConnect(host, connectedTime - connectStartTime);
+
+                requestTimings.set(RequestTimings.PHASE_CONNECT, connectedTime - connectStartTime);
+
+            }
+
+            if (body != null) {
+
+                final OutputStream outputStream = httpURLConnection.getOutputStream();
+
+                try {
+
+                    outputStream.write(body);
+
+                } finally {
+
+                    outputStream.close();
+
+                }
+
+            }
+
+            // Blocks until the status line and headers have arrived
+            final int statusCode = httpURLConnection.getResponseCode();
+
+            if (!warmUp) {
+
+                mTransportStats.recordRequest(reusedConnection, connectionType == CONNECTION_WARMED,
+                        SystemClock.elapsedRealtime() - startTime);
+
+            }
+
+            mLatencyEstimator.recordResponse(host, SystemClock.elapsedRealtime() - connectedTime);
+
+            requestTimings.set(RequestTimings.PHASE_FIRST_BYTE, SystemClock.elapsedRealtime() - connectedTime);
+            mRateLimiter.recordResponse(host, statusCode, httpURLConnection.getHeaderField("Retry-After"));
+
+            if (statusCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+
+                throw new HttpStatusException("HTTP error fetching URL", statusCode, url.toString());
+
+            }
+
+            mHostHealth.recordSuccess(host);
+
+            return new HttpResponse(this, httpRequest, httpURLConnection, host, statusCode, reusedConnection, warmUp, requestTimings);
+
+        } catch (IOException ioException) {
+
+            if (ioException instanceof SocketTimeoutException) {
+
+                mLatencyEstimator.recordTimeout(host);
+
+            }
+
+            mHostHealth.recordFailure(host, ioException);
+
+            if (httpURLConnection != null) {
+
+                httpURLConnection.disconnect();
+
+            }
+
+            releaseConnection(host, false, null, false);
+
+            throw ioException;
+
+        }
+
+    }
+
+    /**
+     * Package-private method.
+     * Called by an {@link uk.org.crimetalk.network.HttpResponse} when it has been closed.
+     */
+    void onResponseClosed(HttpResponse httpResponse, String host, boolean reusable, String keepAliveHeader) {
+
+        releaseConnection(host, reusable, keepAliveHeader, httpResponse.isWarmUp());
+
+        if (httpResponse.getWireBytes() > 0) {
+
+            mTransferStats.recordTransfer(httpResponse.getRequest().getUrl(), httpResponse.getWireBytes(),
+                    httpResponse.getDecodedBytes(), httpResponse.isBodyRead() && !httpResponse.isStoppedEarly(),
+                    httpResponse.isStoppedEarly(), httpResponse.getContentLength());
+
+            final DataUsage dataUsage = mDataUsage;
+
+            // Bytes of an aborted response were received all the same
+            if (dataUsage != null) {
+
+                dataUsage.recordBytes(httpResponse.getRequest().getUsageLabel(), httpResponse.getWireBytes());
+
+            }
+
+        }
+
+        // Only a body that was read to the end says how fast the link is
+        if (httpResponse.getBodyMillis() > 0) {
+
+            mLatencyEstimator.recordTransfer(host, httpResponse.getWireBytes(), httpResponse.getBodyMillis());
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Waits for a free connection slot to the host.
+     *
+     * @return How the connection is expected to be obtained, new, from the pool or from a warm up
+     */
+    private synchronized int acquireConnection(String host) throws InterruptedIOException {
+
+        final HostState hostState = getHostState(host);
+
+        while (hostState.activeConnections >= mMaxConnectionsPerHost) {
+
+            try {
+
+                wait();
+
+            } catch (InterruptedException interruptedException) {
+
+                throw new InterruptedIOException("Interrupted while waiting for a connection to " + host);
+
+            }
+
+        }
+
+        hostState.activeConnections++;
+
+        removeExpiredConnections(hostState);
+
+        if (hostState.idleExpiryTimes.isEmpty()) {
+
+            return CONNECTION_NEW;
+
+        }
+
+        // The most recently released connection is the one the system pool hands out
+        hostState.idleExpiryTimes.pollLast();
+
+        if (hostState.warmedConnections > 0) {
+
+            hostState.warmedConnections--;
+
+            return CONNECTION_WARMED;
+
+        }
+
+        return CONNECTION_POOLED;
+
+    }
+
+    /**
+     * Private method.
+     * Frees a connection slot and remembers the connection if it went back to the pool.
+     */
+    private synchronized void releaseConnection(String host, boolean reusable, String keepAliveHeader, boolean warmUp) {
+
+        final HostState hostState = getHostState(host);
+
+        hostState.activeConnections--;
+
+        if (reusable) {
+
+            hostState.idleExpiryTimes.addLast(SystemClock.elapsedRealtime() + getKeepAliveMillis(keepAliveHeader));
+
+            if (warmUp) {
+
+                hostState.warmedConnections++;
+
+            }
+
+            // The system pool will not keep more idle connections than this
+            while (hostState.idleExpiryTimes.size() > mMaxConnectionsPerHost) {
+
+                hostState.idleExpiryTimes.pollFirst();
+
+            }
+
+            hostState.warmedConnections = Math.min(hostState.warmedConnections, hostState.idleExpiryTimes.size());
+
+        }
+
+        notifyAll();
+
+    }
+
+    /**
+     * Private method.
+     * Forgets idle connections the server has already timed out, they can not be reused.
+     */
+    private static void removeExpiredConnections(HostState hostState) {
+
+        final long now = SystemClock.elapsedRealtime();
+
+        // Connections are released in order so the oldest expire first
+        while (!hostState.idleExpiryTimes.isEmpty() && hostState.idleExpiryTimes.peekFirst() <= now) {
+
+            hostState.idleExpiryTimes.pollFirst();
+
+        }
+
+        hostState.warmedConnections = Math.min(hostState.warmedConnections, hostState.idleExpiryTimes.size());
+
+    }
+
+    /**
+     * Private method.
+     * Returns the {@link uk.org.crimetalk.network.HttpTransport.HostState} for a host.
+     */
+    private HostState getHostState(String host) {
+
+        HostState hostState = mHostStates.get(host);
+
+        if (hostState == null) {
+
+            hostState = new HostState();
+            mHostStates.put(host, hostState);
+
+        }
+
+        return hostState;
+
+    }
+
+    /**
+     * Private method.
+     * Reads the idle timeout from a Keep-Alive header such as "timeout=5, max=100".
+     */
+    private static long getKeepAliveMillis(String keepAliveHeader) {
+
+        if (keepAliveHeader != null) {
+
+            for (String parameter : keepAliveHeader.split(",")) {
+
+                final String trimmedParameter = parameter.trim();
+
+                if (trimmedParameter.startsWith("timeout=")) {
+
+                    try {
+
+                        return Long.parseLong(trimmedParameter.substring("timeout=".length())) * 1000;
+
+                    } catch (NumberFormatException numberFormatException) {
+
+                        break;
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        return DEFAULT_KEEP_ALIVE_MILLIS;
+
+    }
+
+    /**
+     * Private class that keeps track of the connections to a single host.
+     */
+    private static class HostState {
+
+        int activeConnections;
+
+        // Number of the idle pooled connections that were opened by a warm up request
+        int warmedConnections;
+
+        // Times at which idle pooled connections are expected to be closed by the server
+        final ArrayDeque<Long> idleExpiryTimes = new ArrayDeque<>();
+
+    }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps a running estimate of the latency and transfer rate of every host, in the same way TCP
+ * estimates its retransmission timeout (RFC 6298). The connect time and the time to headers are
+ * tracked separately as a smoothed round trip time and its variance. The connect and read
+ * timeouts of a request are taken from these estimates, so a dead connection is given up quickly
+ * on a fast link while a slow link is given the time it needs. The timeout of the request, set
+ * by the user, is always the upper bound.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class LatencyEstimator {
+
+    // Hosts with fewer samples than this use the upper bound
+    private static final int MIN_SAMPLES = 3;
+
+    // Timeouts are never shorter than these, a single slow sample should not cause a failure
+    private static final int MIN_CONNECT_TIMEOUT = 2000;
+    private static final int MIN_READ_TIMEOUT = 3000;
+
+    // A read has to fill at most one buffer of this size before the read timeout applies again
+    private static final int READ_CHUNK_BYTES = 8 * 1024;
+
+    // Bodies smaller than this say more about latency than about the transfer rate
+    private static final long MIN_RATE_SAMPLE_BYTES = 16 * 1024;
+
+    // Every timeout doubles the timeouts of the host up to this factor until the next success
+    private static final int MAX_BACKOFF = 8;
+
+    private final Map<String, HostEstimate> mHostEstimates;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.LatencyEstimator}.
+     * The {@link uk.org.crimetalk.network.HttpTransport} owns the only instance.
+     */
+    LatencyEstimator() {
+
+        this.mHostEstimates = new HashMap<>();
+
+    }
+
+    /**
+     * Returns the connect timeout for the next request to a host.
+     *
+     * @param host       The host being connected to
+     * @param maxTimeout The upper bound in milliseconds
+     * @return Timeout in milliseconds
+     */
+    public synchronized int getConnectTimeout(String host, int maxTimeout) {
+
+        final HostEstimate hostEstimate = mHostEstimates.get(host);
+
+        if (hostEstimate == null || hostEstimate.connect.samples < MIN_SAMPLES) {
+
+            return maxTimeout;
+
+        }
+
+        return clamp(hostEstimate.connect.getTimeout() * hostEstimate.backoff, MIN_CONNECT_TIMEOUT, maxTimeout);
+
+    }
+
+    /**
+     * Returns the read timeout for the next request to a host. This covers the wait for the
+     * headers as well as the wait for every later read of the body.
+     *
+     * @param host       The host being read from
+     * @param maxTimeout The upper bound in milliseconds
+     * @return Timeout in milliseconds
+     */
+    public synchronized int getReadTimeout(String host, int maxTimeout) {
+
+        final HostEstimate hostEstimate = mHostEstimates.get(host);
+
+        if (hostEstimate == null || hostEstimate.response.samples < MIN_SAMPLES) {
+
+            return maxTimeout;
+
+        }
+
+        long readTimeout = hostEstimate.response.getTimeout();
+
+        // On a slow link, filling a single read buffer can take longer than the headers did
+        if (hostEstimate.bytesPerSecond > 0) {
+
+            readTimeout = Math.max(readTimeout, (long) (4000.0 * READ_CHUNK_BYTES / hostEstimate.bytesPerSecond));
+
+        }
+
+        return clamp(readTimeout * hostEstimate.backoff, MIN_READ_TIMEOUT, maxTimeout);
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        for (Map.Entry<String, HostEstimate> entry : mHostEstimates.entrySet()) {
+
+            final HostEstimate hostEstimate = entry.getValue();
+
+            stringBuilder.append(String.format(Locale.US,
+                    "%s\n  connect: %s\n  response: %s\n  rate=%.1fKB/s backoff=x%d timeouts=%d\n",
+                    entry.getKey(), hostEstimate.connect, hostEstimate.response,
+                    hostEstimate.bytesPerSecond / 1024, hostEstimate.backoff, hostEstimate.timeouts));
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+    /**
+     * Package-private method.
+     * Records the time taken to open a new connection to a host.
+     */
+    synchronized void recordConnect(String host, long millis) {
+
+        getHostEstimate(host).connect.addSample(millis);
+
+    }
+
+    /**
+     * Package-private method.
+     * Records the time between sending a request and receiving its headers.
+     */
+    synchronized void recordResponse(String host, long millis) {
+
+        final HostEstimate hostEstimate = getHostEstimate(host);
+
+        hostEstimate.response.addSample(millis);
+
+        // The host answered so there is no reason to keep the timeouts raised
+        hostEstimate.backoff = 1;
+
+    }
+
+    /**
+     * Package-private method.
+     * Records the time taken to read a body from a host.
+     */
+    synchronized void recordTransfer(String host, long bytes, long millis) {
+
+        if (bytes < MIN_RATE_SAMPLE_BYTES || millis <= 0) {
+
+            return;
+
+        }
+
+        final HostEstimate hostEstimate = getHostEstimate(host);
+        final double bytesPerSecond = bytes * 1000.0 / millis;
+
+        hostEstimate.bytesPerSecond = hostEstimate.bytesPerSecond == 0 ? bytesPerSecond
+                : hostEstimate.bytesPerSecond * 0.75 + bytesPerSecond * 0.25;
+
+    }
+
+    /**
+     * Package-private method.
+     * Records a timeout, which raises the timeouts of the host until it answers again.
+     */
+    synchronized void recordTimeout(String host) {
+
+        final HostEstimate hostEstimate = getHostEstimate(host);
+
+        hostEstimate.timeouts++;
+        hostEstimate.backoff = Math.min(MAX_BACKOFF, hostEstimate.backoff * 2);
+
+    }
+
+    /**
+     * Private method.
+     * Returns the {@link uk.org.crimetalk.network.LatencyEstimator.HostEstimate} for a host.
+     */
+    private HostEstimate getHostEstimate(String host) {
+
+        HostEstimate hostEstimate = mHostEstimates.get(host);
+
+        if (hostEstimate == null) {
+
+            hostEstimate = new HostEstimate();
+            mHostEstimates.put(host, hostEstimate);
+
+        }
+
+        return hostEstimate;
+
+    }
+
+    /**
+     * Private method.
+     * Keeps a timeout between the lower and upper bound. The upper bound wins if they cross.
+     */
+    private static int clamp(long timeout, int minTimeout, int maxTimeout) {
+
+        return (int) Math.min(maxTimeout, Math.max(minTimeout, timeout));
+
+    }
+
+    /**
+     * Private class that holds the estimates of a single host.
+     */
+    private static class HostEstimate {
+
+        final RttEstimate connect = new RttEstimate();
+        final RttEstimate response = new RttEstimate();
+
+        double bytesPerSecond;
+        int backoff = 1;
+        int timeouts;
+
+    }
+
+    /**
+     * Private class that keeps a smoothed round trip time and its variance.
+     */
+    private static class RttEstimate {
+
+        double srtt;
+        double rttvar;
+        int samples;
+
+        void addSample(long millis) {
+
+            if (samples == 0) {
+
+                srtt = millis;
+                rttvar = millis / 2.0;
+
+            } else {
+
+                rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - millis);
+                srtt = 0.875 * srtt + 0.125 * millis;
+
+            }
+
+            samples++;
+
+        }
+
+        long getTimeout() {
+
+            return (long) Math.ceil(srtt + 4 * rttvar);
+
+        }
+
+        @Override
+        public String toString() {
+
+            return String.format(Locale.US, "srtt=%.0fms rttvar=%.0fms timeout=%dms samples=%d",
+                    srtt, rttvar, getTimeout(), samples);
+
+        }
+
+    }
+
+}
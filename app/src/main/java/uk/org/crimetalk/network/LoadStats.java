@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.util.Locale;
+
+/**
+ * Process-wide timings of article list loads. The time from the start of a load until the
+ * first rows are shown is kept separately from the time until the complete list is shown,
+ * so the effect of showing the first rows early can be seen.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class LoadStats {
+
+    private static LoadStats sLoadStats;
+
+    private long mFirstRowsLoads;
+    private long mFirstRowsMillis;
+    private long mCompleteLoads;
+    private long mCompleteMillis;
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.network.LoadStats}.
+     *
+     * @return {@link uk.org.crimetalk.network.LoadStats}
+     */
+    public static synchronized LoadStats getInstance() {
+
+        if (sLoadStats == null) {
+
+            sLoadStats = new LoadStats();
+
+        }
+
+        return sLoadStats;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.network.LoadStats}.
+     */
+    private LoadStats() {
+
+        // Do nothing
+
+    }
+
+    /**
+     * Records the time from the start of a load until its first rows were shown.
+     *
+     * @param timeToFirstRowsMillis Time in milliseconds
+     */
+    public synchronized void recordFirstRows(long timeToFirstRowsMillis) {
+
+        mFirstRowsLoads++;
+        mFirstRowsMillis += timeToFirstRowsMillis;
+
+    }
+
+    /**
+     * Records the time from the start of a load until its complete list was shown.
+     *
+     * @param timeToCompleteMillis Time in milliseconds
+     */
+    public synchronized void recordCompleteList(long timeToCompleteMillis) {
+
+        mCompleteLoads++;
+        mCompleteMillis += timeToCompleteMillis;
+
+    }
+
+    /**
+     * Returns the average time until the first rows of a load were shown.
+     *
+     * @return Average time in milliseconds
+     */
+    public synchronized long getAverageFirstRowsMillis() {
+
+        return mFirstRowsLoads == 0 ? 0 : mFirstRowsMillis / mFirstRowsLoads;
+
+    }
+
+    /**
+     * Returns the average time until the complete list of a load was shown.
+     *
+     * @return Average time in milliseconds
+     */
+    public synchronized long getAverageCompleteMillis() {
+
+        return mCompleteLoads == 0 ? 0 : mCompleteMillis / mCompleteLoads;
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return String.format(Locale.US, "first rows=%d avg=%dms complete lists=%d avg=%dms",
+                mFirstRowsLoads, getAverageFirstRowsMillis(), mCompleteLoads, getAverageCompleteMillis());
+
+    }
+
+}
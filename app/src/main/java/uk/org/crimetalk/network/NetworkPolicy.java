@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+/**
+ * Decides how much may be fetched on the current network. Article lists and articles are what
+ * the user is waiting for, so they are fetched on any connected network. Images are skipped
+ * while roaming, and prefetching is only done on an unmetered network with battery saver off.
+ * As the monthly budget of the {@link uk.org.crimetalk.network.DataUsage} runs out, a metered
+ * network stops prefetching, then images and at last everything but the cache.
+ *
+ * @see {@link uk.org.crimetalk.network.ConnectivityMonitor#getPolicy()}
+ */
+public class NetworkPolicy {
+
+    private final ConnectivityState mConnectivityState;
+    private final int mBudgetLevel;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.NetworkPolicy}.
+     *
+     * @param connectivityState The {@link uk.org.crimetalk.network.ConnectivityState} the policy applies to
+     * @param budgetLevel       The budget level defined in {@link uk.org.crimetalk.network.DataUsage}
+     */
+    NetworkPolicy(ConnectivityState connectivityState, int budgetLevel) {
+
+        this.mConnectivityState = connectivityState;
+        this.mBudgetLevel = budgetLevel;
+
+    }
+
+    /**
+     * Returns true if article lists and articles requested by the user may be fetched.
+     *
+     * @return true if lists may be fetched
+     */
+    public boolean canFetchLists() {
+
+        return mConnectivityState.isConnected() && !isOverBudget(DataUsage.BUDGET_CACHE_ONLY);
+
+    }
+
+    /**
+     * Returns true if article images may be fetched.
+     *
+     * @return true if images may be fetched
+     */
+    public boolean canFetchImages() {
+
+        return mConnectivityState.isConnected() && !mConnectivityState.isRoaming()
+                && !isOverBudget(DataUsage.BUDGET_NO_IMAGES);
+
+    }
+
+    /**
+     * Returns true if pages the user has not asked for yet may be fetched ahead of time.
+     *
+     * @return true if prefetching is allowed
+     */
+    public boolean canPrefetch() {
+
+        return mConnectivityState.isConnected() && !mConnectivityState.isMetered()
+                && !mConnectivityState.isRoaming() && !mConnectivityState.isPowerSaveMode()
+                && !isOverBudget(DataUsage.BUDGET_NO_PREFETCH);
+
+    }
+
+    /**
+     * Returns the {@link uk.org.crimetalk.network.ConnectivityState} the policy applies to.
+     *
+     * @return {@link uk.org.crimetalk.network.ConnectivityState}
+     */
+    public ConnectivityState getConnectivityState() {
+
+        return mConnectivityState;
+
+    }
+
+    @Override
+    public String toString() {
+
+        return "lists=" + canFetchLists() + " images=" + canFetchImages() + " prefetch=" + canPrefetch()
+                + " budget=" + mBudgetLevel + " (" + mConnectivityState + ")";
+
+    }
+
+    /**
+     * Private method.
+     * Returns true if the active network is metered and the budget has reached the level.
+     */
+    private boolean isOverBudget(int budgetLevel) {
+
+        return mConnectivityState.isMetered() && mBudgetLevel >= budgetLevel;
+
+    }
+
+}
@@ -0,0 +1,922 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Fetches and parses pages through the {@link uk.org.crimetalk.network.HttpTransport}.
+ * The ETag and Last-Modified validators of every page are remembered along with the parsed
+ * result, so an unchanged page is revalidated with a conditional GET and the previous result
+ * is returned without downloading or parsing the page again. Identical requests made at the
+ * same time share a single fetch and parse. Failed attempts are retried with backoff and a
+ * fetch that fails for good still returns the last result of the page as stale data.
+ * <p/>
+ * A request with a lean variant is sent with its lean data until the lean page of that
+ * request turns out not to hold what the parser expects, after which the full page is
+ * fetched instead.
+ */
+public class PageFetcher {
+
+    // Enough for every Library and PressCuttings category plus a few articles
+    private static final int MAX_CACHED_PAGES = 32;
+
+    private static PageFetcher sPageFetcher;
+
+    private final HttpTransport mHttpTransport;
+    private final LruCache<String, CachedPage> mCachedPages;
+    private final RequestScheduler mRequestScheduler;
+
+    // Fetches that are still running, keyed the same way as the cached pages
+    private final Map<String, SharedFetch<?>> mSharedFetches;
+
+    // Pages whose lean variant could not be parsed, keyed the same way as the cached pages
+    private final Set<String> mFullOnlyPages;
+    private final VariantStats mVariantStats;
+
+    // Notified whenever a fetch finishes or a caller gives up its share of one
+    private final Object mFetchDoneLock;
+
+    private long mFetches;
+    private long mNotModified;
+    private long mCoalesced;
+    private long mRecent;
+    private long mRetries;
+    private long mFailures;
+    private long mAborted;
+    private long mWastedBytes;
+
+    private volatile RetryPolicy mRetryPolicy;
+    private volatile boolean mLeanPagesEnabled;
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.network.PageFetcher}.
+     *
+     * @return {@link uk.org.crimetalk.network.PageFetcher}
+     */
+    public static synchronized PageFetcher getInstance() {
+
+        if (sPageFetcher == null) {
+
+            sPageFetcher = new PageFetcher(HttpTransport.getInstance());
+
+        }
+
+        return sPageFetcher;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.network.PageFetcher}.
+     */
+    private PageFetcher(HttpTransport httpTransport) {
+
+        this.mHttpTransport = httpTransport;
+        this.mCachedPages = new LruCache<>(MAX_CACHED_PAGES);
+        this.mSharedFetches = new HashMap<>();
+        this.mRetryPolicy = new RetryPolicy();
+        this.mFullOnlyPages = Collections.synchronizedSet(new HashSet<String>());
+        this.mVariantStats = new VariantStats();
+        this.mFetchDoneLock = new Object();
+        this.mLeanPagesEnabled = true;
+        this.mRequestScheduler = RequestScheduler.getInstance();
+
+    }
+
+    /**
+     * Fetches a page and parses it. If the page has been fetched before, the request is
+     * made conditional and a "not modified" response returns the previously parsed result.
+     * If the same page is already being fetched, this waits for that fetch instead.
+     *
+     * @param httpRequest    The {@link uk.org.crimetalk.network.HttpRequest} to execute
+     * @param responseParser The {@link uk.org.crimetalk.network.ResponseParser} used for a changed page
+     * @param <T>            The type of the parsed result
+     * @return The parsed result
+     * @throws IOException If the page can not be fetched or read after every retry
+     */
+    public <T> T fetch(HttpRequest httpRequest, ResponseParser<T> responseParser) throws IOException {
+
+        return fetchAsync(httpRequest, responseParser).getResult();
+
+    }
+
+    /**
+     * Fetches and parses a page on a background thread. The fetch is queued on the
+     * {@link uk.org.crimetalk.network.RequestScheduler} with the priority of the request and requests
+     * to the same host run concurrently up to the connection limit of the
+     * {@link uk.org.crimetalk.network.HttpTransport}. A request for a page that is already being
+     * fetched, identified by its URL and POST body, attaches to that fetch and receives the same
+     * parsed result, a queued fetch is moved up to the priority of the request attaching to it.
+     * The fetch is only cancelled once every {@link uk.org.crimetalk.network.FetchTicket} attached
+     * to it has been cancelled, a cancelled fetch that has not started is removed from the queue.
+     * Failed attempts are retried as allowed by the {@link uk.org.crimetalk.network.RetryPolicy}.
+     *
+     * @param httpRequest    The {@link uk.org.crimetalk.network.HttpRequest} to execute
+     * @param responseParser The {@link uk.org.crimetalk.network.ResponseParser} used for a changed page
+     * @param <T>            The type of the parsed result
+     * @return A {@link uk.org.crimetalk.network.FetchTicket} that holds the
+     * {@link uk.org.crimetalk.network.FetchResult}
+     * @see #fetch(HttpRequest, ResponseParser)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> FetchTicket<T> fetchAsync(final HttpRequest httpRequest, final ResponseParser<T> responseParser) {
+
+        final String key = getKey(httpRequest, responseParser.getClass());
+
+        synchronized (mSharedFetches) {
+
+            SharedFetch<T> sharedFetch = (SharedFetch<T>) mSharedFetches.get(key);
+
+            // Attach to the running fetch, which has the same page and the same kind of parser
+            if (sharedFetch != null) {
+
+                sharedFetch.callers++;
+
+                recordCoalesced();
+
+                mRequestScheduler.promote(sharedFetch, httpRequest.getPriority());
+
+                return new FetchTicket<>(sharedFetch);
+
+            }
+
+            final AbortHandle abortHandle = new AbortHandle();
+
+            sharedFetch = new SharedFetch<>(this, key, abortHandle, new Callable<FetchResult<T>>() {
+
+                @Override
+                public FetchResult<T> call() {
+
+                    return executeFetch(key, httpRequest, responseParser, abortHandle);
+
+                }
+
+            });
+
+            sharedFetch.callers++;
+
+            mSharedFetches.put(key, sharedFetch);
+            mRequestScheduler.submit(sharedFetch, httpRequest.getPriority());
+
+            return new FetchTicket<>(sharedFetch);
+
+        }
+
+    }
+
+    /**
+     * Set the {@link uk.org.crimetalk.network.RetryPolicy} used for fetches started from now on.
+     *
+     * @param retryPolicy {@link uk.org.crimetalk.network.RetryPolicy}
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+
+        this.mRetryPolicy = retryPolicy;
+
+    }
+
+    /**
+     * Set whether the lean variants of pages are requested. With lean pages turned off
+     * every page is fetched in full, which gives the {@link uk.org.crimetalk.network.VariantStats}
+     * the full variants to compare with.
+     *
+     * @param leanPagesEnabled true to request lean variants
+     */
+    public void setLeanPagesEnabled(boolean leanPagesEnabled) {
+
+        this.mLeanPagesEnabled = leanPagesEnabled;
+
+    }
+
+    /**
+     * Returns true if the lean variants of pages are requested.
+     *
+     * @return true if lean pages are enabled
+     */
+    public boolean isLeanPagesEnabled() {
+
+        return mLeanPagesEnabled;
+
+    }
+
+    /**
+     * Waits until at least one of the given {@link uk.org.crimetalk.network.FetchTicket} is done,
+     * either because its fetch finished or because it was cancelled. Lets a caller that waits for
+     * several pages handle each one as soon as it arrives instead of in a fixed order.
+     *
+     * @param fetchTickets  The {@link uk.org.crimetalk.network.FetchTicket} to wait for
+     * @param timeoutMillis Longest wait in milliseconds, 0 waits without a limit
+     * @return true if a ticket is done, false if the timeout passed first
+     * @throws InterruptedException If the waiting thread was interrupted
+     */
+    public boolean awaitAny(List<? extends FetchTicket<?>> fetchTickets, long timeoutMillis) throws InterruptedException {
+
+        final long deadline = SystemClock.elapsedRealtime() + timeoutMillis;
+
+        synchronized (mFetchDoneLock) {
+
+            while (true) {
+
+                for (FetchTicket<?> fetchTicket : fetchTickets) {
+
+                    if (fetchTicket.isDone()) {
+
+                        return true;
+
+                    }
+
+                }
+
+                final long remainingMillis = deadline - SystemClock.elapsedRealtime();
+
+                if (timeoutMillis == 0) {
+
+                    mFetchDoneLock.wait();
+
+                } else if (remainingMillis > 0) {
+
+                    mFetchDoneLock.wait(remainingMillis);
+
+                } else {
+
+                    return false;
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Returns the size and parse time of the lean and full variants of every page.
+     *
+     * @return {@link uk.org.crimetalk.network.VariantStats}
+     */
+    public VariantStats getVariantStats() {
+
+        return mVariantStats;
+
+    }
+
+    /**
+     * Returns the number of bytes received this session for fetches that were aborted
+     * because every caller went away before the page had been downloaded.
+     *
+     * @return Byte count
+     */
+    public synchronized long getWastedBytes() {
+
+        return mWastedBytes;
+
+    }
+
+    /**
+     * Returns the last successfully parsed result of a page without fetching it.
+     *
+     * @param httpRequest The {@link uk.org.crimetalk.network.HttpRequest} of the page
+     * @param parserClass The class of the {@link uk.org.crimetalk.network.ResponseParser} the page was parsed with
+     * @param <T>         The type of the parsed result
+     * @return The parsed result or null if the page has not been fetched
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getCachedResult(HttpRequest httpRequest, Class<? extends ResponseParser<T>> parserClass) {
+
+        final CachedPage cachedPage = mCachedPages.get(getKey(httpRequest, parserClass));
+
+        return cachedPage != null ? (T) cachedPage.result : null;
+
+    }
+
+    /**
+     * Returns the last successfully parsed result of a page as a successful
+     * {@link uk.org.crimetalk.network.FetchResult} if the page was fetched or revalidated
+     * recently, e.g. by a prefetch, so it can be shown without fetching it again.
+     *
+     * @param httpRequest   The {@link uk.org.crimetalk.network.HttpRequest} of the page
+     * @param parserClass   The class of the {@link uk.org.crimetalk.network.ResponseParser} the page was parsed with
+     * @param maxAgeMillis  How long ago the page may have been fetched in milliseconds
+     * @param <T>           The type of the parsed result
+     * @return A {@link uk.org.crimetalk.network.FetchResult} or null if the page has not been fetched recently
+     */
+    @SuppressWarnings("unchecked")
+    public <T> FetchResult<T> getRecentResult(HttpRequest httpRequest, Class<? extends ResponseParser<T>> parserClass,
+                                              long maxAgeMillis) {
+
+        final CachedPage cachedPage = mCachedPages.get(getKey(httpRequest, parserClass));
+
+        if (cachedPage == null || SystemClock.elapsedRealtime() - cachedPage.fetchTime > maxAgeMillis) {
+
+            return null;
+
+        }
+
+        recordRecent();
+
+        return new FetchResult<>((T) cachedPage.result, false, FetchResult.FAILURE_NONE, null, 0,
+                new ArrayList<FetchResult.Attempt>());
+
+    }
+
+    /**
+     * Returns the last successfully parsed result of a page as a stale
+     * {@link uk.org.crimetalk.network.FetchResult}, for when the
+     * {@link uk.org.crimetalk.network.NetworkPolicy} does not allow the page to be fetched.
+     *
+     * @param httpRequest The {@link uk.org.crimetalk.network.HttpRequest} of the page
+     * @param parserClass The class of the {@link uk.org.crimetalk.network.ResponseParser} the page was parsed with
+     * @param <T>         The type of the parsed result
+     * @return An offline {@link uk.org.crimetalk.network.FetchResult}
+     */
+    public <T> FetchResult<T> getOfflineResult(HttpRequest httpRequest, Class<? extends ResponseParser<T>> parserClass) {
+
+        final T cachedResult = getCachedResult(httpRequest, parserClass);
+
+        return new FetchResult<>(cachedResult, cachedResult != null, FetchResult.FAILURE_OFFLINE,
+                new IOException("Not fetched on the current network"), 0, new ArrayList<FetchResult.Attempt>());
+
+    }
+
+    /**
+     * Private method.
+     * Fetches a page and parses it, retrying failed attempts. A failed fetch falls back on the
+     * last result of the page so it can be shown as stale data.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> FetchResult<T> executeFetch(String key, HttpRequest httpRequest, ResponseParser<T> responseParser,
+                                            AbortHandle abortHandle) {
+
+        final RetryPolicy retryPolicy = mRetryPolicy;
+        final CachedPage cachedPage = mCachedPages.get(key);
+        final List<FetchResult.Attempt> attempts = new ArrayList<>();
+
+        final int timeout = httpRequest.getTimeout();
+        final long startTime = SystemClock.elapsedRealtime();
+
+        long backoffMillis = 0;
+
+        while (true) {
+
+            final long attemptStartTime = SystemClock.elapsedRealtime();
+
+            // Later attempts are shortened so the fetch does not run past its deadline
+            httpRequest.setTimeout(retryPolicy.getAttemptTimeout(timeout, attemptStartTime - startTime));
+
+            try {
+
+                final T result = executeAttempt(key, cachedPage, httpRequest, responseParser, abortHandle);
+
+                attempts.add(new FetchResult.Attempt(FetchResult.FAILURE_NONE, 0,
+                        backoffMillis, SystemClock.elapsedRealtime() - attemptStartTime));
+
+                return new FetchResult<>(result, false, FetchResult.FAILURE_NONE, null, 0, attempts);
+
+            } catch (IOException ioException) {
+
+                final int failure = FetchResult.getFailureType(ioException);
+                final int statusCode = ioException instanceof HttpStatusException ?
+                        ((HttpStatusException) ioException).getStatusCode() : 0;
+
+                attempts.add(new FetchResult.Attempt(failure, statusCode,
+                        backoffMillis, SystemClock.elapsedRealtime() - attemptStartTime));
+
+                // Nobody is waiting for an aborted fetch, the closed connection is not a failure worth retrying
+                if (abortHandle.isAborted()) {
+
+                    return new FetchResult<>(null, false, FetchResult.FAILURE_CANCELLED,
+                            new InterruptedIOException("Fetch was aborted"), 0, attempts);
+
+                }
+
+                backoffMillis = retryPolicy.getBackoffMillis(attempts.size());
+
+                if (!retryPolicy.shouldRetry(httpRequest, attempts.size(), failure, statusCode,
+                        backoffMillis, SystemClock.elapsedRealtime() - startTime)) {
+
+                    return newFailedResult(cachedPage, failure, ioException, statusCode, attempts);
+
+                }
+
+                try {
+
+                    Thread.sleep(backoffMillis);
+
+                } catch (InterruptedException interruptedException) {
+
+                    return newFailedResult(cachedPage, FetchResult.FAILURE_CANCELLED,
+                            new InterruptedIOException("Interrupted while waiting to retry"), 0, attempts);
+
+                }
+
+                recordRetry();
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Makes a single attempt at fetching and parsing a page, using its lean variant if it has a usable one.
+     */
+    private <T> T executeAttempt(String key, CachedPage cachedPage, HttpRequest httpRequest,
+                                 ResponseParser<T> responseParser, AbortHandle abortHandle) throws IOException {
+
+        if (!mLeanPagesEnabled || !httpRequest.hasLeanVariant() || mFullOnlyPages.contains(key)) {
+
+            return executeVariant(key, cachedPage, httpRequest, httpRequest, responseParser, false, abortHandle);
+
+        }
+
+        try {
+
+            return executeVariant(key, cachedPage, httpRequest, httpRequest.newLeanRequest(), responseParser, true, abortHandle);
+
+        } catch (ParseException parseException) {
+
+            // The lean page lacks the expected content, e.g. the site template has no component view
+            mFullOnlyPages.add(key);
+            mVariantStats.recordFallback();
+
+            return executeVariant(key, cachedPage, httpRequest, httpRequest, responseParser, false, abortHandle);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Fetches and parses a single variant of a page, conditional if that variant has been fetched before.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T executeVariant(String key, CachedPage cachedPage, HttpRequest pageRequest, HttpRequest httpRequest,
+                                 ResponseParser<T> responseParser, boolean lean, AbortHandle abortHandle) throws IOException {
+
+        // Revalidate the page if it has validators to revalidate with, validators of the other variant would not match
+        if (cachedPage != null && cachedPage.lean == lean) {
+
+            if (cachedPage.eTag != null) {
+
+                httpRequest.setHeader("If-None-Match", cachedPage.eTag);
+
+            }
+
+            if (cachedPage.lastModified != null) {
+
+                httpRequest.setHeader("If-Modified-Since", cachedPage.lastModified);
+
+            }
+
+        }
+
+        final HttpResponse httpResponse = mHttpTransport.execute(httpRequest);
+
+        try {
+
+            abortHandle.attach(httpResponse);
+
+            if (httpResponse.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED && cachedPage != null && cachedPage.lean == lean) {
+
+                recordFetch(true);
+                recordTimings(pageRequest, httpResponse, lean, -1);
+
+                cachedPage.fetchTime = SystemClock.elapsedRealtime();
+
+                return (T) cachedPage.result;
+
+            }
+
+            final long parseStartTime = SystemClock.elapsedRealtime();
+            final long allocationStartSize = AllocationStats.getInstance().start();
+
+            final T result;
+
+            // A page that does not look as expected would otherwise crash the Loader
+            try {
+
+                result = responseParser.parse(httpResponse);
+
+            } catch (RuntimeException runtimeException) {
+
+                throw new ParseException("Unexpected page structure at " + httpRequest.getUrl(), runtimeException);
+
+            }
+
+            final long parserMillis = SystemClock.elapsedRealtime() - parseStartTime;
+
+            AllocationStats.getInstance().record(getStatsPattern(pageRequest, lean), allocationStartSize);
+
+            mVariantStats.recordPage(pageRequest.getRequestUrl(), lean, httpResponse.getWireBytes(), parserMillis);
+
+            recordTimings(pageRequest, httpResponse, lean, parserMillis);
+
+            /* The result is kept even without validators, it can still be shown as stale
+               data if a later fetch fails */
+            mCachedPages.put(key, new CachedPage(httpResponse.getHeader("ETag"),
+                    httpResponse.getHeader("Last-Modified"), result, lean));
+
+            recordFetch(false);
+
+            return result;
+
+        } finally {
+
+            abortHandle.detach();
+
+            httpResponse.close();
+
+            // Whatever was received for an aborted fetch, including a drained remainder, was of no use
+            if (abortHandle.isAborted()) {
+
+                recordAborted(httpResponse.getWireBytes());
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Returns a failed {@link uk.org.crimetalk.network.FetchResult} holding the last result of the page, if any.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> FetchResult<T> newFailedResult(CachedPage cachedPage, int failure, IOException ioException,
+                                               int statusCode, List<FetchResult.Attempt> attempts) {
+
+        recordFailure();
+
+        final T staleResult = cachedPage != null ? (T) cachedPage.result : null;
+
+        return new FetchResult<>(staleResult, staleResult != null, failure, ioException, statusCode, attempts);
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return String.format(Locale.US, "fetches=%d not modified=%d coalesced=%d recent=%d retries=%d failures=%d aborted=%d wasted bytes=%d cached pages=%d",
+                mFetches, mNotModified, mCoalesced, mRecent, mRetries, mFailures, mAborted, mWastedBytes, mCachedPages.size());
+
+    }
+
+    /**
+     * Package-private method.
+     * Called by a {@link uk.org.crimetalk.network.FetchTicket} when its caller no longer wants the result.
+     * The fetch is cancelled when the last caller lets go of it.
+     */
+    void release(SharedFetch<?> sharedFetch, boolean mayInterruptIfRunning) {
+
+        synchronized (mSharedFetches) {
+
+            if (--sharedFetch.callers > 0) {
+
+                return;
+
+            }
+
+            removeSharedFetch(sharedFetch);
+
+        }
+
+        // A fetch that has not started no longer holds a place in the queue
+        mRequestScheduler.remove(sharedFetch);
+
+        /* A page that is still downloading is aborted. One that has been downloaded is parsed and
+           cached anyway so the next visit does not download it again */
+        final boolean aborted = mayInterruptIfRunning && sharedFetch.abortHandle.abort();
+
+        sharedFetch.cancel(aborted);
+
+    }
+
+    /**
+     * Package-private method.
+     * Called by a {@link uk.org.crimetalk.network.FetchTicket} whose caller now needs the result sooner.
+     */
+    void promote(SharedFetch<?> sharedFetch, int priority) {
+
+        mRequestScheduler.promote(sharedFetch, priority);
+
+    }
+
+    /**
+     * Package-private method.
+     * Wakes every thread in {@link #awaitAny(java.util.List, long)} so it can check its tickets again.
+     */
+    void notifyFetchDone() {
+
+        synchronized (mFetchDoneLock) {
+
+            mFetchDoneLock.notifyAll();
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Removes a {@link uk.org.crimetalk.network.PageFetcher.SharedFetch} so later requests start a new fetch.
+     */
+    private void removeSharedFetch(SharedFetch<?> sharedFetch) {
+
+        synchronized (mSharedFetches) {
+
+            // A newer fetch for the same key may have replaced this one already
+            if (mSharedFetches.get(sharedFetch.key) == sharedFetch) {
+
+                mSharedFetches.remove(sharedFetch.key);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Keeps count of how many fetches were answered with "not modified".
+     */
+    private synchronized void recordFetch(boolean notModified) {
+
+        mFetches++;
+
+        if (notModified) {
+
+            mNotModified++;
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Keeps count of how many attempts were retries.
+     */
+    private synchronized void recordRetry() {
+
+        mRetries++;
+
+    }
+
+    /**
+     * Private method.
+     * Keeps count of how many fetches failed after every retry.
+     */
+    private synchronized void recordFailure() {
+
+        mFailures++;
+
+    }
+
+    /**
+     * Private method.
+     * Records the phase timings of a fetched page in the {@link uk.org.crimetalk.network.TimingStats}.
+     * Whatever the parser spent beyond reading and parsing the body went into extracting the items.
+     */
+    private static void recordTimings(HttpRequest pageRequest, HttpResponse httpResponse, boolean lean, long parserMillis) {
+
+        final RequestTimings requestTimings = httpResponse.getTimings();
+
+        if (parserMillis >= 0) {
+
+            requestTimings.set(RequestTimings.PHASE_EXTRACT, parserMillis
+                    - Math.max(0, requestTimings.get(RequestTimings.PHASE_TRANSFER))
+                    - Math.max(0, requestTimings.get(RequestTimings.PHASE_PARSE)));
+
+        }
+
+        TimingStats.getInstance().record(getStatsPattern(pageRequest, lean), requestTimings);
+
+    }
+
+    /**
+     * Private method.
+     * Returns the URL pattern a page is kept under in the process-wide stats.
+     */
+    private static String getStatsPattern(HttpRequest pageRequest, boolean lean) {
+
+        final String pattern = TimingStats.getPattern(pageRequest.getRequestUrl());
+
+        return lean ? pattern + " (lean)" : pattern;
+
+    }
+
+    /**
+     * Private method.
+     * Keeps count of how many fetches were aborted and how many bytes they had received.
+     */
+    private synchronized void recordAborted(long wireBytes) {
+
+        mAborted++;
+        mWastedBytes += wireBytes;
+
+    }
+
+    /**
+     * Private method.
+     * Keeps count of how many requests attached to a fetch that was already running.
+     */
+    private synchronized void recordCoalesced() {
+
+        mCoalesced++;
+
+    }
+
+    /**
+     * Private method.
+     * Keeps count of how many pages were shown from a recent result without fetching them.
+     */
+    private synchronized void recordRecent() {
+
+        mRecent++;
+
+    }
+
+    /**
+     * Private method.
+     * Returns the cache key of an {@link uk.org.crimetalk.network.HttpRequest}. Results of different
+     * parsers have different types so a page parsed by each of them is fetched and cached apart.
+     */
+    private static String getKey(HttpRequest httpRequest, Class<?> parserClass) {
+
+        if (HttpRequest.METHOD_POST.equals(httpRequest.getMethod())) {
+
+            return httpRequest.getMethod() + " " + httpRequest.getRequestUrl() + " " + httpRequest.getEncodedData()
+                    + " " + parserClass.getName();
+
+        }
+
+        return httpRequest.getMethod() + " " + httpRequest.getRequestUrl() + " " + parserClass.getName();
+
+    }
+
+    /**
+     * Package-private {@link java.util.concurrent.FutureTask} that is shared by every
+     * {@link uk.org.crimetalk.network.FetchTicket} requesting the same page.
+     */
+    static class SharedFetch<T> extends FutureTask<FetchResult<T>> {
+
+        final PageFetcher pageFetcher;
+        final String key;
+        final AbortHandle abortHandle;
+
+        // Guarded by the shared fetch map of the PageFetcher
+        int callers;
+
+        SharedFetch(PageFetcher pageFetcher, String key, AbortHandle abortHandle, Callable<FetchResult<T>> callable) {
+            super(callable);
+
+            this.pageFetcher = pageFetcher;
+            this.key = key;
+            this.abortHandle = abortHandle;
+
+        }
+
+        void release(boolean mayInterruptIfRunning) {
+
+            pageFetcher.release(this, mayInterruptIfRunning);
+
+        }
+
+        void promote(int priority) {
+
+            pageFetcher.promote(this, priority);
+
+        }
+
+        @Override
+        protected void done() {
+
+            // Requests made from now on fetch the page again, usually with a conditional GET
+            pageFetcher.removeSharedFetch(this);
+
+            pageFetcher.notifyFetchDone();
+
+        }
+
+    }
+
+    /**
+     * Package-private class that lets a {@link uk.org.crimetalk.network.PageFetcher.SharedFetch}
+     * abort the {@link uk.org.crimetalk.network.HttpResponse} its fetch is reading.
+     */
+    static class AbortHandle {
+
+        private HttpResponse mHttpResponse;
+        private boolean mAborted;
+
+        /**
+         * Remembers the response being read, an aborted fetch does not get to read it.
+         */
+        synchronized void attach(HttpResponse httpResponse) throws InterruptedIOException {
+
+            if (mAborted) {
+
+                throw new InterruptedIOException("Fetch was aborted");
+
+            }
+
+            mHttpResponse = httpResponse;
+
+        }
+
+        synchronized void detach() {
+
+            mHttpResponse = null;
+
+        }
+
+        /**
+         * Aborts the fetch unless its page has already been downloaded.
+         *
+         * @return true if the fetch was aborted
+         */
+        synchronized boolean abort() {
+
+            if (mHttpResponse != null && mHttpResponse.isBodyRead()) {
+
+                return false;
+
+            }
+
+            mAborted = true;
+
+            if (mHttpResponse != null) {
+
+                mHttpResponse.abort();
+
+            }
+
+            return true;
+
+        }
+
+        synchronized boolean isAborted() {
+
+            return mAborted;
+
+        }
+
+    }
+
+    /**
+     * Private class that holds the validators and parsed result of a page.
+     */
+    private static class CachedPage {
+
+        final String eTag;
+        final String lastModified;
+        final Object result;
+
+        // The validators belong to the lean variant of the page
+        final boolean lean;
+
+        // When the page was last fetched or revalidated
+        volatile long fetchTime;
+
+        CachedPage(String eTag, String lastModified, Object result, boolean lean) {
+
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.result = result;
+            this.lean = lean;
+            this.fetchTime = SystemClock.elapsedRealtime();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.io.IOException;
+
+/**
+ * {@link java.io.IOException} thrown by a {@link uk.org.crimetalk.network.ResponseParser} when a
+ * page was downloaded but does not have the expected structure. Unlike network failures,
+ * these are not retried.
+ */
+public class ParseException extends IOException {
+
+    /**
+     * Public constructor for the {@link uk.org.crimetalk.network.ParseException}.
+     *
+     * @param message Description of what was missing
+     */
+    public ParseException(String message) {
+        super(message);
+
+        // Do nothing
+
+    }
+
+    /**
+     * Public constructor for the {@link uk.org.crimetalk.network.ParseException}.
+     *
+     * @param message Description of what was missing
+     * @param cause   The exception thrown while parsing
+     */
+    public ParseException(String message, Throwable cause) {
+        super(message, cause);
+
+        // Do nothing
+
+    }
+
+}
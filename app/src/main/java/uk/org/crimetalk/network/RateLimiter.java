@@ -0,0 +1,316 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import android.os.SystemClock;
+
+import java.io.InterruptedIOException;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Per host token bucket that keeps the traffic of the app polite. Every request takes a token
+ * and tokens come back at the rate of the host. Requests the user waits on (the visible screen
+ * and searches) may take any token, automated requests (prefetches, background syncs and warm
+ * ups) leave a reserved share of the bucket to them and wait for tokens otherwise, so bursts of
+ * automated work are smoothed out without delaying what the user is looking at. Warm ups take
+ * no token at all and are skipped unless the bucket holds more than the reserve.
+ * <p/>
+ * A 429 or 503 response halves the rate of the host and pauses automated requests for as long
+ * as its Retry-After header asks. The rate recovers slowly with every later response.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class RateLimiter {
+
+    // A full bucket lets a few requests through at once, e.g. the visible tab and its neighbours
+    private static final double CAPACITY = 6;
+
+    // Tokens automated requests leave for the visible screen
+    private static final double RESERVED_TOKENS = 2;
+
+    // Tokens per second
+    private static final double DEFAULT_RATE = 2;
+    private static final double MIN_RATE = 0.25;
+    private static final double RATE_RECOVERY = 0.05;
+
+    // Pause used when a 429 or 503 response has no usable Retry-After header, and the longest pause honoured
+    private static final long DEFAULT_PAUSE_MILLIS = 30 * 1000;
+    private static final long MAX_PAUSE_MILLIS = 10 * 60 * 1000;
+
+    private final Map<String, Bucket> mBuckets;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.RateLimiter}.
+     * The {@link uk.org.crimetalk.network.HttpTransport} owns the only instance.
+     */
+    RateLimiter() {
+
+        this.mBuckets = new HashMap<>();
+
+    }
+
+    /**
+     * Returns the current rate of a host.
+     *
+     * @param host The host
+     * @return Requests per second
+     */
+    public synchronized double getRate(String host) {
+
+        final Bucket bucket = mBuckets.get(host);
+
+        return bucket != null ? bucket.rate : DEFAULT_RATE;
+
+    }
+
+    /**
+     * Package-private method.
+     * Takes a token for a request to a host, waiting for one if necessary. An automated request
+     * that would have to wait longer than it may is refused rather than kept waiting.
+     *
+     * @throws HostUnavailableException If an automated request would wait too long
+     * @throws InterruptedIOException   If the request is cancelled while waiting
+     */
+    void acquire(String host, boolean automated, long maxWaitMillis) throws HostUnavailableException, InterruptedIOException {
+
+        final long startTime = SystemClock.elapsedRealtime();
+
+        while (true) {
+
+            final long waitMillis;
+
+            synchronized (this) {
+
+                final Bucket bucket = getBucket(host);
+                final long now = SystemClock.elapsedRealtime();
+
+                bucket.refill(now);
+
+                // Requests the user waits on may take the last token, automated requests leave the reserve and honour pauses
+                final double requiredTokens = automated ? 1 + RESERVED_TOKENS : 1;
+                final long pauseMillis = automated ? Math.max(0, bucket.pausedUntil - now) : 0;
+
+                if (pauseMillis == 0 && bucket.tokens >= requiredTokens) {
+
+                    bucket.tokens--;
+
+                    if (now > startTime) {
+
+                        bucket.waits++;
+                        bucket.waitMillis += now - startTime;
+
+                    }
+
+                    return;
+
+                }
+
+                waitMillis = Math.max(pauseMillis, (long) Math.ceil((requiredTokens - bucket.tokens) * 1000 / bucket.rate));
+
+                if (automated && now + waitMillis - startTime > maxWaitMillis) {
+
+                    bucket.refused++;
+
+                    throw new HostUnavailableException(host + " is rate limited for another " + waitMillis + "ms");
+
+                }
+
+            }
+
+            try {
+
+                Thread.sleep(waitMillis);
+
+            } catch (InterruptedException interruptedException) {
+
+                throw new InterruptedIOException("Interrupted while waiting for a token for " + host);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns true if a warm up may be sent to a host. A warm up takes no token, so it is only
+     * sent while the host is not paused and an automated request could take a token right away.
+     */
+    synchronized boolean canWarmUp(String host) {
+
+        final Bucket bucket = getBucket(host);
+        final long now = SystemClock.elapsedRealtime();
+
+        bucket.refill(now);
+
+        if (bucket.pausedUntil > now || bucket.tokens < 1 + RESERVED_TOKENS) {
+
+            bucket.skippedWarmUps++;
+
+            return false;
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Package-private method.
+     * Records a response from a host. A 429 or 503 response slows the host down, any other
+     * response lets its rate recover.
+     *
+     * @param statusCode      The status code of the response
+     * @param retryAfterHeader The Retry-After header of the response, may be null
+     */
+    synchronized void recordResponse(String host, int statusCode, String retryAfterHeader) {
+
+        final Bucket bucket = getBucket(host);
+
+        if (statusCode != 429 && statusCode != 503) {
+
+            bucket.rate = Math.min(DEFAULT_RATE, bucket.rate + RATE_RECOVERY);
+
+            return;
+
+        }
+
+        final long now = SystemClock.elapsedRealtime();
+
+        bucket.backOffs++;
+        bucket.rate = Math.max(MIN_RATE, bucket.rate / 2);
+        bucket.tokens = Math.min(bucket.tokens, 0);
+        bucket.pausedUntil = Math.max(bucket.pausedUntil, now + getPauseMillis(retryAfterHeader));
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        final StringBuilder stringBuilder = new StringBuilder();
+        final long now = SystemClock.elapsedRealtime();
+
+        for (Map.Entry<String, Bucket> entry : mBuckets.entrySet()) {
+
+            final Bucket bucket = entry.getValue();
+
+            bucket.refill(now);
+
+            if (stringBuilder.length() > 0) {
+
+                stringBuilder.append('\n');
+
+            }
+
+            stringBuilder.append(String.format(Locale.US, "%s: rate=%.2f/s tokens=%.1f/%.0f paused for=%ds waits=%d average wait=%dms refused=%d back-offs=%d skipped warm ups=%d",
+                    entry.getKey(), bucket.rate, bucket.tokens, CAPACITY, Math.max(0, bucket.pausedUntil - now) / 1000,
+                    bucket.waits, bucket.waits > 0 ? bucket.waitMillis / bucket.waits : 0, bucket.refused, bucket.backOffs, bucket.skippedWarmUps));
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+    /**
+     * Private method.
+     * Returns the {@link uk.org.crimetalk.network.RateLimiter.Bucket} of a host, creating a full one if needed.
+     */
+    private Bucket getBucket(String host) {
+
+        Bucket bucket = mBuckets.get(host);
+
+        if (bucket == null) {
+
+            bucket = new Bucket();
+
+            mBuckets.put(host, bucket);
+
+        }
+
+        return bucket;
+
+    }
+
+    /**
+     * Private method.
+     * Returns how long a Retry-After header asks to wait. The header holds either a number of
+     * seconds or an HTTP date.
+     */
+    private static long getPauseMillis(String retryAfterHeader) {
+
+        if (retryAfterHeader == null) {
+
+            return DEFAULT_PAUSE_MILLIS;
+
+        }
+
+        long pauseMillis;
+
+        try {
+
+            pauseMillis = Long.parseLong(retryAfterHeader.trim()) * 1000;
+
+        } catch (NumberFormatException numberFormatException) {
+
+            final SimpleDateFormat simpleDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            simpleDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+            try {
+
+                pauseMillis = simpleDateFormat.parse(retryAfterHeader.trim()).getTime() - System.currentTimeMillis();
+
+            } catch (java.text.ParseException parseException) {
+
+                pauseMillis = DEFAULT_PAUSE_MILLIS;
+
+            }
+
+        }
+
+        return Math.min(Math.max(pauseMillis, 0), MAX_PAUSE_MILLIS);
+
+    }
+
+    /**
+     * Private class that holds the token bucket of a single host.
+     */
+    private static class Bucket {
+
+        double tokens = CAPACITY;
+        double rate = DEFAULT_RATE;
+        long refillTime = SystemClock.elapsedRealtime();
+        long pausedUntil;
+
+        long waits;
+        long waitMillis;
+        long refused;
+        long backOffs;
+        long skippedWarmUps;
+
+        void refill(long now) {
+
+            tokens = Math.min(CAPACITY, tokens + (now - refillTime) * rate / 1000);
+            refillTime = now;
+
+        }
+
+    }
+
+}
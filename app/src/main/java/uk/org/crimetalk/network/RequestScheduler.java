@@ -0,0 +1,523 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs all network work of the app in order of priority. Every task belongs to one of the
+ * priority classes defined in this class and each class has its own concurrency limit.
+ * Queued tasks always start highest class first, so queued prefetches and background syncs
+ * wait while anything the user is looking at is queued. Lower classes also leave headroom:
+ * a task of a lower class only starts while fewer tasks are running than for the class
+ * above it, which keeps a slot free for the next visible load.
+ * <p/>
+ * A task that is a {@link java.util.concurrent.Future} and has been cancelled while queued,
+ * e.g. because its {@link android.support.v4.content.Loader} has been reset, is dropped
+ * without running.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class RequestScheduler {
+
+    public static final int PRIORITY_VISIBLE = 0;
+    public static final int PRIORITY_SEARCH = 1;
+    public static final int PRIORITY_PREFETCH = 2;
+    public static final int PRIORITY_BACKGROUND = 3;
+
+    private static final int PRIORITY_COUNT = 4;
+
+    // Parallelism on a single host is capped by the HttpTransport, this also bounds parsing threads
+    private static final int DEFAULT_MAX_RUNNING = 6;
+    private static final int[] DEFAULT_LIMITS = {6, 4, 2, 1};
+
+    private static final String[] PRIORITY_NAMES = {"visible", "search", "prefetch", "background"};
+
+    private static RequestScheduler sRequestScheduler;
+
+    private final ExecutorService mExecutorService;
+    private final List<LinkedList<Task>> mQueues;
+    private final int[] mLimits;
+    private final int[] mRunning;
+
+    private final long[] mStarted;
+    private final long[] mDropped;
+    private final long[] mWaitMillis;
+    private final long[] mMaxWaitMillis;
+
+    private int mMaxRunning;
+    private int mTotalRunning;
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.network.RequestScheduler}.
+     *
+     * @return {@link uk.org.crimetalk.network.RequestScheduler}
+     */
+    public static synchronized RequestScheduler getInstance() {
+
+        if (sRequestScheduler == null) {
+
+            sRequestScheduler = new RequestScheduler();
+
+        }
+
+        return sRequestScheduler;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.network.RequestScheduler}.
+     */
+    private RequestScheduler() {
+
+        this.mExecutorService = Executors.newCachedThreadPool(new SchedulerThreadFactory());
+        this.mQueues = new ArrayList<>(PRIORITY_COUNT);
+        this.mLimits = DEFAULT_LIMITS.clone();
+        this.mRunning = new int[PRIORITY_COUNT];
+        this.mStarted = new long[PRIORITY_COUNT];
+        this.mDropped = new long[PRIORITY_COUNT];
+        this.mWaitMillis = new long[PRIORITY_COUNT];
+        this.mMaxWaitMillis = new long[PRIORITY_COUNT];
+        this.mMaxRunning = DEFAULT_MAX_RUNNING;
+
+        for (int i = 0; i < PRIORITY_COUNT; i++) {
+
+            mQueues.add(new LinkedList<Task>());
+
+        }
+
+    }
+
+    /**
+     * Queues a task and starts it as soon as its priority class allows.
+     *
+     * @param runnable The task, a cancelled {@link java.util.concurrent.Future} is dropped while queued
+     * @param priority Should use a priority defined in this class
+     */
+    public synchronized void submit(Runnable runnable, int priority) {
+
+        mQueues.get(checkPriority(priority)).add(new Task(this, runnable, priority));
+
+        dispatch();
+
+    }
+
+    /**
+     * Moves a queued task to a higher priority class, e.g. when a visible load attaches to a
+     * prefetch that has not started yet. Running tasks and lower priorities are ignored.
+     *
+     * @param runnable The task given to {@link #submit(Runnable, int)}
+     * @param priority Should use a priority defined in this class
+     */
+    public synchronized void promote(Runnable runnable, int priority) {
+
+        checkPriority(priority);
+
+        for (int i = priority + 1; i < PRIORITY_COUNT; i++) {
+
+            final Iterator<Task> iterator = mQueues.get(i).iterator();
+
+            while (iterator.hasNext()) {
+
+                final Task task = iterator.next();
+
+                if (task.runnable == runnable) {
+
+                    iterator.remove();
+
+                    task.priority = priority;
+
+                    mQueues.get(priority).add(task);
+
+                    dispatch();
+
+                    return;
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Removes a task that has not started yet.
+     *
+     * @param runnable The task given to {@link #submit(Runnable, int)}
+     * @return true if the task was still queued
+     */
+    public synchronized boolean remove(Runnable runnable) {
+
+        for (int i = 0; i < PRIORITY_COUNT; i++) {
+
+            final Iterator<Task> iterator = mQueues.get(i).iterator();
+
+            while (iterator.hasNext()) {
+
+                if (iterator.next().runnable == runnable) {
+
+                    iterator.remove();
+
+                    mDropped[i]++;
+
+                    return true;
+
+                }
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Returns an {@link java.util.concurrent.ExecutorService} that submits every task to this
+     * {@link uk.org.crimetalk.network.RequestScheduler} with the same priority, e.g. for
+     * {@link com.squareup.picasso.Picasso}. Shutting it down does not affect other tasks.
+     *
+     * @param priority Should use a priority defined in this class
+     * @return {@link java.util.concurrent.ExecutorService}
+     */
+    public ExecutorService newExecutorService(int priority) {
+
+        return new PriorityExecutorService(this, checkPriority(priority));
+
+    }
+
+    /**
+     * Set the total number of tasks that may run at the same time.
+     *
+     * @param maxRunning Maximum running task count
+     */
+    public synchronized void setMaxRunning(int maxRunning) {
+
+        this.mMaxRunning = Math.max(1, maxRunning);
+
+        dispatch();
+
+    }
+
+    /**
+     * Set the number of tasks of a priority class that may run at the same time.
+     *
+     * @param priority Should use a priority defined in this class
+     * @param limit    Maximum running task count of the class
+     */
+    public synchronized void setLimit(int priority, int limit) {
+
+        this.mLimits[checkPriority(priority)] = Math.max(1, limit);
+
+        dispatch();
+
+    }
+
+    /**
+     * Returns the number of queued tasks of a priority class.
+     *
+     * @param priority Should use a priority defined in this class
+     * @return Queue depth
+     */
+    public synchronized int getQueueDepth(int priority) {
+
+        return mQueues.get(checkPriority(priority)).size();
+
+    }
+
+    /**
+     * Returns the number of running tasks of a priority class.
+     *
+     * @param priority Should use a priority defined in this class
+     * @return Running task count
+     */
+    public synchronized int getRunning(int priority) {
+
+        return mRunning[checkPriority(priority)];
+
+    }
+
+    /**
+     * Returns the average time the started tasks of a priority class have been queued.
+     *
+     * @param priority Should use a priority defined in this class
+     * @return Average wait in milliseconds
+     */
+    public synchronized long getAverageWaitMillis(int priority) {
+
+        checkPriority(priority);
+
+        return mStarted[priority] > 0 ? mWaitMillis[priority] / mStarted[priority] : 0;
+
+    }
+
+    /**
+     * Returns the longest time a started task of a priority class has been queued.
+     *
+     * @param priority Should use a priority defined in this class
+     * @return Longest wait in milliseconds
+     */
+    public synchronized long getMaxWaitMillis(int priority) {
+
+        return mMaxWaitMillis[checkPriority(priority)];
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        for (int i = 0; i < PRIORITY_COUNT; i++) {
+
+            if (i > 0) {
+
+                stringBuilder.append('\n');
+
+            }
+
+            stringBuilder.append(String.format(Locale.US, "%s: queued=%d running=%d/%d started=%d dropped=%d average wait=%dms max wait=%dms",
+                    PRIORITY_NAMES[i], mQueues.get(i).size(), mRunning[i], mLimits[i], mStarted[i], mDropped[i],
+                    getAverageWaitMillis(i), mMaxWaitMillis[i]));
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+    /**
+     * Private method.
+     * Starts queued tasks, highest priority class first, while their classes have a free slot.
+     * Must be called while holding the lock of this {@link uk.org.crimetalk.network.RequestScheduler}.
+     */
+    private void dispatch() {
+
+        for (int i = 0; i < PRIORITY_COUNT; i++) {
+
+            final LinkedList<Task> queue = mQueues.get(i);
+
+            while (!queue.isEmpty() && mRunning[i] < mLimits[i] && mTotalRunning < mMaxRunning - i) {
+
+                final Task task = queue.poll();
+
+                // Nobody is waiting for a cancelled task so it does not take a slot
+                if (task.runnable instanceof Future && ((Future<?>) task.runnable).isCancelled()) {
+
+                    mDropped[i]++;
+
+                    continue;
+
+                }
+
+                final long waitMillis = SystemClock.elapsedRealtime() - task.queueTime;
+
+                mStarted[i]++;
+                mWaitMillis[i] += waitMillis;
+                mMaxWaitMillis[i] = Math.max(mMaxWaitMillis[i], waitMillis);
+
+                mRunning[i]++;
+                mTotalRunning++;
+
+                mExecutorService.execute(task);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Frees the slot of a finished task and starts the next queued tasks.
+     */
+    private synchronized void finish(Task task) {
+
+        mRunning[task.priority]--;
+        mTotalRunning--;
+
+        dispatch();
+
+    }
+
+    /**
+     * Private method.
+     * Throws an {@link java.lang.IllegalArgumentException} if a priority is not defined in this class.
+     */
+    private static int checkPriority(int priority) {
+
+        if (priority < 0 || priority >= PRIORITY_COUNT) {
+
+            throw new IllegalArgumentException("Unknown priority " + priority);
+
+        }
+
+        return priority;
+
+    }
+
+    /**
+     * Private class that holds a queued or running task and frees its slot when it finishes.
+     */
+    private static class Task implements Runnable {
+
+        final RequestScheduler requestScheduler;
+        final Runnable runnable;
+        final long queueTime;
+
+        // Guarded by the RequestScheduler, only changes while the task is queued
+        int priority;
+
+        Task(RequestScheduler requestScheduler, Runnable runnable, int priority) {
+
+            this.requestScheduler = requestScheduler;
+            this.runnable = runnable;
+            this.priority = priority;
+            this.queueTime = SystemClock.elapsedRealtime();
+
+        }
+
+        @Override
+        public void run() {
+
+            try {
+
+                runnable.run();
+
+            } finally {
+
+                requestScheduler.finish(this);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Private {@link java.util.concurrent.ExecutorService} that submits its tasks to the
+     * {@link uk.org.crimetalk.network.RequestScheduler} with a single priority.
+     */
+    private static class PriorityExecutorService extends AbstractExecutorService {
+
+        private final RequestScheduler mRequestScheduler;
+        private final int mPriority;
+
+        private volatile boolean mShutdown;
+
+        PriorityExecutorService(RequestScheduler requestScheduler, int priority) {
+
+            this.mRequestScheduler = requestScheduler;
+            this.mPriority = priority;
+
+        }
+
+        @Override
+        public void execute(Runnable runnable) {
+
+            if (mShutdown) {
+
+                throw new RejectedExecutionException("Executor has been shut down");
+
+            }
+
+            mRequestScheduler.submit(runnable, mPriority);
+
+        }
+
+        @Override
+        public void shutdown() {
+
+            mShutdown = true;
+
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+
+            mShutdown = true;
+
+            return new ArrayList<>();
+
+        }
+
+        @Override
+        public boolean isShutdown() {
+
+            return mShutdown;
+
+        }
+
+        @Override
+        public boolean isTerminated() {
+
+            return mShutdown;
+
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit timeUnit) {
+
+            return mShutdown;
+
+        }
+
+    }
+
+    /**
+     * Private {@link java.util.concurrent.ThreadFactory} that creates background
+     * priority threads for scheduled tasks.
+     */
+    private static class SchedulerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mThreadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+
+            return new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                    runnable.run();
+
+                }
+
+            }, "RequestScheduler #" + mThreadCount.incrementAndGet());
+
+        }
+
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.util.Arrays;
+
+/**
+ * Durations of the phases of a single request, from the address lookup to the extraction of
+ * the items from the parsed page. A phase that was not measured, e.g. the connect phase of a
+ * request sent on a pooled connection, is left at -1.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class RequestTimings {
+
+    public static final int PHASE_DNS = 0;
+    public static final int PHASE_CONNECT = 1;
+    public static final int PHASE_FIRST_BYTE = 2;
+    public static final int PHASE_TRANSFER = 3;
+    public static final int PHASE_PARSE = 4;
+    public static final int PHASE_EXTRACT = 5;
+
+    // Package-private so the TimingStats can go through every phase
+    static final int PHASE_COUNT = 6;
+    static final String[] PHASE_NAMES = {"dns", "connect", "ttfb", "transfer", "parse", "extract"};
+
+    private final long[] mMillis;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.RequestTimings}.
+     */
+    RequestTimings() {
+
+        this.mMillis = new long[PHASE_COUNT];
+
+        Arrays.fill(mMillis, -1);
+
+    }
+
+    /**
+     * Package-private method.
+     * Sets the duration of a phase.
+     */
+    void set(int phase, long millis) {
+
+        mMillis[phase] = Math.max(0, millis);
+
+    }
+
+    /**
+     * Returns the duration of a phase.
+     *
+     * @param phase Should use a phase defined in this class
+     * @return Duration in milliseconds or -1 if the phase was not measured
+     */
+    public long get(int phase) {
+
+        return mMillis[phase];
+
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.io.IOException;
+
+/**
+ * Turns an {@link uk.org.crimetalk.network.HttpResponse} into the items a loader shows.
+ * Results are cached and shared by the {@link uk.org.crimetalk.network.PageFetcher} so
+ * they should not be modified after they are returned.
+ *
+ * @param <T> The type of the parsed result
+ */
+public interface ResponseParser<T> {
+
+    /**
+     * Parses the body of an {@link uk.org.crimetalk.network.HttpResponse}.
+     *
+     * @param httpResponse The {@link uk.org.crimetalk.network.HttpResponse} to be parsed
+     * @return The parsed result
+     * @throws IOException If the body can not be read
+     */
+    public T parse(HttpResponse httpResponse) throws IOException;
+
+}
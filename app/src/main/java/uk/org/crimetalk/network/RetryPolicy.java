@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.net.HttpURLConnection;
+import java.util.Random;
+
+/**
+ * Decides whether a failed fetch is tried again and how long to wait before doing so.
+ * The wait grows exponentially with every attempt and is randomised so that several
+ * failed fetches do not all retry at the same moment. No attempt is started once the
+ * total deadline of the fetch has passed.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class RetryPolicy {
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 500;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 4000;
+    private static final long DEFAULT_DEADLINE_MILLIS = 30000;
+
+    // An attempt with less time than this left is not worth starting
+    private static final long MIN_ATTEMPT_MILLIS = 1000;
+
+    private final Random mRandom;
+
+    private int mMaxAttempts;
+    private long mInitialBackoffMillis;
+    private long mMaxBackoffMillis;
+    private long mDeadlineMillis;
+
+    /**
+     * Public constructor for the {@link uk.org.crimetalk.network.RetryPolicy}.
+     * Uses up to three attempts within a thirty second deadline.
+     */
+    public RetryPolicy() {
+
+        this.mRandom = new Random();
+        this.mMaxAttempts = DEFAULT_MAX_ATTEMPTS;
+        this.mInitialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+        this.mMaxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+        this.mDeadlineMillis = DEFAULT_DEADLINE_MILLIS;
+
+    }
+
+    /**
+     * Set the maximum number of attempts, including the first one.
+     *
+     * @param maxAttempts Maximum number of attempts
+     * @return The current {@link uk.org.crimetalk.network.RetryPolicy}
+     */
+    public RetryPolicy setMaxAttempts(int maxAttempts) {
+
+        this.mMaxAttempts = Math.max(1, maxAttempts);
+
+        return this;
+
+    }
+
+    /**
+     * Set the wait before the first retry. Every following retry waits twice as long.
+     *
+     * @param initialBackoffMillis Wait in milliseconds
+     * @return The current {@link uk.org.crimetalk.network.RetryPolicy}
+     */
+    public RetryPolicy setInitialBackoffMillis(long initialBackoffMillis) {
+
+        this.mInitialBackoffMillis = initialBackoffMillis;
+
+        return this;
+
+    }
+
+    /**
+     * Set the longest wait between two attempts.
+     *
+     * @param maxBackoffMillis Wait in milliseconds
+     * @return The current {@link uk.org.crimetalk.network.RetryPolicy}
+     */
+    public RetryPolicy setMaxBackoffMillis(long maxBackoffMillis) {
+
+        this.mMaxBackoffMillis = maxBackoffMillis;
+
+        return this;
+
+    }
+
+    /**
+     * Set the total time a fetch may take over all of its attempts.
+     *
+     * @param deadlineMillis Deadline in milliseconds
+     * @return The current {@link uk.org.crimetalk.network.RetryPolicy}
+     */
+    public RetryPolicy setDeadlineMillis(long deadlineMillis) {
+
+        this.mDeadlineMillis = deadlineMillis;
+
+        return this;
+
+    }
+
+    /**
+     * Returns the total time a fetch may take over all of its attempts.
+     *
+     * @return Deadline in milliseconds
+     */
+    public long getDeadlineMillis() {
+
+        return mDeadlineMillis;
+
+    }
+
+    /**
+     * Returns true if a failed attempt should be followed by another one.
+     *
+     * @param httpRequest   The failed {@link uk.org.crimetalk.network.HttpRequest}
+     * @param attempts      Number of attempts made so far
+     * @param failure       The failure type as defined in {@link uk.org.crimetalk.network.FetchResult}
+     * @param statusCode    The HTTP status code if the failure was an HTTP status, otherwise 0
+     * @param backoffMillis The wait before the next attempt
+     * @param elapsedMillis Time spent on the fetch so far
+     * @return true if the request should be retried
+     */
+    public boolean shouldRetry(HttpRequest httpRequest, int attempts, int failure, int statusCode,
+                               long backoffMillis, long elapsedMillis) {
+
+        if (attempts >= mMaxAttempts || !httpRequest.isIdempotent()) {
+
+            return false;
+
+        }
+
+        if (elapsedMillis + backoffMillis + MIN_ATTEMPT_MILLIS > mDeadlineMillis) {
+
+            return false;
+
+        }
+
+        switch (failure) {
+
+            case FetchResult.FAILURE_TIMEOUT:
+            case FetchResult.FAILURE_DNS:
+            case FetchResult.FAILURE_NETWORK:
+
+                return true;
+
+            case FetchResult.FAILURE_HTTP_STATUS:
+
+                // Client errors will not go away by asking again, apart from a request timeout
+                return statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR
+                        || statusCode == HttpURLConnection.HTTP_CLIENT_TIMEOUT;
+
+            default:
+
+                return false;
+
+        }
+
+    }
+
+    /**
+     * Returns the wait before the next attempt. Half of the wait is fixed and
+     * the other half is random.
+     *
+     * @param attempts Number of attempts made so far
+     * @return Wait in milliseconds
+     */
+    public long getBackoffMillis(int attempts) {
+
+        final long backoffMillis = Math.min(mMaxBackoffMillis, mInitialBackoffMillis << Math.min(attempts - 1, 16));
+
+        return backoffMillis / 2 + (long) (mRandom.nextDouble() * (backoffMillis / 2));
+
+    }
+
+    /**
+     * Returns the timeout for the next attempt so it does not run past the deadline.
+     *
+     * @param timeout       The timeout requested by the user
+     * @param elapsedMillis Time spent on the fetch so far
+     * @return Timeout in milliseconds
+     */
+    public int getAttemptTimeout(int timeout, long elapsedMillis) {
+
+        return (int) Math.max(MIN_ATTEMPT_MILLIS, Math.min(timeout, mDeadlineMillis - elapsedMillis));
+
+    }
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Process-wide latency histograms of the phases of every page fetch, kept per URL pattern so
+ * that article lists, articles and their lean variants can be told apart. Percentiles are
+ * read from exponential buckets that are 25% apart, which is close enough to see where the
+ * time of a load goes. The histograms can be written to a file for analysis off the device.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class TimingStats {
+
+    // Upper bounds of the histogram buckets grow by this factor from 1ms, the last bucket takes the rest
+    private static final double BUCKET_GROWTH = 1.25;
+    private static final int BUCKET_COUNT = 56;
+
+    private static final long[] BUCKET_BOUNDS = new long[BUCKET_COUNT];
+
+    static {
+
+        double bound = 1;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+
+            BUCKET_BOUNDS[i] = Math.round(bound);
+
+            bound = Math.max(bound * BUCKET_GROWTH, BUCKET_BOUNDS[i] + 1);
+
+        }
+
+    }
+
+    private static TimingStats sTimingStats;
+
+    // Sorted so related patterns are listed together
+    private final Map<String, Histogram[]> mHistograms;
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.network.TimingStats}.
+     *
+     * @return {@link uk.org.crimetalk.network.TimingStats}
+     */
+    public static synchronized TimingStats getInstance() {
+
+        if (sTimingStats == null) {
+
+            sTimingStats = new TimingStats();
+
+        }
+
+        return sTimingStats;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.network.TimingStats}.
+     */
+    private TimingStats() {
+
+        this.mHistograms = new TreeMap<>();
+
+    }
+
+    /**
+     * Returns the URL pattern a URL is counted under. Query values and path segments that hold
+     * numbers, e.g. category and article ids, are replaced by a #.
+     *
+     * @param url The requested URL
+     * @return URL pattern as a {@link java.lang.String}
+     */
+    public static String getPattern(String url) {
+
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        // Scheme and host are the same for every page of the site
+        final int pathStart = url.indexOf('/', url.indexOf("://") + 3);
+
+        for (String part : (pathStart >= 0 ? url.substring(pathStart) : "/").split("(?=[/?&])")) {
+
+            final int valueStart = part.indexOf('=');
+
+            if (valueStart >= 0) {
+
+                stringBuilder.append(part.substring(0, valueStart + 1))
+                        .append(part.matches(".*=.*\\d.*") ? "#" : part.substring(valueStart + 1));
+
+            } else {
+
+                stringBuilder.append(part.matches(".*\\d.*") ? part.charAt(0) + "#" : part);
+
+            }
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+    /**
+     * Package-private method.
+     * Records every measured phase of a request under its URL pattern.
+     */
+    synchronized void record(String pattern, RequestTimings requestTimings) {
+
+        Histogram[] histograms = mHistograms.get(pattern);
+
+        if (histograms == null) {
+
+            histograms = new Histogram[RequestTimings.PHASE_COUNT];
+
+            for (int i = 0; i < histograms.length; i++) {
+
+                histograms[i] = new Histogram();
+
+            }
+
+            mHistograms.put(pattern, histograms);
+
+        }
+
+        for (int i = 0; i < histograms.length; i++) {
+
+            if (requestTimings.get(i) >= 0) {
+
+                histograms[i].record(requestTimings.get(i));
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Returns a percentile of a phase of the requests made to a URL pattern.
+     *
+     * @param pattern    A pattern returned by {@link #getPattern(String)}
+     * @param phase      Should use a phase defined in {@link uk.org.crimetalk.network.RequestTimings}
+     * @param percentile The percentile between 0 and 100, e.g. 95
+     * @return Duration in milliseconds or -1 if the phase has not been measured for the pattern
+     */
+    public synchronized long getPercentile(String pattern, int phase, double percentile) {
+
+        final Histogram[] histograms = mHistograms.get(pattern);
+
+        return histograms != null ? histograms[phase].getPercentile(percentile) : -1;
+
+    }
+
+    /**
+     * Writes every histogram as tab separated values, one line per URL pattern and phase.
+     *
+     * @param writer The {@link java.io.Writer} to write to
+     * @throws IOException If writing fails
+     */
+    public synchronized void writeTo(Writer writer) throws IOException {
+
+        writer.write("pattern\tphase\tcount\tp50\tp95\tp99\tmax\n");
+
+        for (Map.Entry<String, Histogram[]> entry : mHistograms.entrySet()) {
+
+            for (int i = 0; i < RequestTimings.PHASE_COUNT; i++) {
+
+                final Histogram histogram = entry.getValue()[i];
+
+                if (histogram.count > 0) {
+
+                    writer.write(String.format(Locale.US, "%s\t%s\t%d\t%d\t%d\t%d\t%d\n", entry.getKey(),
+                            RequestTimings.PHASE_NAMES[i], histogram.count, histogram.getPercentile(50),
+                            histogram.getPercentile(95), histogram.getPercentile(99), histogram.max));
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Writes every histogram to a file, replacing its contents.
+     *
+     * @param file The {@link java.io.File} to write to
+     * @throws IOException If the file can not be written
+     * @see #writeTo(Writer)
+     */
+    public void dump(File file) throws IOException {
+
+        final Writer writer = new FileWriter(file);
+
+        try {
+
+            writeTo(writer);
+
+        } finally {
+
+            writer.close();
+
+        }
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        for (Map.Entry<String, Histogram[]> entry : mHistograms.entrySet()) {
+
+            if (stringBuilder.length() > 0) {
+
+                stringBuilder.append('\n');
+
+            }
+
+            stringBuilder.append(entry.getKey());
+
+            for (int i = 0; i < RequestTimings.PHASE_COUNT; i++) {
+
+                final Histogram histogram = entry.getValue()[i];
+
+                if (histogram.count > 0) {
+
+                    stringBuilder.append(String.format(Locale.US, "\n  %s: n=%d p50=%dms p95=%dms p99=%dms",
+                            RequestTimings.PHASE_NAMES[i], histogram.count, histogram.getPercentile(50),
+                            histogram.getPercentile(95), histogram.getPercentile(99)));
+
+                }
+
+            }
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+    /**
+     * Private class that holds the histogram of a single phase.
+     */
+    private static class Histogram {
+
+        final long[] counts = new long[BUCKET_COUNT];
+
+        long count;
+        long max;
+
+        void record(long millis) {
+
+            int bucket = 0;
+
+            while (bucket < BUCKET_COUNT - 1 && millis > BUCKET_BOUNDS[bucket]) {
+
+                bucket++;
+
+            }
+
+            counts[bucket]++;
+            count++;
+            max = Math.max(max, millis);
+
+        }
+
+        long getPercentile(double percentile) {
+
+            if (count == 0) {
+
+                return -1;
+
+            }
+
+            final long rank = (long) Math.ceil(count * percentile / 100);
+
+            long seen = 0;
+
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+
+                seen += counts[i];
+
+                // The bucket bound may overshoot the largest sample
+                if (seen >= rank) {
+
+                    return Math.min(BUCKET_BOUNDS[i], max);
+
+                }
+
+            }
+
+            return max;
+
+        }
+
+    }
+
+}
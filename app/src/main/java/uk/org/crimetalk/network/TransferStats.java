@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Byte counts kept by the {@link uk.org.crimetalk.network.HttpTransport} for every URL.
+ * The bytes received on the wire are kept next to the bytes after decompression so the
+ * saving of compressed transfer can be measured. Bodies that were only read up to the end of
+ * the container the parser needs count the bytes they skipped, from the Content-Length header
+ * or else from the last time the URL was read to the end.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class TransferStats {
+
+    // Indexes of the per URL counts
+    private static final int STAT_RESPONSES = 0;
+    private static final int STAT_WIRE_BYTES = 1;
+    private static final int STAT_BODY_BYTES = 2;
+    private static final int STAT_STOPPED_EARLY = 3;
+    private static final int STAT_SKIPPED_BYTES = 4;
+    private static final int STAT_FULL_WIRE_BYTES = 5;
+    private static final int STAT_COUNT = 6;
+
+    private final Map<String, long[]> mUrlStats;
+
+    private long mWireBytes;
+    private long mBodyBytes;
+    private long mStoppedEarly;
+    private long mSkippedBytes;
+    private long mUnknownSkips;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.TransferStats}.
+     */
+    TransferStats() {
+
+        this.mUrlStats = new LinkedHashMap<>();
+
+    }
+
+    /**
+     * Package-private method.
+     * Records a response body that has been read.
+     */
+    synchronized void recordTransfer(String url, long wireBytes, long bodyBytes, boolean complete,
+                                     boolean stoppedEarly, long contentLength) {
+
+        long[] urlStats = mUrlStats.get(url);
+
+        if (urlStats == null) {
+
+            urlStats = new long[STAT_COUNT];
+            mUrlStats.put(url, urlStats);
+
+        }
+
+        urlStats[STAT_RESPONSES]++;
+        urlStats[STAT_WIRE_BYTES] += wireBytes;
+        urlStats[STAT_BODY_BYTES] += bodyBytes;
+
+        mWireBytes += wireBytes;
+        mBodyBytes += bodyBytes;
+
+        if (complete) {
+
+            urlStats[STAT_FULL_WIRE_BYTES] = wireBytes;
+
+        }
+
+        if (stoppedEarly) {
+
+            urlStats[STAT_STOPPED_EARLY]++;
+            mStoppedEarly++;
+
+            // A chunked body of a URL that has never been read to the end skipped an unknown amount
+            final long fullWireBytes = contentLength >= 0 ? contentLength : urlStats[STAT_FULL_WIRE_BYTES];
+
+            if (fullWireBytes > 0) {
+
+                final long skippedBytes = Math.max(0, fullWireBytes - wireBytes);
+
+                urlStats[STAT_SKIPPED_BYTES] += skippedBytes;
+                mSkippedBytes += skippedBytes;
+
+            } else {
+
+                mUnknownSkips++;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Returns the total number of body bytes received on the wire.
+     *
+     * @return Byte count
+     */
+    public synchronized long getWireBytes() {
+
+        return mWireBytes;
+
+    }
+
+    /**
+     * Returns the total number of body bytes after decompression.
+     *
+     * @return Byte count
+     */
+    public synchronized long getBodyBytes() {
+
+        return mBodyBytes;
+
+    }
+
+    /**
+     * Returns the total number of body bytes that were not received because reading stopped
+     * after the container. Bodies of unknown length are not included.
+     *
+     * @return Byte count
+     */
+    public synchronized long getSkippedBytes() {
+
+        return mSkippedBytes;
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        final StringBuilder stringBuilder = new StringBuilder(String.format(Locale.US,
+                "wire=%dKB decoded=%dKB saved=%dKB stopped=%d skipped=%dKB unknown=%d",
+                mWireBytes / 1024, mBodyBytes / 1024, (mBodyBytes - mWireBytes) / 1024,
+                mStoppedEarly, mSkippedBytes / 1024, mUnknownSkips));
+
+        for (Map.Entry<String, long[]> entry : mUrlStats.entrySet()) {
+
+            final long[] urlStats = entry.getValue();
+
+            stringBuilder.append(String.format(Locale.US, "\n%s\n  responses=%d wire=%dKB decoded=%dKB",
+                    entry.getKey(), urlStats[STAT_RESPONSES], urlStats[STAT_WIRE_BYTES] / 1024,
+                    urlStats[STAT_BODY_BYTES] / 1024));
+
+            if (urlStats[STAT_STOPPED_EARLY] > 0) {
+
+                stringBuilder.append(String.format(Locale.US, " stopped=%d skipped=%dKB",
+                        urlStats[STAT_STOPPED_EARLY], urlStats[STAT_SKIPPED_BYTES] / 1024));
+
+            }
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.util.Locale;
+
+/**
+ * Connection pool statistics kept by the {@link uk.org.crimetalk.network.HttpTransport}.
+ * The time to headers of reused and new connections is kept separately so the effect of
+ * the pool on swipe latency can be compared. Reused connections that were opened by the
+ * {@link uk.org.crimetalk.network.ConnectionWarmer} are also counted on their own, they show
+ * the time to first byte with pre-warming where new connections show it without.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class TransportStats {
+
+    private long mReusedRequests;
+    private long mNewRequests;
+    private long mReusedMillis;
+    private long mNewMillis;
+    private long mWarmedRequests;
+    private long mWarmedMillis;
+
+    /**
+     * Package-private method.
+     * Records a request that has received its headers.
+     */
+    synchronized void recordRequest(boolean reusedConnection, boolean warmedConnection, long timeToHeadersMillis) {
+
+        if (warmedConnection) {
+
+            mWarmedRequests++;
+            mWarmedMillis += timeToHeadersMillis;
+
+        }
+
+        if (reusedConnection) {
+
+            mReusedRequests++;
+            mReusedMillis += timeToHeadersMillis;
+
+        } else {
+
+            mNewRequests++;
+            mNewMillis += timeToHeadersMillis;
+
+        }
+
+    }
+
+    /**
+     * Returns the number of requests that were sent on a pooled connection.
+     *
+     * @return Reused request count
+     */
+    public synchronized long getReusedRequests() {
+
+        return mReusedRequests;
+
+    }
+
+    /**
+     * Returns the number of requests that needed a new connection.
+     *
+     * @return New request count
+     */
+    public synchronized long getNewRequests() {
+
+        return mNewRequests;
+
+    }
+
+    /**
+     * Returns the number of requests that were sent on a connection opened by a warm up.
+     * These are also counted as reused requests.
+     *
+     * @return Warmed request count
+     */
+    public synchronized long getWarmedRequests() {
+
+        return mWarmedRequests;
+
+    }
+
+    /**
+     * Returns the fraction of requests that were sent on a pooled connection.
+     *
+     * @return Reuse ratio between 0 and 1
+     */
+    public synchronized float getReuseRatio() {
+
+        final long totalRequests = mReusedRequests + mNewRequests;
+
+        return totalRequests == 0 ? 0f : (float) mReusedRequests / totalRequests;
+
+    }
+
+    /**
+     * Returns the average time to headers of requests sent on a pooled connection.
+     *
+     * @return Average time in milliseconds
+     */
+    public synchronized long getAverageReusedMillis() {
+
+        return mReusedRequests == 0 ? 0 : mReusedMillis / mReusedRequests;
+
+    }
+
+    /**
+     * Returns the average time to headers of requests that needed a new connection.
+     *
+     * @return Average time in milliseconds
+     */
+    public synchronized long getAverageNewMillis() {
+
+        return mNewRequests == 0 ? 0 : mNewMillis / mNewRequests;
+
+    }
+
+    /**
+     * Returns the average time to headers of requests sent on a connection opened by a warm up.
+     *
+     * @return Average time in milliseconds
+     */
+    public synchronized long getAverageWarmedMillis() {
+
+        return mWarmedRequests == 0 ? 0 : mWarmedMillis / mWarmedRequests;
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return String.format(Locale.US, "requests=%d reused=%d (%.0f%%) warmed=%d avg headers reused=%dms new=%dms warmed=%dms",
+                mReusedRequests + mNewRequests, mReusedRequests, getReuseRatio() * 100, mWarmedRequests,
+                getAverageReusedMillis(), getAverageNewMillis(), getAverageWarmedMillis());
+
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.network;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Size and parse time of the lean and full variants of every page, kept by the
+ * {@link uk.org.crimetalk.network.PageFetcher}. The last measurement of each variant is
+ * kept so the bytes and parse time saved by the lean variant can be reported for pages
+ * whose full variant has also been fetched, either after a fallback or with lean pages
+ * turned off. Parse time includes reading the body, the parser reads it from the wire.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class VariantStats {
+
+    // Indexes into the measurements of a page
+    private static final int LEAN_BYTES = 0;
+    private static final int LEAN_MILLIS = 1;
+    private static final int FULL_BYTES = 2;
+    private static final int FULL_MILLIS = 3;
+
+    private final Map<String, long[]> mPageStats;
+
+    private long mLeanPages;
+    private long mFullPages;
+    private long mFallbacks;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.network.VariantStats}.
+     */
+    VariantStats() {
+
+        this.mPageStats = new LinkedHashMap<>();
+
+    }
+
+    /**
+     * Package-private method.
+     * Records a page that has been downloaded and parsed.
+     */
+    synchronized void recordPage(String url, boolean lean, long wireBytes, long parseMillis) {
+
+        final long[] pageStats = getPageStats(url);
+
+        if (lean) {
+
+            mLeanPages++;
+
+            pageStats[LEAN_BYTES] = wireBytes;
+            pageStats[LEAN_MILLIS] = parseMillis;
+
+        } else {
+
+            mFullPages++;
+
+            pageStats[FULL_BYTES] = wireBytes;
+            pageStats[FULL_MILLIS] = parseMillis;
+
+        }
+
+    }
+
+    /**
+     * Package-private method.
+     * Records a lean page that did not hold the expected content.
+     */
+    synchronized void recordFallback() {
+
+        mFallbacks++;
+
+    }
+
+    /**
+     * Returns the number of bytes saved by the lean variant of every page measured in both variants.
+     *
+     * @return Byte count
+     */
+    public synchronized long getSavedBytes() {
+
+        long savedBytes = 0;
+
+        for (long[] pageStats : mPageStats.values()) {
+
+            if (hasBothVariants(pageStats)) {
+
+                savedBytes += pageStats[FULL_BYTES] - pageStats[LEAN_BYTES];
+
+            }
+
+        }
+
+        return savedBytes;
+
+    }
+
+    /**
+     * Returns the parse time saved by the lean variant of every page measured in both variants.
+     *
+     * @return Time in milliseconds
+     */
+    public synchronized long getSavedMillis() {
+
+        long savedMillis = 0;
+
+        for (long[] pageStats : mPageStats.values()) {
+
+            if (hasBothVariants(pageStats)) {
+
+                savedMillis += pageStats[FULL_MILLIS] - pageStats[LEAN_MILLIS];
+
+            }
+
+        }
+
+        return savedMillis;
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        final StringBuilder stringBuilder = new StringBuilder(String.format(Locale.US,
+                "lean=%d full=%d fallbacks=%d saved=%dKB %dms", mLeanPages, mFullPages, mFallbacks,
+                getSavedBytes() / 1024, getSavedMillis()));
+
+        for (Map.Entry<String, long[]> entry : mPageStats.entrySet()) {
+
+            final long[] pageStats = entry.getValue();
+
+            stringBuilder.append("\n").append(entry.getKey()).append("\n ")
+                    .append(formatVariant("lean", pageStats[LEAN_BYTES], pageStats[LEAN_MILLIS]))
+                    .append(formatVariant("full", pageStats[FULL_BYTES], pageStats[FULL_MILLIS]));
+
+            if (hasBothVariants(pageStats)) {
+
+                stringBuilder.append(formatVariant("saved", pageStats[FULL_BYTES] - pageStats[LEAN_BYTES],
+                        pageStats[FULL_MILLIS] - pageStats[LEAN_MILLIS]));
+
+            }
+
+        }
+
+        return stringBuilder.toString();
+
+    }
+
+    /**
+     * Private method.
+     * Returns the measurements of a page, -1 for a variant that has not been measured.
+     */
+    private long[] getPageStats(String url) {
+
+        long[] pageStats = mPageStats.get(url);
+
+        if (pageStats == null) {
+
+            pageStats = new long[] {-1, -1, -1, -1};
+            mPageStats.put(url, pageStats);
+
+        }
+
+        return pageStats;
+
+    }
+
+    /**
+     * Private method.
+     * Returns true if both variants of a page have been measured.
+     */
+    private static boolean hasBothVariants(long[] pageStats) {
+
+        return pageStats[LEAN_BYTES] >= 0 && pageStats[FULL_BYTES] >= 0;
+
+    }
+
+    /**
+     * Private method.
+     * Formats the measurement of a single variant.
+     */
+    private static String formatVariant(String name, long bytes, long millis) {
+
+        return bytes < 0 ? String.format(Locale.US, " %s=-", name)
+                : String.format(Locale.US, " %s=%dKB/%dms", name, bytes / 1024, millis);
+
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.parsers;
+
+import android.content.Context;
+import android.graphics.Typeface;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import uk.org.crimetalk.R;
+import uk.org.crimetalk.adapters.items.ArticleContentItem;
+import uk.org.crimetalk.network.HttpResponse;
+import uk.org.crimetalk.network.ParseException;
+import uk.org.crimetalk.network.ResponseParser;
+
+/**
+ * {@link uk.org.crimetalk.network.ResponseParser} that turns a CrimeTalk article page into
+ * a {@link java.util.List} of {@link uk.org.crimetalk.adapters.items.ArticleContentItem}.
+ * Used by the {@link uk.org.crimetalk.fragments.ArticleContentFragment} loader.
+ */
+public class ArticleContentParser implements ResponseParser<List<ArticleContentItem>> {
+
+    private final String mBaseUrlFormat;
+
+    /**
+     * Public constructor for the {@link uk.org.crimetalk.parsers.ArticleContentParser}.
+     *
+     * @param context A valid {@link android.content.Context}
+     */
+    public ArticleContentParser(Context context) {
+
+        this.mBaseUrlFormat = context.getResources().getString(R.string.base_url);
+
+    }
+
+    @Override
+    public List<ArticleContentItem> parse(HttpResponse httpResponse) throws IOException {
+
+        // Create a new List to keep the ArticleContentItems in
+        final List<ArticleContentItem> articleContentItems = new ArrayList<>();
+
+        /* This is what the Jsoup connection will look for when parsing the article.
+           These parameters are specific to CrimeTalk articles. Nothing after the
+           container is needed so the rest of the page is not read */
+        final Elements containerElements = httpResponse.parseContainer("item-page").getElementsByClass("item-page");
+
+        // Without the container this is not an article page, e.g. an error page served with a 200
+        if (containerElements.isEmpty()) {
+
+            throw new ParseException("No .item-page element at " + httpResponse.getRequest().getUrl());
+
+        }
+
+        // For loop for each potential ArticleContentItem
+        for (Element element : containerElements.select("p")) {
+
+            // Nobody is waiting for the rest of a cancelled fetch
+            httpResponse.throwIfCancelled();
+
+            // If the ArticleContentItem has text or an image URL, add it to the list
+            if ((!element.text().isEmpty() && element.text().length() > 1) ||
+                    element.select("img").first() != null) {
+
+                articleContentItems.add(new ArticleContentItem()
+                        .setText(element.text().trim())
+                        .setTypeface(element.select("strong").first() != null && element //If "strong" than bold the text
+                                .select("strong").first().text().equals(element.text()) ? Typeface.BOLD : Typeface.NORMAL)
+                        .setImageUrl(element.select("img").first() != null ? String.format(mBaseUrlFormat,
+                                element.select("img").first().attr("src")) : ""));
+
+            }
+
+        }
+
+        // If there are items in the List and the first one of them contains this dummy text, remove it
+        if (articleContentItems.size() > 0 && articleContentItems.get(0).getText().contains("User Rating")) {
+
+            articleContentItems.remove(0);
+
+        }
+
+        // The result is cached and shared between loaders so it should not be changed
+        return Collections.unmodifiableList(articleContentItems);
+
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.parsers;
+
+import android.content.Context;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import uk.org.crimetalk.R;
+import uk.org.crimetalk.adapters.items.ArticleListItem;
+import uk.org.crimetalk.network.HttpResponse;
+import uk.org.crimetalk.network.ParseException;
+import uk.org.crimetalk.network.ResponseParser;
+
+/**
+ * {@link uk.org.crimetalk.network.ResponseParser} that turns the RSS or Atom feed of a CrimeTalk
+ * category into a {@link java.util.List} of {@link uk.org.crimetalk.adapters.items.ArticleListItem}.
+ * The feed is read with a pull parser as it arrives, no document is built. Items get their
+ * date and author from the feed, but feeds do not have hits so every item is shown without them.
+ */
+public class ArticleFeedParser implements ResponseParser<List<ArticleListItem>> {
+
+    // Indexes into the date formats of a parse
+    private static final int RSS_DATE = 0;
+    private static final int ATOM_DATE = 1;
+    private static final int LIST_DATE = 2;
+
+    private final String mBaseUrlFormat;
+
+    /**
+     * Public constructor for the {@link uk.org.crimetalk.parsers.ArticleFeedParser}.
+     *
+     * @param context A valid {@link android.content.Context}
+     */
+    public ArticleFeedParser(Context context) {
+
+        this.mBaseUrlFormat = context.getResources().getString(R.string.base_url);
+
+    }
+
+    @Override
+    public List<ArticleListItem> parse(HttpResponse httpResponse) throws IOException {
+
+        // Create a new List to keep the ArticleListItems in
+        final List<ArticleListItem> articleListItems = new ArrayList<>();
+
+        // Date formats are not thread safe so each parse has its own
+        final DateFormat[] dateFormats = new DateFormat[] {
+                new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.US),
+                new SimpleDateFormat("yyyy-MM-dd", Locale.US),
+                new SimpleDateFormat("MMM yyyy", Locale.US)};
+
+        final XmlPullParser xmlPullParser = Xml.newPullParser();
+
+        // Text of the element being read, an element's text is only known at its end tag
+        final StringBuilder text = new StringBuilder();
+
+        boolean feed = false;
+        ArticleListItem articleListItem = null;
+
+        try {
+
+            // A null charset lets the parser use the XML declaration
+            xmlPullParser.setInput(httpResponse.getInputStream(), httpResponse.getCharset());
+
+            for (int eventType = xmlPullParser.getEventType(); eventType != XmlPullParser.END_DOCUMENT;
+                 eventType = xmlPullParser.next()) {
+
+                if (eventType == XmlPullParser.START_TAG) {
+
+                    final String name = xmlPullParser.getName();
+
+                    text.setLength(0);
+
+                    if ("rss".equals(name) || "feed".equals(name)) {
+
+                        feed = true;
+
+                    } else if ("item".equals(name) || "entry".equals(name)) {
+
+                        articleListItem = new ArticleListItem();
+
+                    } else if (articleListItem != null && "link".equals(name)) {
+
+                        // Atom links are attributes, only the alternate link points to the article
+                        final String href = xmlPullParser.getAttributeValue(null, "href");
+                        final String rel = xmlPullParser.getAttributeValue(null, "rel");
+
+                        if (href != null && (rel == null || "alternate".equals(rel))) {
+
+                            articleListItem.setLink(getLink(href));
+
+                        }
+
+                    }
+
+                } else if (eventType == XmlPullParser.TEXT) {
+
+                    text.append(xmlPullParser.getText());
+
+                } else if (eventType == XmlPullParser.END_TAG && articleListItem != null) {
+
+                    final String name = xmlPullParser.getName();
+                    final String value = text.toString().trim();
+
+                    text.setLength(0);
+
+                    if ("item".equals(name) || "entry".equals(name)) {
+
+                        // An item without a title or link can not be shown or opened
+                        if (articleListItem.getTitle() != null && articleListItem.getLink() != null) {
+
+                            articleListItems.add(articleListItem);
+
+                        }
+
+                        articleListItem = null;
+
+                    } else if (!value.isEmpty()) {
+
+                        // Atom links and elements that only hold other elements have no text
+                        setField(articleListItem, name, value, dateFormats);
+
+                    }
+
+                }
+
+            }
+
+        } catch (XmlPullParserException xmlPullParserException) {
+
+            // Also thrown for an HTML error page served with a 200
+            throw new ParseException("Malformed feed at " + httpResponse.getRequest().getUrl(), xmlPullParserException);
+
+        }
+
+        if (!feed) {
+
+            throw new ParseException("No feed at " + httpResponse.getRequest().getUrl());
+
+        }
+
+        // The result is cached and shared between loaders so it should not be changed
+        return Collections.unmodifiableList(articleListItems);
+
+    }
+
+    /**
+     * Private method.
+     * Sets the field of an {@link uk.org.crimetalk.adapters.items.ArticleListItem} that an element of the feed holds.
+     */
+    private void setField(ArticleListItem articleListItem, String name, String value, DateFormat[] dateFormats) {
+
+        if ("title".equals(name)) {
+
+            articleListItem.setTitle(value);
+
+        } else if ("link".equals(name)) {
+
+            articleListItem.setLink(getLink(value));
+
+        } else if ("pubDate".equals(name)) {
+
+            articleListItem.setDate(formatDate(dateFormats[RSS_DATE], dateFormats[LIST_DATE], value));
+
+        } else if ("published".equals(name) || ("updated".equals(name) && articleListItem.getDate() == null)) {
+
+            articleListItem.setDate(formatDate(dateFormats[ATOM_DATE], dateFormats[LIST_DATE], value));
+
+        } else if ("author".equals(name)) {
+
+            // RSS authors are written as "email (name)"
+            final int nameStart = value.indexOf('(');
+
+            articleListItem.setAuthor(nameStart >= 0 && value.endsWith(")") ?
+                    value.substring(nameStart + 1, value.length() - 1).trim() : value);
+
+        } else if ("name".equals(name) || "dc:creator".equals(name)) {
+
+            // Atom authors and RSS authors without an email address
+            articleListItem.setAuthor(value);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Returns an absolute link, relative links are resolved against the CrimeTalk site.
+     */
+    private String getLink(String link) {
+
+        return link.startsWith("http") ? link : String.format(mBaseUrlFormat, link);
+
+    }
+
+    /**
+     * Private method.
+     * Returns a feed date in the format used by the category pages, or as is if it can not be read.
+     */
+    private static String formatDate(DateFormat feedDateFormat, DateFormat listDateFormat, String date) {
+
+        try {
+
+            final Date parsedDate = feedDateFormat.parse(date);
+
+            return listDateFormat.format(parsedDate);
+
+        } catch (java.text.ParseException parseException) {
+
+            return date;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.parsers;
+
+import android.content.Context;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import uk.org.crimetalk.adapters.items.ArticleListItem;
+import uk.org.crimetalk.fragments.helpers.ArticleListHelper;
+import uk.org.crimetalk.network.HttpResponse;
+import uk.org.crimetalk.network.ParseException;
+import uk.org.crimetalk.network.ResponseParser;
+
+/**
+ * {@link uk.org.crimetalk.network.ResponseParser} that turns a CrimeTalk category page into
+ * a {@link java.util.List} of {@link uk.org.crimetalk.adapters.items.ArticleListItem}.
+ * Shared by the {@link uk.org.crimetalk.fragments.ArticleListFragment} and
+ * {@link uk.org.crimetalk.fragments.SearchFragment} loaders.
+ */
+public class ArticleListParser implements ResponseParser<List<ArticleListItem>> {
+
+    private final ListExtractor mListExtractor;
+
+    /**
+     * Public constructor for the {@link uk.org.crimetalk.parsers.ArticleListParser}.
+     *
+     * @param context           A valid {@link android.content.Context}
+     * @param articleListHelper The {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper}
+     *                          of the category being parsed
+     */
+    public ArticleListParser(Context context, ArticleListHelper articleListHelper) {
+
+        // The rules of a category are compiled the first time it is parsed
+        this.mListExtractor = ListExtractor.getInstance(context, articleListHelper.getListRules());
+
+    }
+
+    @Override
+    public List<ArticleListItem> parse(HttpResponse httpResponse) throws IOException {
+
+        // Create a new List to keep the ArticleListItems in
+        final List<ArticleListItem> articleListItems = new ArrayList<>();
+
+        /* This is what the Jsoup connection will look for when parsing the article.
+           These parameters are specific to CrimeTalk article lists. Nothing after the
+           container is needed so the rest of the page is not read */
+        final String containerClass = mListExtractor.getListRules().getContainerClass();
+        final Elements tableElements = mListExtractor.selectRows(httpResponse.parseContainer(containerClass));
+
+        // Without the container this is not a category page, e.g. an error page served with a 200
+        if (tableElements == null) {
+
+            throw new ParseException("No ." + containerClass + " element at " + httpResponse.getRequest().getUrl());
+
+        }
+
+        // For loop for each potential ArticleListItem
+        for (Element element : tableElements) {
+
+            // Nobody is waiting for the rest of a cancelled fetch
+            httpResponse.throwIfCancelled();
+
+            // Every field of the row is filled in a single walk through it
+            articleListItems.add(mListExtractor.extractRow(element));
+
+        }
+
+        // If there are items in the List and the first one of them contains this dummy text, remove it
+        if (articleListItems.size() > 0 && articleListItems.get(0).getTitle().equalsIgnoreCase("Title")) {
+
+            articleListItems.remove(0);
+
+        }
+
+        // The result is cached and shared between loaders so it should not be changed
+        return Collections.unmodifiableList(articleListItems);
+
+    }
+
+}
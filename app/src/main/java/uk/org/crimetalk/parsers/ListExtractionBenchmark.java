@@ -0,0 +1,316 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.parsers;
+
+import android.content.Context;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import uk.org.crimetalk.R;
+import uk.org.crimetalk.adapters.items.ArticleListItem;
+import uk.org.crimetalk.network.ParseException;
+
+/**
+ * Measures how many rows per second the {@link uk.org.crimetalk.parsers.ListExtractor} turns into
+ * {@link uk.org.crimetalk.adapters.items.ArticleListItem} compared with looking each field up by
+ * class, which is how rows were extracted before. Both run on the same generated category pages
+ * so the numbers do not depend on the network and every row can be compared.
+ *
+ * @see {@link uk.org.crimetalk.fragments.NetworkDebugFragment}
+ */
+public class ListExtractionBenchmark {
+
+    // Rows of each generated page, a large category such as Featured Articles
+    private static final int ROWS = 500;
+
+    // Passes over each page, the first pass of each method is a warm up and is not timed
+    private static final int PASSES = 20;
+
+    private static ListExtractionBenchmark sListExtractionBenchmark;
+
+    private final List<String> mResults;
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.parsers.ListExtractionBenchmark}.
+     *
+     * @return {@link uk.org.crimetalk.parsers.ListExtractionBenchmark}
+     */
+    public static synchronized ListExtractionBenchmark getInstance() {
+
+        if (sListExtractionBenchmark == null) {
+
+            sListExtractionBenchmark = new ListExtractionBenchmark();
+
+        }
+
+        return sListExtractionBenchmark;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.parsers.ListExtractionBenchmark}.
+     */
+    private ListExtractionBenchmark() {
+
+        this.mResults = new ArrayList<>();
+
+    }
+
+    /**
+     * Runs the benchmark on a Library and a Press Cuttings page. This takes a few seconds
+     * and should not be called on the main thread.
+     *
+     * @param context A valid {@link android.content.Context}
+     */
+    public void run(Context context) {
+
+        final String hitsFormat = context.getResources().getString(R.string.hits);
+        final String baseUrlFormat = context.getResources().getString(R.string.base_url);
+
+        final List<String> results = new ArrayList<>();
+
+        results.add(measure("Library", newTablePage(), new ListRules("category", "tr"), hitsFormat, baseUrlFormat));
+        results.add(measure("Press cuttings", newWeblinkPage(), new ListRules("weblink-category", "li"), hitsFormat, baseUrlFormat));
+
+        synchronized (this) {
+
+            mResults.clear();
+            mResults.addAll(results);
+
+        }
+
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        if (mResults.isEmpty()) {
+
+            return "Not run yet";
+
+        }
+
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        for (String result : mResults) {
+
+            stringBuilder.append(result).append('\n');
+
+        }
+
+        return stringBuilder.toString().trim();
+
+    }
+
+    /**
+     * Private method.
+     * Times both methods on one page and describes the outcome.
+     */
+    private static String measure(String name, String html, ListRules listRules, String hitsFormat, String baseUrlFormat) {
+
+        final Document document = Jsoup.parse(html);
+
+        final long compileStartTime = System.nanoTime();
+        final ListExtractor listExtractor = new ListExtractor(listRules, hitsFormat, baseUrlFormat);
+        final long compileMicros = (System.nanoTime() - compileStartTime) / 1000;
+
+        final Elements rows = listExtractor.selectRows(document);
+
+        List<ArticleListItem> lookupItems = null;
+        List<ArticleListItem> compiledItems = null;
+
+        long lookupNanos = 0;
+        long compiledNanos = 0;
+
+        try {
+
+            for (int pass = 0; pass < PASSES; pass++) {
+
+                // The methods take turns so neither is favoured by the state of the garbage collector
+                final long lookupStartTime = System.nanoTime();
+                lookupItems = extractByLookups(rows, hitsFormat, baseUrlFormat);
+                final long compiledStartTime = System.nanoTime();
+                compiledItems = extractCompiled(rows, listExtractor);
+                final long endTime = System.nanoTime();
+
+                if (pass > 0) {
+
+                    lookupNanos += compiledStartTime - lookupStartTime;
+                    compiledNanos += endTime - compiledStartTime;
+
+                }
+
+            }
+
+        } catch (ParseException parseException) {
+
+            return name + ": " + parseException;
+
+        }
+
+        final long lookupRowsPerSecond = getRowsPerSecond(rows.size(), lookupNanos);
+        final long compiledRowsPerSecond = getRowsPerSecond(rows.size(), compiledNanos);
+
+        return String.format(Locale.US, "%s: %d rows, rules compiled in %d us\n"
+                        + "  Lookup per field: %d rows/s\n"
+                        + "  Compiled rules: %d rows/s (%.1fx)\n"
+                        + "  Mismatched rows: %d",
+                name, rows.size(), compileMicros, lookupRowsPerSecond, compiledRowsPerSecond,
+                lookupRowsPerSecond == 0 ? 0 : (double) compiledRowsPerSecond / lookupRowsPerSecond,
+                countMismatches(lookupItems, compiledItems));
+
+    }
+
+    /**
+     * Private method.
+     * Extracts every row the way the loaders did before the rules were compiled, one walk
+     * through the row for each field and a format for the hits and the link.
+     */
+    private static List<ArticleListItem> extractByLookups(Elements rows, String hitsFormat, String baseUrlFormat) {
+
+        final List<ArticleListItem> articleListItems = new ArrayList<>();
+
+        for (Element element : rows) {
+
+            articleListItems.add(new ArticleListItem()
+                    .setTitle(element.getElementsByClass("list-title").text().trim())
+                    .setDate(element.getElementsByClass("list-date").text().trim())
+                    .setAuthor(element.getElementsByClass("list-author").text().trim())
+                    .setHits(element.getElementsByClass("list-hits").text().contains("Hits:") ?
+                            null : String.format(hitsFormat, element.getElementsByClass("list-hits").text().trim()))
+                    .setLink(String.format(baseUrlFormat, element.select("a").first().attr("href"))));
+
+        }
+
+        return articleListItems;
+
+    }
+
+    /**
+     * Private method.
+     * Extracts every row with the compiled rules.
+     */
+    private static List<ArticleListItem> extractCompiled(Elements rows, ListExtractor listExtractor) throws ParseException {
+
+        final List<ArticleListItem> articleListItems = new ArrayList<>();
+
+        for (Element element : rows) {
+
+            articleListItems.add(listExtractor.extractRow(element));
+
+        }
+
+        return articleListItems;
+
+    }
+
+    /**
+     * Private method.
+     * Returns the number of rows the two methods disagree on, which should always be 0.
+     */
+    private static int countMismatches(List<ArticleListItem> articleListItems, List<ArticleListItem> otherItems) {
+
+        int mismatches = Math.abs(articleListItems.size() - otherItems.size());
+
+        for (int i = 0; i < Math.min(articleListItems.size(), otherItems.size()); i++) {
+
+            final ArticleListItem articleListItem = articleListItems.get(i);
+            final ArticleListItem otherItem = otherItems.get(i);
+
+            if (!articleListItem.getTitle().equals(otherItem.getTitle())
+                    || !articleListItem.getDate().equals(otherItem.getDate())
+                    || !articleListItem.getAuthor().equals(otherItem.getAuthor())
+                    || !String.valueOf(articleListItem.getHits()).equals(String.valueOf(otherItem.getHits()))
+                    || !articleListItem.getLink().equals(otherItem.getLink())) {
+
+                mismatches++;
+
+            }
+
+        }
+
+        return mismatches;
+
+    }
+
+    /**
+     * Private method.
+     * Returns the throughput of a number of timed passes over a page.
+     */
+    private static long getRowsPerSecond(int rows, long nanos) {
+
+        return nanos == 0 ? 0 : rows * (PASSES - 1) * 1000000000L / nanos;
+
+    }
+
+    /**
+     * Private method.
+     * Returns a Library category page, a table with a header row and a row for each article.
+     */
+    private static String newTablePage() {
+
+        final StringBuilder stringBuilder = new StringBuilder("<html><body><div class=\"item-page\">"
+                + "<table class=\"category\"><thead><tr>"
+                + "<th class=\"list-title\" id=\"tableOrdering\"><a href=\"#\">Title</a></th>"
+                + "<th class=\"list-date\" id=\"tableOrdering2\"><a href=\"#\">Date</a></th>"
+                + "<th class=\"list-author\" id=\"tableOrdering3\"><a href=\"#\">Author</a></th>"
+                + "<th class=\"list-hits\" id=\"tableOrdering4\"><a href=\"#\">Hits:</a></th>"
+                + "</tr></thead><tbody>");
+
+        for (int i = 0; i < ROWS - 1; i++) {
+
+            stringBuilder.append("<tr class=\"cat-list-row").append(i % 2).append("\">")
+                    .append("<td class=\"list-title\"><a href=\"/index.php/library/featured-articles/").append(1000 + i)
+                    .append("-article-").append(i).append("\">Article number ").append(i).append(" about crime</a></td>")
+                    .append("<td class=\"list-date\">").append(1 + i % 28).append(" March 2014</td>")
+                    .append("<td class=\"list-author\">Written by Author ").append(i % 17).append("</td>")
+                    .append("<td class=\"list-hits\">").append(i * 37 % 5000).append("</td></tr>");
+
+        }
+
+        return stringBuilder.append("</tbody></table></div></body></html>").toString();
+
+    }
+
+    /**
+     * Private method.
+     * Returns a Press Cuttings page, a list of weblinks that only show their titles.
+     */
+    private static String newWeblinkPage() {
+
+        final StringBuilder stringBuilder = new StringBuilder("<html><body><div class=\"weblink-category\"><ul>");
+
+        for (int i = 0; i < ROWS; i++) {
+
+            stringBuilder.append("<li class=\"cat-list-row").append(i % 2).append("\">")
+                    .append("<p><span class=\"list-title\"><a href=\"/index.php/press-cuttings/").append(2000 + i)
+                    .append("-cutting-").append(i).append("\">Press cutting ").append(i).append("</a></span></p>")
+                    .append("<p>A short description of cutting ").append(i).append(" from the newspaper.</p></li>");
+
+        }
+
+        return stringBuilder.append("</ul></div></body></html>").toString();
+
+    }
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.parsers;
+
+import android.content.Context;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import uk.org.crimetalk.R;
+import uk.org.crimetalk.adapters.items.ArticleListItem;
+import uk.org.crimetalk.network.ParseException;
+
+/**
+ * Evaluator compiled once from a set of {@link uk.org.crimetalk.parsers.ListRules}. The field
+ * classes are looked up in a single table so one walk through a row fills every field, where
+ * looking each field up by class walks the row once per field. The hits and link formats are
+ * split around their argument so a row needs no {@link java.lang.String#format(String, Object...)}.
+ */
+public class ListExtractor {
+
+    // Rows whose hits already carry this label are header rows and have no hits of their own
+    private static final String HITS_LABEL = "Hits:";
+
+    // Matches the single string argument of a format, e.g. %1s or %1$s
+    private static final Pattern ARGUMENT_PATTERN = Pattern.compile("%(?:1\\$)?(\\d*)s");
+
+    private static final int FIELD_TITLE = 0;
+    private static final int FIELD_DATE = 1;
+    private static final int FIELD_AUTHOR = 2;
+    private static final int FIELD_HITS = 3;
+    private static final int FIELD_COUNT = 4;
+
+    // Compiled extractors by their rules and formats, every category page shares a few rules
+    private static final Map<String, ListExtractor> sListExtractors = new HashMap<>();
+
+    private final ListRules mListRules;
+
+    // Fields of each class name as a bit mask, usually a single field
+    private final Map<String, Integer> mFieldClasses;
+
+    private final Template mHitsTemplate;
+    private final Template mLinkTemplate;
+
+    /**
+     * Returns the {@link uk.org.crimetalk.parsers.ListExtractor} of a set of rules, compiling
+     * it the first time the rules are used.
+     *
+     * @param context   A valid {@link android.content.Context}
+     * @param listRules The {@link uk.org.crimetalk.parsers.ListRules} of a category
+     * @return {@link uk.org.crimetalk.parsers.ListExtractor}
+     */
+    public static ListExtractor getInstance(Context context, ListRules listRules) {
+
+        final String hitsFormat = context.getResources().getString(R.string.hits);
+        final String baseUrlFormat = context.getResources().getString(R.string.base_url);
+
+        // The formats are part of the key as they may change with the locale
+        final String key = listRules + " " + hitsFormat + " " + baseUrlFormat;
+
+        synchronized (sListExtractors) {
+
+            ListExtractor listExtractor = sListExtractors.get(key);
+
+            if (listExtractor == null) {
+
+                listExtractor = new ListExtractor(listRules, hitsFormat, baseUrlFormat);
+
+                sListExtractors.put(key, listExtractor);
+
+            }
+
+            return listExtractor;
+
+        }
+
+    }
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.parsers.ListExtractor}.
+     * Use {@link #getInstance(android.content.Context, ListRules)} outside of the benchmark.
+     */
+    ListExtractor(ListRules listRules, String hitsFormat, String baseUrlFormat) {
+
+        this.mListRules = listRules;
+        this.mFieldClasses = new HashMap<>();
+        this.mHitsTemplate = new Template(hitsFormat);
+        this.mLinkTemplate = new Template(baseUrlFormat);
+
+        addFieldClass(listRules.getTitleClass(), FIELD_TITLE);
+        addFieldClass(listRules.getDateClass(), FIELD_DATE);
+        addFieldClass(listRules.getAuthorClass(), FIELD_AUTHOR);
+        addFieldClass(listRules.getHitsClass(), FIELD_HITS);
+
+    }
+
+    /**
+     * Returns the {@link uk.org.crimetalk.parsers.ListRules} the extractor was compiled from.
+     *
+     * @return {@link uk.org.crimetalk.parsers.ListRules}
+     */
+    public ListRules getListRules() {
+
+        return mListRules;
+
+    }
+
+    /**
+     * Returns the rows of every container of a page.
+     *
+     * @param root The parsed page or its container
+     * @return The rows or null if the page has no container
+     */
+    public Elements selectRows(Element root) {
+
+        final Elements containerElements = root.getElementsByClass(mListRules.getContainerClass());
+
+        // Without the container this is not a category page, e.g. an error page served with a 200
+        if (containerElements.isEmpty()) {
+
+            return null;
+
+        }
+
+        return containerElements.select(mListRules.getRowSelector());
+
+    }
+
+    /**
+     * Turns a row into an {@link uk.org.crimetalk.adapters.items.ArticleListItem}. The row and
+     * every element within it are visited once, in document order.
+     *
+     * @param row A row selected by {@link #selectRows(org.jsoup.nodes.Element)}
+     * @return {@link uk.org.crimetalk.adapters.items.ArticleListItem}
+     * @throws ParseException If the row has no link
+     */
+    public ArticleListItem extractRow(Element row) throws ParseException {
+
+        final StringBuilder[] fields = new StringBuilder[FIELD_COUNT];
+
+        Element linkElement = null;
+
+        // Depth first from the row itself, the last child is pushed first so it is visited last
+        final List<Element> stack = new ArrayList<>();
+        stack.add(row);
+
+        while (!stack.isEmpty()) {
+
+            final Element element = stack.remove(stack.size() - 1);
+
+            if (linkElement == null && element.tagName().equals(mListRules.getLinkTag())) {
+
+                linkElement = element;
+
+            }
+
+            final int fieldMask = getFieldMask(element.className());
+
+            if (fieldMask != 0) {
+
+                final String text = element.text();
+
+                for (int field = 0; field < FIELD_COUNT; field++) {
+
+                    if ((fieldMask & (1 << field)) != 0) {
+
+                        appendText(fields, field, text);
+
+                    }
+
+                }
+
+            }
+
+            final Elements children = element.children();
+
+            for (int i = children.size() - 1; i >= 0; i--) {
+
+                stack.add(children.get(i));
+
+            }
+
+        }
+
+        if (linkElement == null) {
+
+            throw new ParseException("No " + mListRules.getLinkTag() + " element in row " + row.cssSelector());
+
+        }
+
+        final String hits = getText(fields, FIELD_HITS);
+
+        return new ArticleListItem()
+                .setTitle(getText(fields, FIELD_TITLE).trim())
+                .setDate(getText(fields, FIELD_DATE).trim())
+                .setAuthor(getText(fields, FIELD_AUTHOR).trim())
+                .setHits(hits.contains(HITS_LABEL) ? null : mHitsTemplate.format(hits.trim()))
+                .setLink(mLinkTemplate.format(linkElement.attr(mListRules.getLinkAttribute())));
+
+    }
+
+    @Override
+    public String toString() {
+
+        return mListRules.toString();
+
+    }
+
+    /**
+     * Private method.
+     * Adds a field to the fields of a class name, a field without a class name is never filled.
+     */
+    private void addFieldClass(String className, int field) {
+
+        if (className == null || className.isEmpty()) {
+
+            return;
+
+        }
+
+        final Integer fieldMask = mFieldClasses.get(className);
+
+        mFieldClasses.put(className, (fieldMask == null ? 0 : fieldMask) | (1 << field));
+
+    }
+
+    /**
+     * Private method.
+     * Returns the fields of every class name in a class attribute as a bit mask.
+     */
+    private int getFieldMask(String classAttribute) {
+
+        int fieldMask = 0;
+        int start = -1;
+
+        // Split by hand, most elements of a row have no class and the rest have one or two
+        for (int i = 0; i <= classAttribute.length(); i++) {
+
+            final boolean whitespace = i == classAttribute.length() || Character.isWhitespace(classAttribute.charAt(i));
+
+            if (!whitespace && start < 0) {
+
+                start = i;
+
+            } else if (whitespace && start >= 0) {
+
+                final Integer classFields = mFieldClasses.get(classAttribute.substring(start, i));
+
+                if (classFields != null) {
+
+                    fieldMask |= classFields;
+
+                }
+
+                start = -1;
+
+            }
+
+        }
+
+        return fieldMask;
+
+    }
+
+    /**
+     * Private method.
+     * Joins the text of the elements of a field with a space, the way {@link org.jsoup.select.Elements#text()} does.
+     */
+    private static void appendText(StringBuilder[] fields, int field, String text) {
+
+        if (fields[field] == null) {
+
+            fields[field] = new StringBuilder(text);
+
+        } else {
+
+            fields[field].append(' ').append(text);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Returns the text of a field or an empty String if no element of the row has its class.
+     */
+    private static String getText(StringBuilder[] fields, int field) {
+
+        return fields[field] == null ? "" : fields[field].toString();
+
+    }
+
+    /**
+     * Private format with a single string argument, split around the argument once so filling it in
+     * is a concatenation. Any other format is left to {@link java.lang.String#format(String, Object...)}.
+     */
+    private static class Template {
+
+        private final String mFormat;
+        private final String mPrefix;
+        private final String mSuffix;
+        private final int mWidth;
+
+        Template(String format) {
+
+            final Matcher matcher = ARGUMENT_PATTERN.matcher(format);
+
+            // Only a format whose one conversion is the string argument can be split
+            if (matcher.find() && format.indexOf('%') == matcher.start() && format.indexOf('%', matcher.end()) < 0) {
+
+                this.mFormat = null;
+                this.mPrefix = format.substring(0, matcher.start());
+                this.mSuffix = format.substring(matcher.end());
+                this.mWidth = matcher.group(1).isEmpty() ? 0 : Integer.parseInt(matcher.group(1));
+
+            } else {
+
+                this.mFormat = format;
+                this.mPrefix = null;
+                this.mSuffix = null;
+                this.mWidth = 0;
+
+            }
+
+        }
+
+        String format(String argument) {
+
+            if (mFormat != null) {
+
+                return String.format(mFormat, argument);
+
+            }
+
+            final StringBuilder stringBuilder = new StringBuilder(mPrefix);
+
+            // A width pads on the left, e.g. %1s turns an empty argument into a space
+            for (int i = argument.length(); i < mWidth; i++) {
+
+                stringBuilder.append(' ');
+
+            }
+
+            return stringBuilder.append(argument).append(mSuffix).toString();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.parsers;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Describes where the rows of a category page and their fields are found. The rules are plain
+ * data so they can travel with an {@link uk.org.crimetalk.fragments.helpers.ArticleListHelper},
+ * the {@link uk.org.crimetalk.parsers.ListExtractor} compiled from them does the work.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class ListRules implements Parcelable {
+
+    // Joomla's class names of the cells of a category list row
+    public static final String CLASS_TITLE = "list-title";
+    public static final String CLASS_DATE = "list-date";
+    public static final String CLASS_AUTHOR = "list-author";
+    public static final String CLASS_HITS = "list-hits";
+
+    private String mContainerClass;
+    private String mRowSelector;
+    private String mTitleClass;
+    private String mDateClass;
+    private String mAuthorClass;
+    private String mHitsClass;
+    private String mLinkTag;
+    private String mLinkAttribute;
+
+    /**
+     * Public constructor for the {@link uk.org.crimetalk.parsers.ListRules}. The fields of a row
+     * are found by Joomla's class names and its link is the href of the first anchor.
+     *
+     * @param containerClass The {@link org.jsoup.Jsoup} class which holds the rows
+     * @param rowSelector    The {@link org.jsoup.Jsoup} selection of the rows within the container
+     */
+    public ListRules(String containerClass, String rowSelector) {
+
+        this.mContainerClass = containerClass;
+        this.mRowSelector = rowSelector;
+        this.mTitleClass = CLASS_TITLE;
+        this.mDateClass = CLASS_DATE;
+        this.mAuthorClass = CLASS_AUTHOR;
+        this.mHitsClass = CLASS_HITS;
+        this.mLinkTag = "a";
+        this.mLinkAttribute = "href";
+
+    }
+
+    /**
+     * Set the class of the element that holds the rows.
+     *
+     * @param containerClass The {@link org.jsoup.Jsoup} class of the container
+     * @return The current {@link uk.org.crimetalk.parsers.ListRules}
+     */
+    public ListRules setContainerClass(String containerClass) {
+
+        this.mContainerClass = containerClass;
+
+        return this;
+
+    }
+
+    /**
+     * Set the selection of the rows within the container.
+     *
+     * @param rowSelector The {@link org.jsoup.Jsoup} selection of the rows
+     * @return The current {@link uk.org.crimetalk.parsers.ListRules}
+     */
+    public ListRules setRowSelector(String rowSelector) {
+
+        this.mRowSelector = rowSelector;
+
+        return this;
+
+    }
+
+    /**
+     * Set the classes of the elements within a row that hold its fields. The text of every
+     * element with the class is used, a field without a class name is left empty.
+     *
+     * @param titleClass  Class of the title
+     * @param dateClass   Class of the date
+     * @param authorClass Class of the author
+     * @param hitsClass   Class of the hits
+     * @return The current {@link uk.org.crimetalk.parsers.ListRules}
+     */
+    public ListRules setFieldClasses(String titleClass, String dateClass, String authorClass, String hitsClass) {
+
+        this.mTitleClass = titleClass;
+        this.mDateClass = dateClass;
+        this.mAuthorClass = authorClass;
+        this.mHitsClass = hitsClass;
+
+        return this;
+
+    }
+
+    /**
+     * Set where the link of a row is found. The attribute of the first element with the tag
+     * is resolved against the CrimeTalk base URL.
+     *
+     * @param linkTag       Tag of the link element
+     * @param linkAttribute Attribute that holds the link
+     * @return The current {@link uk.org.crimetalk.parsers.ListRules}
+     */
+    public ListRules setLink(String linkTag, String linkAttribute) {
+
+        this.mLinkTag = linkTag;
+        this.mLinkAttribute = linkAttribute;
+
+        return this;
+
+    }
+
+    /**
+     * Returns the class of the element that holds the rows.
+     *
+     * @return Container class as a {@link java.lang.String}
+     */
+    public String getContainerClass() {
+
+        return mContainerClass;
+
+    }
+
+    /**
+     * Returns the selection of the rows within the container.
+     *
+     * @return Row selection as a {@link java.lang.String}
+     */
+    public String getRowSelector() {
+
+        return mRowSelector;
+
+    }
+
+    /**
+     * Returns the class of the title of a row.
+     *
+     * @return Title class as a {@link java.lang.String}
+     */
+    public String getTitleClass() {
+
+        return mTitleClass;
+
+    }
+
+    /**
+     * Returns the class of the date of a row.
+     *
+     * @return Date class as a {@link java.lang.String}
+     */
+    public String getDateClass() {
+
+        return mDateClass;
+
+    }
+
+    /**
+     * Returns the class of the author of a row.
+     *
+     * @return Author class as a {@link java.lang.String}
+     */
+    public String getAuthorClass() {
+
+        return mAuthorClass;
+
+    }
+
+    /**
+     * Returns the class of the hits of a row.
+     *
+     * @return Hits class as a {@link java.lang.String}
+     */
+    public String getHitsClass() {
+
+        return mHitsClass;
+
+    }
+
+    /**
+     * Returns the tag of the link element of a row.
+     *
+     * @return Link tag as a {@link java.lang.String}
+     */
+    public String getLinkTag() {
+
+        return mLinkTag;
+
+    }
+
+    /**
+     * Returns the attribute that holds the link of a row.
+     *
+     * @return Link attribute as a {@link java.lang.String}
+     */
+    public String getLinkAttribute() {
+
+        return mLinkAttribute;
+
+    }
+
+    @Override
+    public String toString() {
+
+        return "." + mContainerClass + " " + mRowSelector + " {title: ." + mTitleClass + ", date: ." + mDateClass
+                + ", author: ." + mAuthorClass + ", hits: ." + mHitsClass + ", link: " + mLinkTag + "[" + mLinkAttribute + "]}";
+
+    }
+
+    @Override
+    public int describeContents() {
+
+        return 0;
+
+    }
+
+    @Override
+    public void writeToParcel(Parcel parcel, int flags) {
+
+        parcel.writeString(mContainerClass);
+        parcel.writeString(mRowSelector);
+        parcel.writeString(mTitleClass);
+        parcel.writeString(mDateClass);
+        parcel.writeString(mAuthorClass);
+        parcel.writeString(mHitsClass);
+        parcel.writeString(mLinkTag);
+        parcel.writeString(mLinkAttribute);
+
+    }
+
+    public static final Creator CREATOR = new Creator() {
+
+        public ListRules createFromParcel(Parcel parcel) {
+
+            return new ListRules(parcel);
+
+        }
+
+        public ListRules[] newArray(int size) {
+
+            return new ListRules[size];
+
+        }
+
+    };
+
+    private ListRules(Parcel parcel) {
+
+        this.mContainerClass = parcel.readString();
+        this.mRowSelector = parcel.readString();
+        this.mTitleClass = parcel.readString();
+        this.mDateClass = parcel.readString();
+        this.mAuthorClass = parcel.readString();
+        this.mHitsClass = parcel.readString();
+        this.mLinkTag = parcel.readString();
+        this.mLinkAttribute = parcel.readString();
+
+    }
+
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import uk.org.crimetalk.adapters.items.ArticleListItem;
+
+/**
+ * Process-wide store that keeps the complete article List of every category on disk, along
+ * with the reports of the last runs of the background sync. Lists survive the process so
+ * an {@link uk.org.crimetalk.fragments.ArticleListFragment} opened after a sync can show
+ * its List without fetching it.
+ */
+public class ArticleListStore {
+
+    private static final String TAG = "ArticleListStore";
+
+    private static final String LIST_DIRECTORY = "article_lists";
+    private static final String REPORTS_FILE = "sync_reports.json";
+    private static final String CHARSET = "UTF-8";
+
+    // Only the most recent reports are kept
+    private static final int MAX_REPORTS = 10;
+
+    private static ArticleListStore sArticleListStore;
+
+    private final File mListDirectory;
+    private final File mReportsFile;
+
+    /**
+     * Returns the process-wide {@link uk.org.crimetalk.sync.ArticleListStore}.
+     *
+     * @param context A valid {@link android.content.Context}
+     * @return {@link uk.org.crimetalk.sync.ArticleListStore}
+     */
+    public static synchronized ArticleListStore getInstance(Context context) {
+
+        if (sArticleListStore == null) {
+
+            sArticleListStore = new ArticleListStore(context.getApplicationContext());
+
+        }
+
+        return sArticleListStore;
+
+    }
+
+    /**
+     * Private constructor for the {@link uk.org.crimetalk.sync.ArticleListStore}.
+     */
+    private ArticleListStore(Context context) {
+
+        this.mListDirectory = new File(context.getFilesDir(), LIST_DIRECTORY);
+        this.mReportsFile = new File(context.getFilesDir(), REPORTS_FILE);
+
+    }
+
+    /**
+     * Returns the stored List of a category if it was stored recently.
+     *
+     * @param url          The URL of the category
+     * @param maxAgeMillis How long ago the List may have been stored in milliseconds
+     * @return {@link java.util.List} of {@link uk.org.crimetalk.adapters.items.ArticleListItem}
+     * or null if there is no recent List
+     */
+    public synchronized List<ArticleListItem> getList(String url, long maxAgeMillis) {
+
+        final File file = getListFile(url);
+
+        // The file time is the time the List was stored
+        if (!file.exists() || System.currentTimeMillis() - file.lastModified() > maxAgeMillis) {
+
+            return null;
+
+        }
+
+        try {
+
+            final JSONObject jsonObject = new JSONObject(readFile(file));
+
+            // A different category with the same hash
+            if (!url.equals(jsonObject.getString("url"))) {
+
+                return null;
+
+            }
+
+            final JSONArray jsonArray = jsonObject.getJSONArray("items");
+            final List<ArticleListItem> articleListItems = new ArrayList<>(jsonArray.length());
+
+            for (int i = 0; i < jsonArray.length(); i++) {
+
+                final JSONObject itemObject = jsonArray.getJSONObject(i);
+
+                articleListItems.add(new ArticleListItem()
+                        .setTitle(itemObject.getString("title"))
+                        .setDate(itemObject.optString("date", null))
+                        .setAuthor(itemObject.optString("author", null))
+                        .setHits(itemObject.isNull("hits") ? null : itemObject.getString("hits"))
+                        .setLink(itemObject.getString("link")));
+
+            }
+
+            // Lists are shared like those of the PageFetcher so they should not be changed
+            return Collections.unmodifiableList(articleListItems);
+
+        } catch (IOException | JSONException exception) {
+
+            Log.e(TAG, "Could not read the List of " + url + " " + exception);
+
+            return null;
+
+        }
+
+    }
+
+    /**
+     * Stores the complete List of a category, replacing the List stored before.
+     *
+     * @param url              The URL of the category
+     * @param articleListItems The complete {@link java.util.List} of the category
+     */
+    public synchronized void putList(String url, List<ArticleListItem> articleListItems) {
+
+        try {
+
+            final JSONArray jsonArray = new JSONArray();
+
+            for (ArticleListItem articleListItem : articleListItems) {
+
+                jsonArray.put(new JSONObject()
+                        .put("title", articleListItem.getTitle())
+                        .put("date", articleListItem.getDate())
+                        .put("author", articleListItem.getAuthor())
+                        .put("hits", articleListItem.getHits())
+                        .put("link", articleListItem.getLink()));
+
+            }
+
+            if (!mListDirectory.exists() && !mListDirectory.mkdirs()) {
+
+                throw new IOException("Could not create " + mListDirectory);
+
+            }
+
+            writeFile(getListFile(url), new JSONObject()
+                    .put("url", url)
+                    .put("items", jsonArray).toString());
+
+        } catch (IOException | JSONException exception) {
+
+            Log.e(TAG, "Could not store the List of " + url + " " + exception);
+
+        }
+
+    }
+
+    /**
+     * Adds the report of a sync run, dropping the oldest report once there are too many.
+     *
+     * @param syncReport The {@link uk.org.crimetalk.sync.SyncReport} of the run
+     */
+    public synchronized void addReport(SyncReport syncReport) {
+
+        final List<SyncReport> syncReports = new ArrayList<>(getReports());
+
+        syncReports.add(syncReport);
+
+        while (syncReports.size() > MAX_REPORTS) {
+
+            syncReports.remove(0);
+
+        }
+
+        try {
+
+            final JSONArray jsonArray = new JSONArray();
+
+            for (SyncReport report : syncReports) {
+
+                jsonArray.put(report.toJSONObject());
+
+            }
+
+            writeFile(mReportsFile, jsonArray.toString());
+
+        } catch (IOException | JSONException exception) {
+
+            Log.e(TAG, "Could not store the sync report " + exception);
+
+        }
+
+    }
+
+    /**
+     * Returns the reports of the last sync runs, oldest first.
+     *
+     * @return {@link java.util.List} of {@link uk.org.crimetalk.sync.SyncReport}
+     */
+    public synchronized List<SyncReport> getReports() {
+
+        final List<SyncReport> syncReports = new ArrayList<>();
+
+        if (!mReportsFile.exists()) {
+
+            return syncReports;
+
+        }
+
+        try {
+
+            final JSONArray jsonArray = new JSONArray(readFile(mReportsFile));
+
+            for (int i = 0; i < jsonArray.length(); i++) {
+
+                syncReports.add(SyncReport.fromJSONObject(jsonArray.getJSONObject(i)));
+
+            }
+
+        } catch (IOException | JSONException exception) {
+
+            Log.e(TAG, "Could not read the sync reports " + exception);
+
+        }
+
+        return syncReports;
+
+    }
+
+    @Override
+    public String toString() {
+
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        for (SyncReport syncReport : getReports()) {
+
+            if (stringBuilder.length() > 0) {
+
+                stringBuilder.append("\n");
+
+            }
+
+            stringBuilder.append(syncReport);
+
+        }
+
+        return stringBuilder.length() > 0 ? stringBuilder.toString() : "No runs";
+
+    }
+
+    /**
+     * Private method.
+     * Returns the file the List of a category is stored in.
+     */
+    private File getListFile(String url) {
+
+        return new File(mListDirectory, Integer.toHexString(url.hashCode()) + ".json");
+
+    }
+
+    /**
+     * Private method.
+     * Reads a file into a {@link java.lang.String}.
+     */
+    private static String readFile(File file) throws IOException {
+
+        final InputStream inputStream = new FileInputStream(file);
+
+        try {
+
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream((int) file.length());
+            final byte[] buffer = new byte[8192];
+
+            int read;
+
+            while ((read = inputStream.read(buffer)) != -1) {
+
+                byteArrayOutputStream.write(buffer, 0, read);
+
+            }
+
+            return byteArrayOutputStream.toString(CHARSET);
+
+        } finally {
+
+            inputStream.close();
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Writes a {@link java.lang.String} to a file. The file is written next to the old one and
+     * renamed over it, so a reader never sees half a file.
+     */
+    private static void writeFile(File file, String contents) throws IOException {
+
+        final File temporaryFile = new File(file.getPath() + ".tmp");
+        final FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile);
+
+        try {
+
+            fileOutputStream.write(contents.getBytes(CHARSET));
+
+        } finally {
+
+            fileOutputStream.close();
+
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+
+            throw new IOException("Could not rename " + temporaryFile);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.sync;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import uk.org.crimetalk.adapters.items.ArticleListItem;
+import uk.org.crimetalk.fragments.LibraryFragment;
+import uk.org.crimetalk.fragments.PressCuttingsFragment;
+import uk.org.crimetalk.fragments.helpers.ArticleListHelper;
+import uk.org.crimetalk.network.ConnectivityMonitor;
+import uk.org.crimetalk.network.FetchResult;
+import uk.org.crimetalk.network.FetchTicket;
+import uk.org.crimetalk.network.HttpTransport;
+import uk.org.crimetalk.network.PageFetcher;
+import uk.org.crimetalk.network.RequestScheduler;
+import uk.org.crimetalk.parsers.ArticleListParser;
+import uk.org.crimetalk.utils.PreferenceUtils;
+
+/**
+ * Class that runs the background sync once. The complete List of every category of the
+ * {@link uk.org.crimetalk.fragments.LibraryFragment} and {@link uk.org.crimetalk.fragments.PressCuttingsFragment}
+ * is fetched one category at a time and kept in the {@link uk.org.crimetalk.sync.ArticleListStore}.
+ * The run stops early once the {@link uk.org.crimetalk.network.NetworkPolicy} no longer allows
+ * prefetching or the run is cancelled.
+ */
+public class CategorySync {
+
+    private static final String TAG = "CategorySync";
+
+    private final Context mContext;
+
+    private volatile boolean mCancelled;
+    private volatile FetchTicket<List<ArticleListItem>> mFetchTicket;
+
+    /**
+     * Public constructor for the {@link uk.org.crimetalk.sync.CategorySync}.
+     *
+     * @param context A valid {@link android.content.Context}
+     */
+    public CategorySync(Context context) {
+
+        this.mContext = context.getApplicationContext();
+
+    }
+
+    /**
+     * Syncs every category and stores the report of the run. Blocks until the run has finished.
+     *
+     * @return {@link uk.org.crimetalk.sync.SyncReport} of the run
+     */
+    public SyncReport run() {
+
+        final ArticleListStore articleListStore = ArticleListStore.getInstance(mContext);
+
+        final List<ArticleListHelper> articleListHelpers = new ArrayList<>();
+        articleListHelpers.addAll(LibraryFragment.getPages(mContext));
+        articleListHelpers.addAll(PressCuttingsFragment.getPages(mContext));
+
+        final long startTime = System.currentTimeMillis();
+        final long startMillis = SystemClock.elapsedRealtime();
+        final long startBytes = HttpTransport.getInstance().getTransferStats().getWireBytes();
+
+        int categories = 0;
+        int failures = 0;
+        int changedRows = 0;
+        boolean stopped = false;
+
+        for (ArticleListHelper articleListHelper : articleListHelpers) {
+
+            // The device may have left the unmetered network or the job may have been stopped
+            if (mCancelled || !ConnectivityMonitor.getInstance(mContext).getPolicy().canPrefetch()) {
+
+                stopped = true;
+
+                break;
+
+            }
+
+            final FetchTicket<List<ArticleListItem>> fetchTicket = PageFetcher.getInstance().fetchAsync(
+                    articleListHelper.newHttpRequest(PreferenceUtils.getTimeout(mContext))
+                            .setPriority(RequestScheduler.PRIORITY_BACKGROUND),
+                    new ArticleListParser(mContext, articleListHelper));
+
+            mFetchTicket = fetchTicket;
+
+            final FetchResult<List<ArticleListItem>> fetchResult = fetchTicket.getFetchResult();
+
+            mFetchTicket = null;
+
+            if (!fetchResult.isSuccessful()) {
+
+                Log.e(TAG, fetchResult.getException() + " " + fetchResult);
+
+                failures++;
+
+                continue;
+
+            }
+
+            // Compared to what is stored no matter how old it is
+            final List<ArticleListItem> storedArticleListItems = articleListStore.getList(articleListHelper.getUrl(), Long.MAX_VALUE);
+
+            changedRows += getChangedRows(storedArticleListItems, fetchResult.getValue());
+            categories++;
+
+            articleListStore.putList(articleListHelper.getUrl(), fetchResult.getValue());
+
+        }
+
+        final SyncReport syncReport = new SyncReport(startTime, SystemClock.elapsedRealtime() - startMillis,
+                HttpTransport.getInstance().getTransferStats().getWireBytes() - startBytes,
+                categories, failures, changedRows, stopped);
+
+        articleListStore.addReport(syncReport);
+
+        return syncReport;
+
+    }
+
+    /**
+     * Stops the run after the category being synced. The fetch of that category is cancelled.
+     */
+    public void cancel() {
+
+        mCancelled = true;
+
+        final FetchTicket<List<ArticleListItem>> fetchTicket = mFetchTicket;
+
+        if (fetchTicket != null) {
+
+            fetchTicket.cancel(true);
+
+        }
+
+    }
+
+    /**
+     * Private method.
+     * Returns the number of rows that were added, changed or removed between two Lists of a category.
+     */
+    private static int getChangedRows(List<ArticleListItem> oldArticleListItems, List<ArticleListItem> newArticleListItems) {
+
+        // Every row of a category that was never stored is new
+        if (oldArticleListItems == null) {
+
+            return newArticleListItems.size();
+
+        }
+
+        final Set<String> oldRows = new HashSet<>();
+        final Set<String> newLinks = new HashSet<>();
+
+        for (ArticleListItem articleListItem : oldArticleListItems) {
+
+            oldRows.add(getRow(articleListItem));
+
+        }
+
+        int changedRows = 0;
+
+        for (ArticleListItem articleListItem : newArticleListItems) {
+
+            newLinks.add(articleListItem.getLink());
+
+            if (!oldRows.contains(getRow(articleListItem))) {
+
+                changedRows++;
+
+            }
+
+        }
+
+        for (ArticleListItem articleListItem : oldArticleListItems) {
+
+            if (!newLinks.contains(articleListItem.getLink())) {
+
+                changedRows++;
+
+            }
+
+        }
+
+        return changedRows;
+
+    }
+
+    /**
+     * Private method.
+     * Returns everything a row shows, a row whose hits went up has changed.
+     */
+    private static String getRow(ArticleListItem articleListItem) {
+
+        return articleListItem.getLink() + "\n" + articleListItem.getTitle() + "\n" + articleListItem.getDate()
+                + "\n" + articleListItem.getAuthor() + "\n" + articleListItem.getHits();
+
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.sync;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.Build;
+import android.os.Process;
+
+/**
+ * {@link android.app.job.JobService} that runs the background sync on Lollipop and above.
+ * The {@link android.app.job.JobScheduler} only starts it on an unmetered network while
+ * the device is charging and idle, and stops it once that is no longer the case.
+ *
+ * @see {@link uk.org.crimetalk.sync.SyncScheduler}
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class SyncJobService extends JobService {
+
+    private CategorySync mCategorySync;
+
+    @Override
+    public boolean onStartJob(final JobParameters jobParameters) {
+
+        final CategorySync categorySync = new CategorySync(this);
+
+        mCategorySync = categorySync;
+
+        // Jobs are started on the main thread
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                categorySync.run();
+
+                jobFinished(jobParameters, false);
+
+            }
+
+        }, "CategorySync").start();
+
+        // The job keeps running on its own thread
+        return true;
+
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters jobParameters) {
+
+        if (mCategorySync != null) {
+
+            mCategorySync.cancel();
+
+        }
+
+        // The periodic job runs again at its next period
+        return false;
+
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.sync;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Class that describes a single run of the background sync.
+ *
+ * @see {@link uk.org.crimetalk.sync.CategorySync}
+ */
+public class SyncReport {
+
+    private final long mStartTime;
+    private final long mDurationMillis;
+    private final long mWireBytes;
+    private final int mCategories;
+    private final int mFailures;
+    private final int mChangedRows;
+    private final boolean mStopped;
+
+    /**
+     * Package-private constructor for the {@link uk.org.crimetalk.sync.SyncReport}.
+     *
+     * @param startTime      Wall clock time the run started at
+     * @param durationMillis Duration of the run in milliseconds
+     * @param wireBytes      Bytes received on the wire during the run
+     * @param categories     Number of categories synced
+     * @param failures       Number of categories that could not be synced
+     * @param changedRows    Number of rows added, changed or removed
+     * @param stopped        True if the run was stopped before every category was synced
+     */
+    SyncReport(long startTime, long durationMillis, long wireBytes, int categories, int failures,
+               int changedRows, boolean stopped) {
+
+        this.mStartTime = startTime;
+        this.mDurationMillis = durationMillis;
+        this.mWireBytes = wireBytes;
+        this.mCategories = categories;
+        this.mFailures = failures;
+        this.mChangedRows = changedRows;
+        this.mStopped = stopped;
+
+    }
+
+    /**
+     * Returns the duration of the run.
+     *
+     * @return Duration in milliseconds
+     */
+    public long getDurationMillis() {
+
+        return mDurationMillis;
+
+    }
+
+    /**
+     * Returns the bytes received on the wire during the run. Requests made by the app
+     * while the run was in progress are included.
+     *
+     * @return Byte count
+     */
+    public long getWireBytes() {
+
+        return mWireBytes;
+
+    }
+
+    /**
+     * Returns the number of rows added, changed or removed by the run.
+     *
+     * @return Row count
+     */
+    public int getChangedRows() {
+
+        return mChangedRows;
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns the {@link uk.org.crimetalk.sync.SyncReport} as a {@link org.json.JSONObject}.
+     */
+    JSONObject toJSONObject() throws JSONException {
+
+        return new JSONObject()
+                .put("start_time", mStartTime)
+                .put("duration", mDurationMillis)
+                .put("wire_bytes", mWireBytes)
+                .put("categories", mCategories)
+                .put("failures", mFailures)
+                .put("changed_rows", mChangedRows)
+                .put("stopped", mStopped);
+
+    }
+
+    /**
+     * Package-private method.
+     * Returns a {@link uk.org.crimetalk.sync.SyncReport} read from a {@link org.json.JSONObject}.
+     */
+    static SyncReport fromJSONObject(JSONObject jsonObject) throws JSONException {
+
+        return new SyncReport(jsonObject.getLong("start_time"), jsonObject.getLong("duration"),
+                jsonObject.getLong("wire_bytes"), jsonObject.getInt("categories"), jsonObject.getInt("failures"),
+                jsonObject.getInt("changed_rows"), jsonObject.getBoolean("stopped"));
+
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format(Locale.US, "%s %dms %dKB categories=%d failures=%d changed rows=%d%s",
+                DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT).format(new Date(mStartTime)),
+                mDurationMillis, mWireBytes / 1024, mCategories, mFailures, mChangedRows, mStopped ? " stopped" : "");
+
+    }
+
+}
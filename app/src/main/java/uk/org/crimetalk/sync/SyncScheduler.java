@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.sync;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+
+import uk.org.crimetalk.network.ConnectivityMonitor;
+import uk.org.crimetalk.utils.PreferenceUtils;
+
+/**
+ * Utility class that schedules the background sync. On Lollipop and above the sync is a
+ * {@link android.app.job.JobScheduler} job that only runs on an unmetered network while the
+ * device is charging and idle. Older devices use an inexact alarm and the
+ * {@link uk.org.crimetalk.sync.SyncService} checks the same constraints itself.
+ */
+public class SyncScheduler {
+
+    // How often the categories are synced
+    public static final long SYNC_INTERVAL_MILLIS = 6 * AlarmManager.INTERVAL_HOUR;
+
+    // Lists synced within this time are shown without fetching them
+    public static final long MAX_AGE_MILLIS = SYNC_INTERVAL_MILLIS;
+
+    private static final int SYNC_JOB_ID = 1;
+
+    /**
+     * Schedules the background sync, or cancels it if the user turned it off. Scheduling
+     * an already scheduled sync keeps its schedule.
+     *
+     * @param context A valid {@link android.content.Context}
+     */
+    public static void schedule(Context context) {
+
+        schedule(context, PreferenceUtils.getBackgroundSync(context));
+
+    }
+
+    /**
+     * Schedules or cancels the background sync.
+     *
+     * @param context A valid {@link android.content.Context}
+     * @param enabled true to schedule the sync, false to cancel it
+     */
+    public static void schedule(Context context, boolean enabled) {
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+
+            scheduleJob(context, enabled);
+
+        } else {
+
+            scheduleAlarm(context, enabled);
+
+        }
+
+    }
+
+    /**
+     * Returns true if the device is on an unmetered network, charging and idle. The
+     * {@link android.app.job.JobScheduler} checks this for the job on Lollipop and above.
+     *
+     * @param context A valid {@link android.content.Context}
+     * @return true if a sync may run now
+     */
+    @SuppressWarnings("deprecation")
+    public static boolean canSync(Context context) {
+
+        // A sticky broadcast, no receiver is registered
+        final Intent batteryIntent = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+
+        final boolean charging = batteryIntent != null && batteryIntent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+
+        // Without an idle mode before Lollipop a device with its screen off is treated as idle
+        final boolean idle = !((PowerManager) context.getSystemService(Context.POWER_SERVICE)).isScreenOn();
+
+        return charging && idle && ConnectivityMonitor.getInstance(context).getPolicy().canPrefetch();
+
+    }
+
+    /**
+     * Private method.
+     * Schedules or cancels the {@link uk.org.crimetalk.sync.SyncJobService} job.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJob(Context context, boolean enabled) {
+
+        final JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+
+        if (!enabled) {
+
+            jobScheduler.cancel(SYNC_JOB_ID);
+
+            return;
+
+        }
+
+        // Scheduling the job again would restart its period
+        for (JobInfo jobInfo : jobScheduler.getAllPendingJobs()) {
+
+            if (jobInfo.getId() == SYNC_JOB_ID) {
+
+                return;
+
+            }
+
+        }
+
+        jobScheduler.schedule(new JobInfo.Builder(SYNC_JOB_ID, new ComponentName(context, SyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(SYNC_INTERVAL_MILLIS)
+                .setPersisted(true)
+                .build());
+
+    }
+
+    /**
+     * Private method.
+     * Schedules or cancels the alarm that starts the {@link uk.org.crimetalk.sync.SyncService}.
+     */
+    private static void scheduleAlarm(Context context, boolean enabled) {
+
+        final AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+
+        final Intent intent = new Intent(context, SyncService.class);
+
+        // Only exists while the alarm is set, alarms do not survive a reboot
+        final PendingIntent scheduledIntent = PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE);
+
+        if (!enabled) {
+
+            if (scheduledIntent != null) {
+
+                alarmManager.cancel(scheduledIntent);
+                scheduledIntent.cancel();
+
+            }
+
+            return;
+
+        }
+
+        // Setting the alarm again would restart its period
+        if (scheduledIntent != null) {
+
+            return;
+
+        }
+
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS,
+                PendingIntent.getService(context, 0, intent, 0));
+
+    }
+
+}
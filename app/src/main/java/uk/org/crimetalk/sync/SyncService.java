@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.sync;
+
+import android.app.IntentService;
+import android.content.Intent;
+import android.os.Process;
+
+/**
+ * {@link android.app.IntentService} that runs the background sync before Lollipop. It is
+ * started by an inexact alarm and skips the run unless the device is on an unmetered
+ * network, charging and idle.
+ *
+ * @see {@link uk.org.crimetalk.sync.SyncScheduler}
+ */
+public class SyncService extends IntentService {
+
+    /**
+     * Empty public constructor for the {@link uk.org.crimetalk.sync.SyncService}.
+     */
+    public SyncService() {
+        super("SyncService");
+
+        // Do nothing
+
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+
+        if (!SyncScheduler.canSync(this)) {
+
+            return;
+
+        }
+
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        new CategorySync(this).run();
+
+    }
+
+}
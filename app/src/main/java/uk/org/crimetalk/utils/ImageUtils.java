@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 John Persano
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.org.crimetalk.utils;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.UrlConnectionDownloader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+import uk.org.crimetalk.network.DataUsage;
+import uk.org.crimetalk.network.RequestScheduler;
+
+/**
+ * Utility class that handles image loading.
+ */
+public class ImageUtils {
+
+    private static Picasso sPicasso;
+
+    /**
+     * Returns the process-wide {@link com.squareup.picasso.Picasso} of the app. Its images are
+     * loaded through the {@link uk.org.crimetalk.network.RequestScheduler} so they do not compete
+     * with the pages of the visible screen for connections, and an image whose request is
+     * cancelled, e.g. because its row was recycled, is dropped before it is fetched. The bytes of
+     * every image that is not served from the cache are recorded in the {@link uk.org.crimetalk.network.DataUsage}.
+     * This should be used instead of {@link com.squareup.picasso.Picasso#with(android.content.Context)}.
+     *
+     * @param context A valid {@link android.content.Context}
+     * @return {@link com.squareup.picasso.Picasso}
+     */
+    public static synchronized Picasso getPicasso(Context context) {
+
+        if (sPicasso == null) {
+
+            sPicasso = new Picasso.Builder(context.getApplicationContext())
+                    .executor(RequestScheduler.getInstance().newExecutorService(RequestScheduler.PRIORITY_VISIBLE))
+                    .downloader(new UsageDownloader(context.getApplicationContext()))
+                    .build();
+
+        }
+
+        return sPicasso;
+
+    }
+
+    /**
+     * Private {@link com.squareup.picasso.UrlConnectionDownloader} that records the bytes of the
+     * images it downloads under the usage label set by
+     * {@link uk.org.crimetalk.network.DataUsage#setImageLabel(String, String)}.
+     */
+    private static class UsageDownloader extends UrlConnectionDownloader {
+
+        // Header set by the system HTTP cache, e.g. "CACHE 200" or "NETWORK 200"
+        private static final String RESPONSE_SOURCE = "X-Android-Response-Source";
+
+        private final DataUsage mDataUsage;
+
+        // Picasso opens and reads each connection on the same thread
+        private final ThreadLocal<HttpURLConnection> mConnection;
+
+        /**
+         * Public constructor for the {@link uk.org.crimetalk.utils.ImageUtils.UsageDownloader}.
+         *
+         * @param context A valid {@link android.content.Context}
+         */
+        public UsageDownloader(Context context) {
+            super(context);
+
+            this.mDataUsage = DataUsage.getInstance(context);
+            this.mConnection = new ThreadLocal<>();
+
+        }
+
+        @Override
+        protected HttpURLConnection openConnection(Uri uri) throws IOException {
+
+            final HttpURLConnection httpURLConnection = super.openConnection(uri);
+
+            mConnection.set(httpURLConnection);
+
+            return httpURLConnection;
+
+        }
+
+        @Override
+        public Response load(Uri uri, boolean localCacheOnly) throws IOException {
+
+            final Response response;
+            final HttpURLConnection httpURLConnection;
+
+            try {
+
+                response = super.load(uri, localCacheOnly);
+
+            } finally {
+
+                httpURLConnection = mConnection.get();
+                mConnection.remove();
+
+            }
+
+            if (response == null || response.getInputStream() == null || httpURLConnection == null) {
+
+                return response;
+
+            }
+
+            final String responseSource = httpURLConnection.getHeaderField(RESPONSE_SOURCE);
+
+            // Images from the cache have not used any data
+            if (responseSource != null && !responseSource.startsWith("NETWORK")) {
+
+                return response;
+
+            }
+
+            return new Response(new CountingInputStream(response.getInputStream(),
+                    mDataUsage, mDataUsage.getImageLabel(uri.toString())), false, response.getContentLength());
+
+        }
+
+    }
+
+    /**
+     * Private {@link java.io.FilterInputStream} that records the bytes read from it when it is closed.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final DataUsage mDataUsage;
+        private final String mUsageLabel;
+
+        private long mBytes;
+        private boolean mClosed;
+
+        /**
+         * Public constructor for the {@link uk.org.crimetalk.utils.ImageUtils.CountingInputStream}.
+         */
+        public CountingInputStream(InputStream inputStream, DataUsage dataUsage, String usageLabel) {
+            super(inputStream);
+
+            this.mDataUsage = dataUsage;
+            this.mUsageLabel = usageLabel;
+
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            final int read = super.read();
+
+            if (read != -1) {
+
+                mBytes++;
+
+            }
+
+            return read;
+
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+
+            final int read = super.read(buffer, offset, count);
+
+            if (read > 0) {
+
+                mBytes += read;
+
+            }
+
+            return read;
+
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+
+            final long skipped = super.skip(count);
+
+            mBytes += skipped;
+
+            return skipped;
+
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            if (!mClosed) {
+
+                mClosed = true;
+                mDataUsage.recordBytes(mUsageLabel, mBytes);
+
+            }
+
+            super.close();
+
+        }
+
+    }
+
+}
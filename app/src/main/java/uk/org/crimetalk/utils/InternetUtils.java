@@ -16,44 +16,78 @@
 package uk.org.crimetalk.utils;
 
 import android.content.Context;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
+
+import uk.org.crimetalk.R;
+import uk.org.crimetalk.network.ConnectivityMonitor;
+import uk.org.crimetalk.network.FetchResult;
 
 /**
- * Utility class used to check Internet access.
+ * Utility class used to check Internet access and describe failed fetches.
  */
 public class InternetUtils {
 
     /**
-     * Returns the status of current Internet connection.
+     * Returns the status of current Internet connection. This is read from the state cached by the
+     * {@link uk.org.crimetalk.network.ConnectivityMonitor} so it does not query the system.
      *
      * @param context A valid {@link android.content.Context}
      * @return true if device has Internet
      */
     public static boolean hasInternet(Context context) {
 
-        final ConnectivityManager connectivityManager = (ConnectivityManager)
-                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return ConnectivityMonitor.getInstance(context).getState().isConnected();
 
-        final NetworkInfo wifiNetwork = connectivityManager.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
+    }
 
-        if (wifiNetwork != null && wifiNetwork.isConnected()) {
+    /**
+     * Returns a message for the user that describes why a fetch failed.
+     *
+     * @param context     A valid {@link android.content.Context}
+     * @param fetchResult The failed {@link uk.org.crimetalk.network.FetchResult}
+     * @return Message as a {@link java.lang.String}
+     */
+    public static String getFailureMessage(Context context, FetchResult<?> fetchResult) {
 
-            return true;
+        // The device has no Internet so remind the user, whatever the failure looked like
+        if (!hasInternet(context)) {
+
+            return context.getResources().getString(R.string.internet_none);
 
         }
 
-        final NetworkInfo mobileNetwork = connectivityManager.getNetworkInfo(ConnectivityManager.TYPE_MOBILE);
+        switch (fetchResult.getFailure()) {
 
-        if (mobileNetwork != null && mobileNetwork.isConnected()) {
+            case FetchResult.FAILURE_TIMEOUT:
 
-            return true;
+                return context.getResources().getString(R.string.internet_timeout);
 
-        }
+            case FetchResult.FAILURE_DNS:
+
+                return context.getResources().getString(R.string.internet_dns);
+
+            case FetchResult.FAILURE_HTTP_STATUS:
 
-        final NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
+                return String.format(context.getResources().getString(R.string.internet_server_error),
+                        fetchResult.getStatusCode());
 
-        return activeNetwork != null && activeNetwork.isConnected();
+            case FetchResult.FAILURE_PARSE:
+
+                return context.getResources().getString(R.string.internet_parse_error);
+
+            // The device is connected so nothing was fetched because the data budget has run out
+            case FetchResult.FAILURE_OFFLINE:
+
+                return context.getResources().getString(R.string.internet_budget);
+
+            case FetchResult.FAILURE_UNAVAILABLE:
+
+                return context.getResources().getString(R.string.internet_unavailable);
+
+            default:
+
+                return context.getResources().getString(R.string.internet_error);
+
+        }
 
     }
 
@@ -26,6 +26,11 @@ public class PreferenceUtils {
     // Various Preference keys
     private static final String KEY_LOAD_IN_BROWSER = "load_in_browser";
     private static final String KEY_TIMEOUT = "timeout";
+    private static final String KEY_MAX_CONNECTIONS = "max_connections";
+    private static final String KEY_SEARCH_DEADLINE = "search_deadline";
+    private static final String KEY_PAGED_LOADING = "paged_loading";
+    private static final String KEY_BACKGROUND_SYNC = "background_sync";
+    private static final String KEY_DATA_BUDGET = "data_budget";
     private static final String KEY_DARK_THEME = "dark_theme";
     private static final String KEY_USER_LEARNED_NAVIGATION = "user_learned_navigation";
     private static final String KEY_USER_LEARNED_PRESS_CUTTINGS_WARING= "user_learned_press_cuttings_warning";
@@ -42,6 +47,66 @@ public class PreferenceUtils {
 
     }
 
+    /**
+     * Returns the maximum number of parallel connections requested by the user as found in
+     * {@link uk.org.crimetalk.SettingsActivity.SettingsFragment}.
+     *
+     * @return Maximum number of connections to a single host
+     */
+    public static int getMaxConnections(Context context) {
+
+        return Integer.parseInt(PreferenceManager.getDefaultSharedPreferences(context).getString(KEY_MAX_CONNECTIONS, "4"));
+
+    }
+
+    /**
+     * Returns the longest time a search waits for slow categories before showing the matches
+     * it has, as requested by the user in {@link uk.org.crimetalk.SettingsActivity.SettingsFragment}.
+     *
+     * @return Search deadline in milliseconds or 0 if a search waits for every category
+     */
+    public static int getSearchDeadline(Context context) {
+
+        return Integer.parseInt(PreferenceManager.getDefaultSharedPreferences(context).getString(KEY_SEARCH_DEADLINE, "3")) * 1000;
+
+    }
+
+    /**
+     * Returns the paged loading setting requested by the user as found in
+     * {@link uk.org.crimetalk.SettingsActivity.SettingsFragment}.
+     *
+     * @return true if article lists should be loaded a page at a time
+     */
+    public static boolean getPagedLoading(Context context) {
+
+        return PreferenceManager.getDefaultSharedPreferences(context).getBoolean(KEY_PAGED_LOADING, true);
+
+    }
+
+    /**
+     * Returns the background sync setting requested by the user as found in
+     * {@link uk.org.crimetalk.SettingsActivity.SettingsFragment}.
+     *
+     * @return true if category lists should be synced in the background
+     */
+    public static boolean getBackgroundSync(Context context) {
+
+        return PreferenceManager.getDefaultSharedPreferences(context).getBoolean(KEY_BACKGROUND_SYNC, true);
+
+    }
+
+    /**
+     * Returns the monthly budget of metered data requested by the user as found in
+     * {@link uk.org.crimetalk.SettingsActivity.SettingsFragment}.
+     *
+     * @return Monthly budget in bytes or 0 if there is no budget
+     */
+    public static long getDataBudget(Context context) {
+
+        return Long.parseLong(PreferenceManager.getDefaultSharedPreferences(context).getString(KEY_DATA_BUDGET, "0")) * 1024 * 1024;
+
+    }
+
     /**
      * Returns the load in browser setting requested by the user as found in
      * {@link uk.org.crimetalk.SettingsActivity.SettingsFragment}.